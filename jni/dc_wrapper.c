@@ -10,6 +10,94 @@
 static dc_msg_t* get_dc_msg(JNIEnv *env, jobject obj);
 
 
+/* UTF-8 <-> UTF-16 conversion.
+we do not use the JNI functions GetStringUTFChars()/NewStringUTF() for non-ASCII strings,
+as they use "modified UTF-8" where code points >0xffff, eg. emojis, are encoded as two surrogates of 3 bytes each,
+and as they crash on some older systems for such input
+(eg. on KitKat a simple "SMILING FACE WITH SMILING EYES" (U+1F60A, UTF-8 F0 9F 98 8A) will let the app crash, reporting 0xF0 is a bad UTF-8 start,
+see http://stackoverflow.com/questions/12127817/android-ics-4-0-ndk-newstringutf-is-crashing-down-the-app ).
+instead, we convert from and to the UTF-16 used by Java directly,
+this avoids calling back to String.getBytes() or new String(byte[], "UTF-8") and the temporary byte arrays. */
+
+static size_t utf16_to_utf8__(const jchar* in, jsize in_len, char* out)
+{
+    /* `out` must have space for 3*in_len+1 bytes; unpaired surrogates are replaced by '?' as done by String.getBytes("UTF-8") */
+    char* p = out;
+    jsize i;
+    for (i = 0; i < in_len; i++) {
+        uint32_t c = in[i];
+        if (c >= 0xD800 && c <= 0xDBFF && i+1 < in_len && in[i+1] >= 0xDC00 && in[i+1] <= 0xDFFF) {
+            c = 0x10000 + ((c - 0xD800) << 10) + (in[i+1] - 0xDC00);
+            i++;
+        }
+        else if (c >= 0xD800 && c <= 0xDFFF) {
+            c = '?';
+        }
+
+        if (c < 0x80) {
+            *p++ = (char)c;
+        }
+        else if (c < 0x800) {
+            *p++ = (char)(0xC0 | (c >> 6));
+            *p++ = (char)(0x80 | (c & 0x3F));
+        }
+        else if (c < 0x10000) {
+            *p++ = (char)(0xE0 | (c >> 12));
+            *p++ = (char)(0x80 | ((c >> 6) & 0x3F));
+            *p++ = (char)(0x80 | (c & 0x3F));
+        }
+        else {
+            *p++ = (char)(0xF0 | (c >> 18));
+            *p++ = (char)(0x80 | ((c >> 12) & 0x3F));
+            *p++ = (char)(0x80 | ((c >> 6) & 0x3F));
+            *p++ = (char)(0x80 | (c & 0x3F));
+        }
+    }
+    *p = 0;
+    return p - out;
+}
+
+static jsize utf8_to_utf16__(const unsigned char* in, size_t in_len, jchar* out)
+{
+    /* `out` must have space for in_len units; invalid sequences are replaced by U+FFFD */
+    jchar* p = out;
+    size_t i = 0;
+    while (i < in_len) {
+        uint32_t c = in[i];
+        int      follow, k;
+        uint32_t min;
+        if      (c < 0x80)           { follow = 0; min = 0; }
+        else if ((c & 0xE0) == 0xC0) { follow = 1; min = 0x80;    c &= 0x1F; }
+        else if ((c & 0xF0) == 0xE0) { follow = 2; min = 0x800;   c &= 0x0F; }
+        else if ((c & 0xF8) == 0xF0) { follow = 3; min = 0x10000; c &= 0x07; }
+        else                         { *p++ = 0xFFFD; i++; continue; }
+
+        for (k = 1; k <= follow; k++) {
+            if (i+k >= in_len || (in[i+k] & 0xC0) != 0x80) {
+                break;
+            }
+            c = (c << 6) | (in[i+k] & 0x3F);
+        }
+        if (k <= follow || c < min || c > 0x10FFFF || (c >= 0xD800 && c <= 0xDFFF)) {
+            *p++ = 0xFFFD;
+            i += k > 1? k : 1;
+            continue;
+        }
+        i += follow + 1;
+
+        if (c >= 0x10000) {
+            c -= 0x10000;
+            *p++ = (jchar)(0xD800 + (c >> 10));
+            *p++ = (jchar)(0xDC00 + (c & 0x3FF));
+        }
+        else {
+            *p++ = (jchar)c;
+        }
+    }
+    return (jsize)(p - out);
+}
+
+
 // passing a NULL-jstring results in a NULL-ptr - this is needed by functions using eg. NULL for "delete"
 #define CHAR_REF(a) \
     char* a##Ptr = char_ref__(env, (a));
@@ -18,29 +106,20 @@ static char* char_ref__(JNIEnv* env, jstring a) {
         return NULL;
     }
 
-    /* we do not use the JNI functions GetStringUTFChars()/ReleaseStringUTFChars()
-    as they do not work on some older systems for code points >0xffff, eg. emojis.
-    as a workaround, we're calling back to java-land's String.getBytes() which works as expected */
-    static jclass    s_strCls    = NULL;
-    static jmethodID s_getBytes  = NULL;
-    static jclass    s_strEncode = NULL;
-    if (s_getBytes==NULL) {
-        s_strCls    = (*env)->NewGlobalRef(env, (*env)->FindClass(env, "java/lang/String"));
-        s_getBytes  = (*env)->GetMethodID(env, s_strCls, "getBytes", "(Ljava/lang/String;)[B");
-        s_strEncode = (*env)->NewGlobalRef(env, (*env)->NewStringUTF(env, "UTF-8"));
+    // allocate before entering the critical region, where the garbage collector may be paused
+    const jsize len = (*env)->GetStringLength(env, a);
+    char* cstr = malloc(len*3 + 1);
+    if (cstr==NULL) {
+        return NULL;
     }
 
-    const jbyteArray stringJbytes = (jbyteArray)(*env)->CallObjectMethod(env, a, s_getBytes, s_strEncode);
-    const jsize length = (*env)->GetArrayLength(env, stringJbytes);
-    jbyte* pBytes = (*env)->GetByteArrayElements(env, stringJbytes, NULL);
-    if (pBytes==NULL) {
+    const jchar* chars = (*env)->GetStringCritical(env, a, NULL);
+    if (chars==NULL) {
+        free(cstr);
         return NULL;
     }
-
-    char* cstr = strndup((const char*)pBytes, length);
-
-    (*env)->ReleaseByteArrayElements(env, stringJbytes, pBytes, JNI_ABORT);
-    (*env)->DeleteLocalRef(env, stringJbytes);
+    utf16_to_utf8__(chars, len, cstr);
+    (*env)->ReleaseStringCritical(env, a, chars);
 
     return cstr;
 }
@@ -55,24 +134,24 @@ static jstring jstring_new__(JNIEnv* env, const char* a)
         return (*env)->NewStringUTF(env, "");
     }
 
-    /* for non-empty strings, do not use NewStringUTF() as this is buggy on some Android versions.
-    Instead, create the string using `new String(ByteArray, "UTF-8);` which seems to be programmed more properly.
-    (eg. on KitKat a simple "SMILING FACE WITH SMILING EYES" (U+1F60A, UTF-8 F0 9F 98 8A) will let the app crash, reporting 0xF0 is a bad UTF-8 start,
-    see http://stackoverflow.com/questions/12127817/android-ics-4-0-ndk-newstringutf-is-crashing-down-the-app ) */
-    static jclass    s_strCls    = NULL;
-    static jmethodID s_strCtor   = NULL;
-    static jclass    s_strEncode = NULL;
-    if (s_strCtor==NULL) {
-        s_strCls    = (*env)->NewGlobalRef(env, (*env)->FindClass(env, "java/lang/String"));
-        s_strCtor   = (*env)->GetMethodID(env, s_strCls, "<init>", "([BLjava/lang/String;)V");
-        s_strEncode = (*env)->NewGlobalRef(env, (*env)->NewStringUTF(env, "UTF-8"));
+    // ASCII is the same in UTF-8 and modified UTF-8, so the common case of ASCII-only strings needs no conversion
+    const unsigned char* p = (const unsigned char*)a;
+    while (*p && *p < 0x80) {
+        p++;
+    }
+    if (*p==0) {
+        return (*env)->NewStringUTF(env, a);
     }
 
-    int a_bytes = strlen(a);
-    jbyteArray array = (*env)->NewByteArray(env, a_bytes);
-        (*env)->SetByteArrayRegion(env, array, 0, a_bytes, (const jbyte*)a);
-        jstring ret = (jstring) (*env)->NewObject(env, s_strCls, s_strCtor, array, s_strEncode);
-    (*env)->DeleteLocalRef(env, array); /* we have to delete the reference as it is not returned to Java, AFAIK */
+    // a UTF-8 string never has more UTF-16 units than bytes
+    size_t a_bytes = strlen(a);
+    jchar* chars = malloc(a_bytes * sizeof(jchar));
+    if (chars==NULL) {
+        return NULL;
+    }
+    jsize chars_len = utf8_to_utf16__((const unsigned char*)a, a_bytes, chars);
+    jstring ret = (*env)->NewString(env, chars, chars_len);
+    free(chars);
 
     return ret;
 }
@@ -626,6 +705,36 @@ JNIEXPORT jint Java_com_b44t_messenger_DcContext_getFreshMsgCount(JNIEnv *env, j
 }
 
 
+JNIEXPORT jint Java_com_b44t_messenger_DcContext_getMsgCount(JNIEnv *env, jobject obj, jint chat_id)
+{
+    return dc_get_msg_cnt(get_dc_context(env, obj), chat_id);
+}
+
+
+JNIEXPORT jintArray Java_com_b44t_messenger_DcContext_getFreshMsgCounts(JNIEnv *env, jobject obj, jintArray chat_ids)
+{
+    /* one JNI call for all rows of the chatlist instead of one per row.
+    this saves only the JNI crossings: the core has no function returning the counts of several chats,
+    so dc_get_fresh_msg_cnt() still runs one database query per chat. */
+    dc_context_t* ctx = get_dc_context(env, obj);
+    int i, icnt = 0;
+    uint32_t* chat_ids_ptr = jintArray2uint32Pointer(env, chat_ids, &icnt);
+    jintArray ret = (*env)->NewIntArray(env, icnt);
+    if (ret && icnt) {
+        jint* temp = calloc(icnt, sizeof(jint));
+        if (temp) {
+            for (i = 0; i < icnt; i++) {
+                temp[i] = dc_get_fresh_msg_cnt(ctx, chat_ids_ptr[i]);
+            }
+            (*env)->SetIntArrayRegion(env, ret, 0, icnt, temp);
+            free(temp);
+        }
+    }
+    free(chat_ids_ptr);
+    return ret;
+}
+
+
 JNIEXPORT jint Java_com_b44t_messenger_DcContext_estimateDeletionCount(JNIEnv *env, jobject obj, jboolean from_server, jlong seconds)
 {
     return dc_estimate_deletion_cnt(get_dc_context(env, obj), from_server, seconds);
@@ -1117,12 +1226,6 @@ static dc_chatlist_t* get_dc_chatlist(JNIEnv *env, jobject obj)
 }
 
 
-JNIEXPORT void Java_com_b44t_messenger_DcChatlist_unrefChatlistCPtr(JNIEnv *env, jobject obj)
-{
-    dc_chatlist_unref(get_dc_chatlist(env, obj));
-}
-
-
 JNIEXPORT jint Java_com_b44t_messenger_DcChatlist_getCnt(JNIEnv *env, jobject obj)
 {
     return dc_chatlist_get_cnt(get_dc_chatlist(env, obj));
@@ -1180,12 +1283,6 @@ static dc_chat_t* get_dc_chat(JNIEnv *env, jobject obj)
 }
 
 
-JNIEXPORT void Java_com_b44t_messenger_DcChat_unrefChatCPtr(JNIEnv *env, jobject obj)
-{
-    dc_chat_unref(get_dc_chat(env, obj));
-}
-
-
 JNIEXPORT jint Java_com_b44t_messenger_DcChat_getId(JNIEnv *env, jobject obj)
 {
     return dc_chat_get_id(get_dc_chat(env, obj));
@@ -1292,6 +1389,112 @@ JNIEXPORT jintArray Java_com_b44t_messenger_DcContext_getChatMedia(JNIEnv *env,
 }
 
 
+JNIEXPORT jlongArray Java_com_b44t_messenger_DcContext_getMsgTimestamps(JNIEnv *env, jobject obj, jintArray msg_ids)
+{
+    /* returns the timestamps of many messages without creating a Java object for each message;
+    timestamps of messages that cannot be loaded are 0.
+    the core has no call returning only timestamps, so each message is still loaded completely by dc_get_msg();
+    this saves the Java objects and JNI crossings, but not the database work. */
+    int i, msg_ids_cnt = 0;
+    uint32_t* msg_ids_ptr = jintArray2uint32Pointer(env, msg_ids, &msg_ids_cnt);
+    jlongArray ret = (*env)->NewLongArray(env, msg_ids_cnt);
+    if (ret && msg_ids_cnt) {
+        dc_context_t* dc_context = get_dc_context(env, obj);
+        jlong* temp = calloc(msg_ids_cnt, sizeof(jlong));
+        if (temp) {
+            for (i = 0; i < msg_ids_cnt; i++) {
+                dc_msg_t* msg = dc_get_msg(dc_context, msg_ids_ptr[i]);
+                if (msg) {
+                    temp[i] = JTIMESTAMP(dc_msg_get_timestamp(msg));
+                    dc_msg_unref(msg);
+                }
+            }
+            (*env)->SetLongArrayRegion(env, ret, 0, msg_ids_cnt, temp);
+            free(temp);
+        }
+    }
+    free(msg_ids_ptr);
+    return ret;
+}
+
+
+JNIEXPORT void Java_com_b44t_messenger_DcContext_getMsgSnapshotData(JNIEnv *env, jobject obj, jintArray msg_ids, jlongArray numbers, jobjectArray strings)
+{
+    /* loads many messages in one call and fills the fields needed to display them into `numbers` and `strings`,
+    see DcMsgSnapshot for the layout. the message objects are not unref'd here, their pointers are returned in `numbers`
+    and owned by the Java objects afterwards. */
+    #define SNAPSHOT_NUMBERS 17
+    #define SNAPSHOT_STRINGS 8
+    int i, j, msg_ids_cnt = 0;
+    uint32_t* msg_ids_ptr = jintArray2uint32Pointer(env, msg_ids, &msg_ids_cnt);
+    if (msg_ids_cnt == 0
+     || (*env)->GetArrayLength(env, numbers) < msg_ids_cnt * SNAPSHOT_NUMBERS
+     || (*env)->GetArrayLength(env, strings) < msg_ids_cnt * SNAPSHOT_STRINGS) {
+        free(msg_ids_ptr);
+        return;
+    }
+
+    dc_context_t* dc_context = get_dc_context(env, obj);
+    jlong* n = calloc(msg_ids_cnt * SNAPSHOT_NUMBERS, sizeof(jlong));
+    if (n) {
+        for (i = 0; i < msg_ids_cnt; i++) {
+            dc_msg_t* msg = dc_get_msg(dc_context, msg_ids_ptr[i]);
+            if (msg == NULL) {
+                continue;
+            }
+
+            jlong* f = &n[i * SNAPSHOT_NUMBERS];
+            f[0]  = (jlong)msg;
+            f[1]  = dc_msg_get_id(msg);
+            f[2]  = dc_msg_get_chat_id(msg);
+            f[3]  = dc_msg_get_from_id(msg);
+            f[4]  = dc_msg_get_viewtype(msg);
+            f[5]  = dc_msg_get_info_type(msg);
+            f[6]  = dc_msg_get_state(msg);
+            f[7]  = dc_msg_get_download_state(msg);
+            f[8]  = JTIMESTAMP(dc_msg_get_timestamp(msg));
+            f[9]  = JTIMESTAMP(dc_msg_get_sort_timestamp(msg));
+            f[10] = dc_msg_get_width(msg);
+            f[11] = dc_msg_get_height(msg);
+            f[12] = dc_msg_get_duration(msg);
+            f[13] = dc_msg_get_showpadlock(msg);
+            f[14] = (dc_msg_is_forwarded(msg)?             0x01 : 0)
+                  | (dc_msg_is_info(msg)?                  0x02 : 0)
+                  | (dc_msg_has_html(msg)?                 0x04 : 0)
+                  | (dc_msg_is_edited(msg)?                0x08 : 0)
+                  | (dc_msg_has_deviating_timestamp(msg)?  0x10 : 0)
+                  | (dc_msg_has_location(msg)?             0x20 : 0);
+            f[15] = dc_msg_get_original_msg_id(msg);
+            f[16] = (jlong)dc_msg_get_filebytes(msg);
+
+            char* s[SNAPSHOT_STRINGS];
+            s[0] = dc_msg_get_text(msg);
+            s[1] = dc_msg_get_file(msg);
+            s[2] = dc_msg_get_filemime(msg);
+            s[3] = dc_msg_get_filename(msg);
+            s[4] = dc_msg_get_error(msg);
+            s[5] = dc_msg_get_override_sender_name(msg);
+            s[6] = dc_msg_get_quoted_text(msg);
+            s[7] = dc_msg_get_subject(msg);
+            for (j = 0; j < SNAPSHOT_STRINGS; j++) {
+                // the override-sender-name is the only field that distinguishes between null and empty
+                if (j != 5 || s[j]) {
+                    jstring str = JSTRING_NEW(s[j]);
+                    (*env)->SetObjectArrayElement(env, strings, i * SNAPSHOT_STRINGS + j, str);
+                    (*env)->DeleteLocalRef(env, str); /* avoid running out of local references for large arrays */
+                }
+                dc_str_unref(s[j]);
+            }
+        }
+        (*env)->SetLongArrayRegion(env, numbers, 0, msg_ids_cnt * SNAPSHOT_NUMBERS, n);
+        free(n);
+    }
+    free(msg_ids_ptr);
+    #undef SNAPSHOT_NUMBERS
+    #undef SNAPSHOT_STRINGS
+}
+
+
 JNIEXPORT jintArray Java_com_b44t_messenger_DcContext_getChatMsgs(JNIEnv *env, jobject obj, jint chat_id, jint flags, jint marker1before)
 {
     dc_array_t* ca = dc_get_chat_msgs(get_dc_context(env, obj), chat_id, flags, marker1before);
@@ -1299,6 +1502,38 @@ JNIEXPORT jintArray Java_com_b44t_messenger_DcContext_getChatMsgs(JNIEnv *env, j
 }
 
 
+JNIEXPORT jintArray Java_com_b44t_messenger_DcContext_getChatMsgsNewest(JNIEnv *env, jobject obj, jint chat_id, jint flags, jint marker1before, jint max_cnt, jintArray total_cnt)
+{
+    /* returns only the newest max_cnt ids of dc_get_chat_msgs(), eg. for the first screen of a large chat;
+    the number of all ids is written to total_cnt[0], so that it belongs to the same snapshot as the returned ids.
+    the core has no range query, so all ids are still loaded by the core;
+    this saves copying the older ids to Java and indexing them there. */
+    dc_array_t* ca = dc_get_chat_msgs(get_dc_context(env, obj), chat_id, flags, marker1before);
+    int i, icnt = ca? dc_array_get_cnt(ca) : 0;
+    int first = (max_cnt >= 0 && icnt > max_cnt)? icnt - max_cnt : 0;
+    jint total = icnt;
+
+    jintArray ret = (*env)->NewIntArray(env, icnt - first);
+    if (ret && icnt > first) {
+        jint* temp = calloc(icnt - first, sizeof(jint));
+        if (temp) {
+            for (i = first; i < icnt; i++) {
+                temp[i - first] = (jint)dc_array_get_id(ca, i);
+            }
+            (*env)->SetIntArrayRegion(env, ret, 0, icnt - first, temp);
+            free(temp);
+        }
+    }
+    if (total_cnt && (*env)->GetArrayLength(env, total_cnt) > 0) {
+        (*env)->SetIntArrayRegion(env, total_cnt, 0, 1, &total);
+    }
+    if (ca) {
+        dc_array_unref(ca);
+    }
+    return ret;
+}
+
+
 JNIEXPORT jintArray Java_com_b44t_messenger_DcContext_searchMsgs(JNIEnv *env, jobject obj, jint chat_id, jstring query)
 {
     CHAR_REF(query);
@@ -1363,12 +1598,6 @@ static dc_msg_t* get_dc_msg(JNIEnv *env, jobject obj)
 }
 
 
-JNIEXPORT void Java_com_b44t_messenger_DcMsg_unrefMsgCPtr(JNIEnv *env, jobject obj)
-{
-    dc_msg_unref(get_dc_msg(env, obj));
-}
-
-
 JNIEXPORT jint Java_com_b44t_messenger_DcMsg_getId(JNIEnv *env, jobject obj)
 {
     return dc_msg_get_id(get_dc_msg(env, obj));
@@ -1384,6 +1613,15 @@ JNIEXPORT jstring Java_com_b44t_messenger_DcMsg_getText(JNIEnv *env, jobject obj
 }
 
 
+JNIEXPORT jbyteArray Java_com_b44t_messenger_DcMsg_getTextUtf8(JNIEnv *env, jobject obj)
+{
+    char* temp = dc_msg_get_text(get_dc_msg(env, obj));
+        jbyteArray ret = ptr2jbyteArray(env, temp, temp? strlen(temp) : 0);
+    dc_str_unref(temp);
+    return ret;
+}
+
+
 JNIEXPORT jstring Java_com_b44t_messenger_DcMsg_getSubject(JNIEnv *env, jobject obj)
 {
     char* temp = dc_msg_get_subject(get_dc_msg(env, obj));
@@ -1732,12 +1970,6 @@ static dc_contact_t* get_dc_contact(JNIEnv *env, jobject obj)
 }
 
 
-JNIEXPORT void Java_com_b44t_messenger_DcContact_unrefContactCPtr(JNIEnv *env, jobject obj)
-{
-    dc_contact_unref(get_dc_contact(env, obj));
-}
-
-
 JNIEXPORT jint Java_com_b44t_messenger_DcContact_getId(JNIEnv *env, jobject obj)
 {
     return dc_contact_get_id(get_dc_contact(env, obj));
@@ -1905,9 +2137,22 @@ JNIEXPORT jint Java_com_b44t_messenger_DcLot_getId(JNIEnv *env, jobject obj)
 }
 
 
-JNIEXPORT void Java_com_b44t_messenger_DcLot_unrefLotCPtr(JNIEnv *env, jobject obj)
+/*******************************************************************************
+ * NativeHandles
+ ******************************************************************************/
+
+
+JNIEXPORT void Java_com_b44t_messenger_NativeHandles_unrefCPtr(JNIEnv *env, jclass cls, jint type, jlong cptr)
 {
-    dc_lot_unref(get_dc_lot(env, obj));
+    /* called with the pointer only, as the Java object may already be garbage collected.
+    the types must match the TYPE_* constants in NativeHandles.java */
+    switch (type) {
+        case 0: dc_msg_unref((dc_msg_t*)cptr); break;
+        case 1: dc_chat_unref((dc_chat_t*)cptr); break;
+        case 2: dc_contact_unref((dc_contact_t*)cptr); break;
+        case 3: dc_lot_unref((dc_lot_t*)cptr); break;
+        case 4: dc_chatlist_unref((dc_chatlist_t*)cptr); break;
+    }
 }
 
 
@@ -0,0 +1,99 @@
+package com.b44t.messenger.uibenchmarks;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import com.b44t.messenger.DcContext;
+import com.b44t.messenger.TestUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.thoughtcrime.securesms.ConversationActivity;
+import org.thoughtcrime.securesms.connect.DcHelper;
+
+@Ignore("This is not a test, but a benchmark. Remove the @Ignore to run it.")
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class OpenChatFirstFrameBenchmark {
+
+  // ==============================================================================================
+  // Measures the time from launching a chat until its first messages are laid out,
+  // for chats of different sizes created in a new offline account.
+  // ==============================================================================================
+  private final static int[] CHAT_SIZES = {100, 1000, 10000};
+  private final static int OPEN_N_TIMES = 10;
+  private final static long TIMEOUT_MILLIS = 30000;
+
+  private final static String TAG = OpenChatFirstFrameBenchmark.class.getSimpleName();
+
+  private DcContext dcContext;
+
+  @Before
+  public void setup() {
+    TestUtils.createOfflineAccount();
+    dcContext = DcHelper.getContext(getInstrumentation().getTargetContext());
+  }
+
+  @Test
+  public void openChatsBySize() {
+    for (int size : CHAT_SIZES) {
+      int chatId = createChat(size);
+
+      String[] times = new String[OPEN_N_TIMES];
+      for (int i = 0; i < times.length; i++) {
+        times[i] = "" + timeFirstFrame(chatId);
+      }
+      Log.i(TAG, "MEASURED RESULTS (Benchmark) - First frame of a chat with " + size + " messages: " + String.join(",", times));
+    }
+  }
+
+  private int createChat(int size) {
+    long start = System.currentTimeMillis();
+    int chatId = dcContext.createGroupChat(false, size + " messages");
+    for (int i = 0; i < size; i++) {
+      dcContext.sendTextMsg(chatId, "Message #" + i);
+    }
+    Log.i(TAG, "Created chat with " + size + " messages in " + (System.currentTimeMillis() - start) + "ms");
+    return chatId;
+  }
+
+  private long timeFirstFrame(int chatId) {
+    Context context = getInstrumentation().getTargetContext();
+    Intent intent = new Intent(context, ConversationActivity.class);
+    intent.putExtra(ConversationActivity.ACCOUNT_ID_EXTRA, dcContext.getAccountId());
+    intent.putExtra(ConversationActivity.CHAT_ID_EXTRA, chatId);
+
+    long start = SystemClock.elapsedRealtime();
+    try (ActivityScenario<ConversationActivity> scenario = ActivityScenario.launch(intent)) {
+      // the messages are loaded in the background, so wait until the list has laid out the first ones
+      boolean[] laidOut = new boolean[1];
+      while (!laidOut[0]) {
+        if (SystemClock.elapsedRealtime() - start > TIMEOUT_MILLIS) {
+          throw new RuntimeException("chat " + chatId + " not shown within " + TIMEOUT_MILLIS + "ms");
+        }
+        scenario.onActivity(activity -> {
+          RecyclerView list = activity.findViewById(android.R.id.list);
+          laidOut[0] = list != null && list.getChildCount() > 0;
+        });
+      }
+      return SystemClock.elapsedRealtime() - start;
+    }
+  }
+
+  @After
+  public void cleanup() {
+    TestUtils.cleanup();
+  }
+}
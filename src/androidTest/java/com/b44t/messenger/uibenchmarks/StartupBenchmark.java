@@ -0,0 +1,147 @@
+package com.b44t.messenger.uibenchmarks;
+
+import static androidx.test.espresso.Espresso.onView;
+import static androidx.test.espresso.assertion.ViewAssertions.matches;
+import static androidx.test.espresso.matcher.ViewMatchers.isDisplayed;
+import static androidx.test.espresso.matcher.ViewMatchers.withId;
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.b44t.messenger.DcAccounts;
+import com.b44t.messenger.DcContext;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.thoughtcrime.securesms.ApplicationContext;
+import org.thoughtcrime.securesms.ConversationListActivity;
+import org.thoughtcrime.securesms.R;
+import org.thoughtcrime.securesms.connect.AccountManager;
+import org.thoughtcrime.securesms.connect.DcHelper;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@Ignore("This is not a test, but a benchmark. Remove the @Ignore to run it.")
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class StartupBenchmark {
+
+  // ==============================================================================================
+  // The accounts are opened by ApplicationContext.onCreate() when the process starts,
+  // so a cold start can only be measured by a new process. For each number of accounts N, run (fossDebug)
+  //
+  //   adb shell am instrument -w -e accounts N -e class com.b44t.messenger.uibenchmarks.StartupBenchmark#createAccounts \
+  //       com.b44t.messenger.beta.test/androidx.test.runner.AndroidJUnitRunner
+  //   adb shell am force-stop com.b44t.messenger.beta
+  //   adb shell am instrument -w -e accounts N -e class com.b44t.messenger.uibenchmarks.StartupBenchmark#coldStart \
+  //       com.b44t.messenger.beta.test/androidx.test.runner.AndroidJUnitRunner
+  //
+  // repeating the last two commands to get several timings; createAccounts only adds the missing accounts.
+  // Afterwards, run removeAccounts to remove the accounts added by the benchmark.
+  // ==============================================================================================
+  private final static int LAUNCH_N_TIMES = 10;
+
+  private final static String ACCOUNTS_ARGUMENT = "accounts";
+  private final static String DEFAULT_ACCOUNTS  = "10";
+  private final static String BENCHMARK_ADDR_SUFFIX = "@startup-benchmark.example.org";
+
+  private final static String TAG = StartupBenchmark.class.getSimpleName();
+
+  @Test
+  public void createAccounts() {
+    Context context = getInstrumentation().getTargetContext();
+    DcAccounts dcAccounts = DcHelper.getAccounts(context);
+    int accountCount = getAccountCount();
+    int selectedId = dcAccounts.getSelectedAccount().getAccountId();
+
+    for (int i = dcAccounts.getAll().length; i < accountCount; i++) {
+      AccountManager.getInstance().beginAccountCreation(context);
+      DcContext c = DcHelper.getContext(context);
+      c.setConfig("configured_addr", "account" + i + BENCHMARK_ADDR_SUFFIX);
+      c.setConfig("configured_mail_pw", "abcd");
+      c.setConfig("configured", "1");
+    }
+
+    if (selectedId != 0) {
+      AccountManager.getInstance().switchAccount(context, selectedId);
+    }
+    Log.i(TAG, "Created accounts, there are " + dcAccounts.getAll().length + " accounts now");
+  }
+
+  @Test
+  public void coldStart() throws InterruptedException {
+    Context context = getInstrumentation().getTargetContext();
+    ApplicationContext application = ApplicationContext.getInstance(context);
+
+    CountDownLatch allOpened = new CountDownLatch(1);
+    long[] allOpenedAt = new long[1];
+    application.startupOrchestrator.runWhenAllOpened(() -> {
+      allOpenedAt[0] = SystemClock.elapsedRealtime();
+      allOpened.countDown();
+    });
+    if (!allOpened.await(60, TimeUnit.SECONDS)) {
+      throw new RuntimeException("accounts not opened within 60 seconds");
+    }
+
+    int accounts = DcHelper.getAccounts(context).getAll().length;
+    if (accounts != getAccountCount()) {
+      throw new RuntimeException("expected " + getAccountCount() + " accounts but there are " + accounts + ", run createAccounts first");
+    }
+
+    // if all accounts were open already when this test started, this is the time until the test started
+    String sinceProcessStart = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N ?
+        (allOpenedAt[0] - Process.getStartElapsedRealtime()) + " ms" : "unknown";
+    Log.i(TAG, "MEASURED RESULTS (Benchmark) - Cold start with " + accounts + " accounts, "
+        + "process start until all accounts opened: " + sinceProcessStart + "\n"
+        + application.startupOrchestrator.getStats());
+  }
+
+  @Test
+  public void removeAccounts() {
+    Context context = getInstrumentation().getTargetContext();
+    DcAccounts dcAccounts = DcHelper.getAccounts(context);
+    int selectedId = dcAccounts.getSelectedAccount().getAccountId();
+
+    int removed = 0;
+    for (int accountId : dcAccounts.getAll()) {
+      String addr = dcAccounts.getAccount(accountId).getConfig("configured_addr");
+      if (addr != null && addr.endsWith(BENCHMARK_ADDR_SUFFIX) && accountId != selectedId) {
+        dcAccounts.removeAccount(accountId);
+        removed++;
+      }
+    }
+    Log.i(TAG, "Removed " + removed + " accounts");
+  }
+
+  @Test
+  public void launchChatlist() {
+    Intent intent = Intent.makeMainActivity(new ComponentName(getInstrumentation().getTargetContext(), ConversationListActivity.class));
+
+    String[] times = new String[LAUNCH_N_TIMES];
+    for (int i = 0; i < times.length; i++) {
+      long start = System.currentTimeMillis();
+      try (ActivityScenario<ConversationListActivity> ignored = ActivityScenario.launch(intent)) {
+        onView(withId(R.id.list)).check(matches(isDisplayed()));
+        times[i] = "" + (System.currentTimeMillis() - start);
+      }
+    }
+    Log.i(TAG, "MEASURED RESULTS (Benchmark) - Launching the chatlist (warm): " + String.join(",", times));
+  }
+
+  private static int getAccountCount() {
+    return Integer.parseInt(InstrumentationRegistry.getArguments().getString(ACCOUNTS_ARGUMENT, DEFAULT_ACCOUNTS));
+  }
+}
@@ -0,0 +1,120 @@
+package com.b44t.messenger.uibenchmarks;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import com.b44t.messenger.DcContext;
+import com.b44t.messenger.DcMsg;
+import com.b44t.messenger.TestUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.thoughtcrime.securesms.connect.DcHelper;
+
+import java.nio.charset.StandardCharsets;
+
+@Ignore("This is not a test, but a benchmark. Remove the @Ignore to run it.")
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class StringMarshallingBenchmark {
+
+  private final static int ROUNDS = 8;
+  private final static int CALLS_PER_ROUND = 20000;
+
+  private final static String TAG = StringMarshallingBenchmark.class.getSimpleName();
+
+  private final static String ASCII_TEXT = repeat("Hello, how are you? Let's meet at 8. ", 8);
+  private final static String EMOJI_TEXT = repeat("Hallo 😊👍🏽 Grüße, привет, 你好 🎉🇩🇪 ", 8);
+
+  private DcContext dcContext;
+
+  @Before
+  public void setup() {
+    TestUtils.createOfflineAccount();
+    dcContext = DcHelper.getContext(getInstrumentation().getTargetContext());
+  }
+
+  @Test
+  public void setAsciiText() {
+    measureSetText("ASCII", ASCII_TEXT);
+  }
+
+  @Test
+  public void setEmojiText() {
+    measureSetText("emoji", EMOJI_TEXT);
+  }
+
+  @Test
+  public void getAsciiText() {
+    measureGetText("ASCII", ASCII_TEXT);
+  }
+
+  @Test
+  public void getEmojiText() {
+    measureGetText("emoji", EMOJI_TEXT);
+  }
+
+  // Java -> C: String to UTF-8 char*, done in char_ref__()
+  private void measureSetText(String kind, String text) {
+    DcMsg msg = new DcMsg(dcContext, DcMsg.DC_MSG_TEXT);
+    String[] times = new String[ROUNDS];
+    for (int i = 0; i < ROUNDS; i++) {
+      long start = System.currentTimeMillis();
+      for (int j = 0; j < CALLS_PER_ROUND; j++) {
+        msg.setText(text);
+      }
+      times[i] = "" + (System.currentTimeMillis() - start);
+    }
+    msg.close();
+    Log.i(TAG, "MEASURED RESULTS (Benchmark) - " + CALLS_PER_ROUND + "x setText(), " + kind + ": " + String.join(",", times));
+  }
+
+  // C -> Java: getText() converts to UTF-16 in C,
+  // getTextUtf8() plus decoding in Java is what jstring_new__() did before and is measured for comparison
+  private void measureGetText(String kind, String text) {
+    DcMsg msg = new DcMsg(dcContext, DcMsg.DC_MSG_TEXT);
+    msg.setText(text);
+    if (!text.equals(msg.getText()) || !text.equals(new String(msg.getTextUtf8(), StandardCharsets.UTF_8))) {
+      throw new RuntimeException("text changed while marshalling");
+    }
+
+    String[] nativeTimes = new String[ROUNDS];
+    String[] javaTimes = new String[ROUNDS];
+    for (int i = 0; i < ROUNDS; i++) {
+      long start = System.currentTimeMillis();
+      for (int j = 0; j < CALLS_PER_ROUND; j++) {
+        msg.getText();
+      }
+      nativeTimes[i] = "" + (System.currentTimeMillis() - start);
+
+      start = System.currentTimeMillis();
+      for (int j = 0; j < CALLS_PER_ROUND; j++) {
+        new String(msg.getTextUtf8(), StandardCharsets.UTF_8);
+      }
+      javaTimes[i] = "" + (System.currentTimeMillis() - start);
+    }
+    msg.close();
+    Log.i(TAG, "MEASURED RESULTS (Benchmark) - " + CALLS_PER_ROUND + "x getText(), " + kind + ": " + String.join(",", nativeTimes));
+    Log.i(TAG, "MEASURED RESULTS (Benchmark) - " + CALLS_PER_ROUND + "x getTextUtf8() decoded in Java, " + kind + ": " + String.join(",", javaTimes));
+  }
+
+  private static String repeat(String string, int n) {
+    StringBuilder s = new StringBuilder();
+    for (int i = 0; i < n; i++) {
+      s.append(string);
+    }
+    return s.toString();
+  }
+
+  @After
+  public void cleanup() {
+    TestUtils.cleanup();
+  }
+}
@@ -30,10 +30,40 @@ public class DcAccounts {
     public native int             migrateAccount       (String dbfile);
     public native boolean         removeAccount        (int accountId);
     public native int[]           getAll               ();
-    public DcContext              getAccount           (int accountId) { return new DcContext(getAccountCPtr(accountId)); }
-    public DcContext              getSelectedAccount   () { return new DcContext(getSelectedAccountCPtr()); }
     public native boolean         selectAccount        (int accountId);
 
+    public DcContext getAccount(int accountId) {
+        awaitOpen(accountId);
+        return new DcContext(getAccountCPtr(accountId));
+    }
+
+    public DcContext getSelectedAccount() {
+        DcContext dcContext = new DcContext(getSelectedAccountCPtr());
+        awaitOpen(dcContext.getAccountId());
+        return dcContext;
+    }
+
+    /**
+     * Lets getAccount() and getSelectedAccount() wait for accounts that are still being opened in the background.
+     * Implementations must not block the main thread.
+     */
+    public interface OpenBarrier {
+        void awaitOpen(int accountId);
+    }
+
+    private volatile OpenBarrier openBarrier;
+
+    public void setOpenBarrier(OpenBarrier openBarrier) {
+        this.openBarrier = openBarrier;
+    }
+
+    private void awaitOpen(int accountId) {
+        OpenBarrier barrier = openBarrier;
+        if (barrier != null) {
+            barrier.awaitOpen(accountId);
+        }
+    }
+
     // working with raw c-data
     private long         accountsCPtr;          // CAVE: the name is referenced in the JNI
     private native long  createAccountsCPtr     (String dir);
@@ -1,6 +1,6 @@
 package com.b44t.messenger;
 
-public class DcChat {
+public class DcChat implements AutoCloseable {
 
     public static final int DC_CHAT_TYPE_UNDEFINED   = 0;
     public static final int DC_CHAT_TYPE_SINGLE      = 100;
@@ -23,12 +23,19 @@ public class DcChat {
     public DcChat(int accountId, long chatCPtr) {
         this.accountId = accountId;
         this.chatCPtr = chatCPtr;
+        this.handle = NativeHandles.register(this, NativeHandles.TYPE_CHAT, chatCPtr);
     }
 
-  @Override protected void finalize() throws Throwable {
-        super.finalize();
-        unrefChatCPtr();
-        chatCPtr = 0;
+    /**
+     * Releases the native chat right away instead of waiting for the garbage collector;
+     * afterwards, the getters return empty values.
+     */
+    @Override
+    public void close() {
+        if (handle != null) {
+            chatCPtr = 0;
+            handle.close();
+        }
     }
 
     public int            getAccountId      () { return accountId; }
@@ -71,7 +78,7 @@ public class DcChat {
     // working with raw c-data
 
     private long        chatCPtr;    // CAVE: the name is referenced in the JNI
-    private native void unrefChatCPtr();
+    private final NativeHandles.Handle handle;
     public long         getChatCPtr  () { return chatCPtr; }
 
 }
@@ -1,18 +1,25 @@
 package com.b44t.messenger;
 
-public class DcChatlist {
+public class DcChatlist implements AutoCloseable {
 
     private int accountId;
 
     public DcChatlist(int accountId, long chatlistCPtr) {
         this.accountId = accountId;
         this.chatlistCPtr = chatlistCPtr;
+        this.handle = NativeHandles.register(this, NativeHandles.TYPE_CHATLIST, chatlistCPtr);
     }
 
-    @Override protected void finalize() throws Throwable {
-        super.finalize();
-        unrefChatlistCPtr();
-        chatlistCPtr = 0;
+    /**
+     * Releases the native chatlist right away instead of waiting for the garbage collector;
+     * afterwards, the getters return empty values.
+     */
+    @Override
+    public void close() {
+        if (handle != null) {
+            chatlistCPtr = 0;
+            handle.close();
+        }
     }
 
     public int              getAccountId() { return accountId; }
@@ -39,7 +46,7 @@ public class DcChatlist {
 
     // working with raw c-data
     private long        chatlistCPtr;    // CAVE: the name is referenced in the JNI
-    private native void unrefChatlistCPtr();
+    private final NativeHandles.Handle handle;
     private native long getChatCPtr      (int index);
     private native long getMsgCPtr       (int index);
     private native long getSummaryCPtr   (int index, long chatCPtr);
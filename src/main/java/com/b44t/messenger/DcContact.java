@@ -1,6 +1,6 @@
 package com.b44t.messenger;
 
-public class DcContact {
+public class DcContact implements AutoCloseable {
 
     public final static int DC_CONTACT_ID_SELF               = 1;
     public final static int DC_CONTACT_ID_INFO               = 2;
@@ -16,13 +16,19 @@ public class DcContact {
 
     public DcContact(long contactCPtr) {
         this.contactCPtr = contactCPtr;
+        this.handle = NativeHandles.register(this, NativeHandles.TYPE_CONTACT, contactCPtr);
     }
 
+    /**
+     * Releases the native contact right away instead of waiting for the garbage collector;
+     * afterwards, the getters return empty values.
+     */
     @Override
-    protected void finalize() throws Throwable {
-        super.finalize();
-        unrefContactCPtr();
-        contactCPtr = 0;
+    public void close() {
+        if (handle != null) {
+            contactCPtr = 0;
+            handle.close();
+        }
     }
 
 
@@ -64,5 +70,5 @@ public class DcContact {
 
     // working with raw c-data
     private long        contactCPtr;    // CAVE: the name is referenced in the JNI
-    private native void unrefContactCPtr();
+    private final NativeHandles.Handle handle;
 }
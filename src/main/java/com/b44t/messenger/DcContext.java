@@ -175,9 +175,11 @@ public class DcContext {
     public native int          setChatName          (int chat_id, String name);
     public native int          setChatProfileImage  (int chat_id, String name);
     public native int[]        getChatMsgs          (int chat_id, int flags, int marker1before);
+    public native int[]        getChatMsgsNewest    (int chat_id, int flags, int marker1before, int max_cnt, int[] total_cnt); // newest max_cnt ids of getChatMsgs(), the core still loads all ids
     public native int[]        searchMsgs           (int chat_id, String query);
     public native int[]        getFreshMsgs         ();
     public native int[]        getChatMedia         (int chat_id, int type1, int type2, int type3);
+    public native long[]       getMsgTimestamps     (int msg_ids[]);
     public native int[]        getChatContacts      (int chat_id);
     public native int          getChatEphemeralTimer (int chat_id);
     public native boolean      setChatEphemeralTimer (int chat_id, int timer);
@@ -191,6 +193,8 @@ public class DcContext {
     public native String       getMsgHtml           (int msg_id);
     public native void         downloadFullMsg      (int msg_id);
     public native int          getFreshMsgCount     (int chat_id);
+    public native int          getMsgCount          (int chat_id);
+    public native int[]        getFreshMsgCounts    (int[] chat_ids); // one JNI call, but still one database query per chat
     public native int          estimateDeletionCount(boolean from_server, long seconds);
     public native void         deleteMsgs           (int msg_ids[]);
     public native void         sendDeleteRequest    (int msg_ids[]);
@@ -257,6 +261,24 @@ public class DcContext {
       startIo();
     }
 
+    /**
+     * Loads many messages in a single native call.
+     * The fields needed to display the messages are read at the same time,
+     * so that their getters do not need to cross JNI again.
+     * Messages that cannot be loaded are returned as DcMsg with isOk() being false.
+     */
+    public DcMsg[] getMsgs(int[] msgIds) {
+      long[] numbers = new long[msgIds.length * DcMsgSnapshot.NUMBER_FIELDS];
+      String[] strings = new String[msgIds.length * DcMsgSnapshot.STRING_FIELDS];
+      getMsgSnapshotData(msgIds, numbers, strings);
+
+      DcMsg[] msgs = new DcMsg[msgIds.length];
+      for (int i = 0; i < msgIds.length; i++) {
+        msgs[i] = numbers[i * DcMsgSnapshot.NUMBER_FIELDS] != 0 ? new DcMsgSnapshot(numbers, strings, i) : new DcMsg(0);
+      }
+      return msgs;
+    }
+
     /**
      * @return true if at least one chat has location streaming enabled
      */
@@ -271,6 +293,7 @@ public class DcContext {
     private native long getChatlistCPtr  (int listflags, String query, int queryId);
     private native long getChatCPtr      (int chat_id);
     private native long getMsgCPtr       (int id);
+    private native void getMsgSnapshotData(int msg_ids[], long numbers[], String strings[]);
     private native long getDraftCPtr    (int id);
     private native long getContactCPtr   (int id);
     private native long checkQrCPtr      (String qr);
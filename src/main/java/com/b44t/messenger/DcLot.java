@@ -1,6 +1,6 @@
 package com.b44t.messenger;
 
-public class DcLot {
+public class DcLot implements AutoCloseable {
 
     public final static int DC_TEXT1_DRAFT    = 1;
     public final static int DC_TEXT1_USERNAME = 2;
@@ -8,12 +8,19 @@ public class DcLot {
 
     public DcLot(long lotCPtr) {
         this.lotCPtr = lotCPtr;
+        this.handle = NativeHandles.register(this, NativeHandles.TYPE_LOT, lotCPtr);
     }
 
-    @Override protected void finalize() throws Throwable {
-        super.finalize();
-        unrefLotCPtr();
-        lotCPtr = 0;
+    /**
+     * Releases the native lot right away instead of waiting for the garbage collector;
+     * afterwards, the getters return empty values.
+     */
+    @Override
+    public void close() {
+        if (handle != null) {
+            lotCPtr = 0;
+            handle.close();
+        }
     }
 
     public native String getText1       ();
@@ -25,5 +32,5 @@ public class DcLot {
 
     // working with raw c-data
     private long        lotCPtr;    // CAVE: the name is referenced in the JNI
-    private native void unrefLotCPtr();
+    private final NativeHandles.Handle handle;
 }
@@ -2,12 +2,14 @@ package com.b44t.messenger;
 
 import android.text.TextUtils;
 
+import com.b44t.messenger.util.MsgPositionIndex;
+
 import org.json.JSONObject;
 
 import java.io.File;
 import java.util.Set;
 
-public class DcMsg {
+public class DcMsg implements AutoCloseable {
 
     public final static int DC_MSG_UNDEFINED = 0;
     public final static int DC_MSG_TEXT = 10;
@@ -65,21 +67,30 @@ public class DcMsg {
 
     public DcMsg(DcContext context, int viewtype) {
         msgCPtr = context.createMsgCPtr(viewtype);
+        handle = NativeHandles.register(this, NativeHandles.TYPE_MSG, msgCPtr);
     }
 
     public DcMsg(long msgCPtr) {
         this.msgCPtr = msgCPtr;
+        this.handle = NativeHandles.register(this, NativeHandles.TYPE_MSG, msgCPtr);
     }
 
     public boolean isOk() {
       return msgCPtr != 0;
     }
 
+    /**
+     * Releases the native message right away instead of waiting for the garbage collector;
+     * afterwards, the getters return empty values.
+     * The native getters read the pointer without locking,
+     * so this must only be called by the thread owning the message, when no other thread uses it anymore.
+     */
     @Override
-    protected void finalize() throws Throwable {
-        super.finalize();
-        unrefMsgCPtr();
-        msgCPtr = 0;
+    public void close() {
+        if (handle != null) {
+            msgCPtr = 0;
+            handle.close();
+        }
     }
 
     @Override
@@ -101,6 +112,17 @@ public class DcMsg {
      * If given a message, calculates the position of the message in the chat
      */
     public static int getMessagePosition(DcMsg msg, DcContext dcContext) {
+        // if the chat is open, use its index instead of loading and scanning all message ids;
+        // the index is only trusted if no messages were added or deleted since it was built,
+        // messages older than the ids loaded by the chat are looked up below
+        MsgPositionIndex liveIndex = MsgPositionIndex.getLive(dcContext.getAccountId(), msg.getChatId());
+        if (liveIndex != null && liveIndex.getTotalCount() == dcContext.getMsgCount(msg.getChatId())) {
+            int position = liveIndex.getPosition(msg.getId());
+            if (position != -1) {
+                return position;
+            }
+        }
+
         int msgs[] = dcContext.getChatMsgs(msg.getChatId(), 0, 0);
         int startingPosition = -1;
         int msgId = msg.getId();
@@ -115,6 +137,7 @@ public class DcMsg {
 
     public native int     getId              ();
     public native String  getText            ();
+    public native byte[]  getTextUtf8        (); // raw UTF-8 bytes without creating a String, null if there is no text; used by StringMarshallingBenchmark
     public native String  getSubject         ();
     public native long    getTimestamp       ();
     public native long    getSortTimestamp   ();
@@ -253,8 +276,8 @@ public class DcMsg {
 
 
     // working with raw c-data
-    private long        msgCPtr;        // CAVE: the name is referenced in the JNI
-    private native void unrefMsgCPtr    ();
+    private volatile long msgCPtr;      // CAVE: the name is referenced in the JNI
+    private final NativeHandles.Handle handle;
     private native long getSummaryCPtr  (long chatCPtr);
     private native void setQuoteCPtr    (long quoteCPtr);
     private native long getQuotedMsgCPtr ();
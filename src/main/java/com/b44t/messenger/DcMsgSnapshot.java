@@ -0,0 +1,148 @@
+package com.b44t.messenger;
+
+/**
+ * A DcMsg loaded by DcContext.getMsgs() together with many other messages.
+ * The fields needed to display a message are read in the same native call,
+ * so the getters below do not cross JNI;
+ * everything else is forwarded to the native message as for any DcMsg.
+ * Setters that change a cached field refresh it from the native message.
+ */
+class DcMsgSnapshot extends DcMsg {
+
+    // layout of the arrays filled by DcContext.getMsgSnapshotData(), must match dc_wrapper.c
+    static final int NUMBER_FIELDS = 17;
+    static final int STRING_FIELDS = 8;
+
+    private static final int FLAG_FORWARDED           = 0x01;
+    private static final int FLAG_INFO                = 0x02;
+    private static final int FLAG_HTML                = 0x04;
+    private static final int FLAG_EDITED              = 0x08;
+    private static final int FLAG_DEVIATING_TIMESTAMP = 0x10;
+    private static final int FLAG_LOCATION            = 0x20;
+
+    private final int id;
+    private final int chatId;
+    private final int fromId;
+    private final int type;
+    private final int infoType;
+    private final int state;
+    private final int downloadState;
+    private final long timestamp;
+    private final long sortTimestamp;
+    private int width;
+    private int height;
+    private int duration;
+    private final int showPadlock;
+    private final int flags;
+    private final int originalMsgId;
+    private long filebytes;
+
+    private String text;
+    private String file;
+    private String filemime;
+    private String filename;
+    private final String error;
+    private final String overrideSenderName;
+    private final String quotedText;
+    private final String subject;
+
+    DcMsgSnapshot(long[] numbers, String[] strings, int index) {
+        super(numbers[index * NUMBER_FIELDS]);
+        int n = index * NUMBER_FIELDS;
+        id            = (int) numbers[n + 1];
+        chatId        = (int) numbers[n + 2];
+        fromId        = (int) numbers[n + 3];
+        type          = (int) numbers[n + 4];
+        infoType      = (int) numbers[n + 5];
+        state         = (int) numbers[n + 6];
+        downloadState = (int) numbers[n + 7];
+        timestamp     = numbers[n + 8];
+        sortTimestamp = numbers[n + 9];
+        width         = (int) numbers[n + 10];
+        height        = (int) numbers[n + 11];
+        duration      = (int) numbers[n + 12];
+        showPadlock   = (int) numbers[n + 13];
+        flags         = (int) numbers[n + 14];
+        originalMsgId = (int) numbers[n + 15];
+        filebytes     = numbers[n + 16];
+
+        int s = index * STRING_FIELDS;
+        text               = strings[s];
+        file               = strings[s + 1];
+        filemime           = strings[s + 2];
+        filename           = strings[s + 3];
+        error              = strings[s + 4];
+        overrideSenderName = strings[s + 5];
+        quotedText         = strings[s + 6];
+        subject            = strings[s + 7];
+    }
+
+    @Override public int     getId()                 { return id; }
+    @Override public String  getText()               { return text; }
+    @Override public String  getSubject()            { return subject; }
+    @Override public long    getTimestamp()          { return timestamp; }
+    @Override public long    getSortTimestamp()      { return sortTimestamp; }
+    @Override public boolean hasDeviatingTimestamp() { return (flags & FLAG_DEVIATING_TIMESTAMP) != 0; }
+    @Override public boolean hasLocation()           { return (flags & FLAG_LOCATION) != 0; }
+    @Override public int     getType()               { return type; }
+    @Override public int     getInfoType()           { return infoType; }
+    @Override public int     getState()              { return state; }
+    @Override public int     getDownloadState()      { return downloadState; }
+    @Override public int     getChatId()             { return chatId; }
+    @Override public int     getFromId()             { return fromId; }
+    @Override public int     getWidth(int def)       { return width != 0 ? width : def; }
+    @Override public int     getHeight(int def)      { return height != 0 ? height : def; }
+    @Override public int     getDuration()           { return duration; }
+    @Override public int     showPadlock()           { return showPadlock; }
+    @Override public String  getFile()               { return file; }
+    @Override public String  getFilemime()           { return filemime; }
+    @Override public String  getFilename()           { return filename; }
+    @Override public long    getFilebytes()          { return filebytes; }
+    @Override public boolean isForwarded()           { return (flags & FLAG_FORWARDED) != 0; }
+    @Override public boolean isInfo()                { return (flags & FLAG_INFO) != 0; }
+    @Override public boolean hasHtml()               { return (flags & FLAG_HTML) != 0; }
+    @Override public String  getQuotedText()         { return quotedText; }
+    @Override public String  getError()              { return error; }
+    @Override public String  getOverrideSenderName() { return overrideSenderName; }
+    @Override public boolean isEdited()              { return (flags & FLAG_EDITED) != 0; }
+    @Override public int     getOriginalMsgId()      { return originalMsgId; }
+
+    @Override
+    public void setText(String text) {
+        super.setText(text);
+        this.text = super.getText();
+    }
+
+    @Override
+    public void setFileAndDeduplicate(String file, String name, String filemime) {
+        super.setFileAndDeduplicate(file, name, filemime);
+        this.file      = super.getFile();
+        this.filename  = super.getFilename();
+        this.filemime  = super.getFilemime();
+        this.filebytes = super.getFilebytes();
+    }
+
+    @Override
+    public void setDimension(int width, int height) {
+        super.setDimension(width, height);
+        refreshMediaSize();
+    }
+
+    @Override
+    public void setDuration(int duration) {
+        super.setDuration(duration);
+        refreshMediaSize();
+    }
+
+    @Override
+    public void lateFilingMediaSize(int width, int height, int duration) {
+        super.lateFilingMediaSize(width, height, duration);
+        refreshMediaSize();
+    }
+
+    private void refreshMediaSize() {
+        width    = super.getWidth(0);
+        height   = super.getHeight(0);
+        duration = super.getDuration();
+    }
+}
@@ -0,0 +1,132 @@
+package com.b44t.messenger;
+
+import android.util.Log;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owns the C pointers of DcMsg, DcChat, DcContact, DcLot and DcChatlist.
+ * A pointer is released either explicitly by close() on its wrapper
+ * or, as a fallback, by a background thread after the wrapper was garbage collected.
+ * Unlike finalize(), the fallback does not delay the collection of the wrapper itself.
+ */
+public class NativeHandles {
+    private static final String TAG = NativeHandles.class.getSimpleName();
+
+    static final int TYPE_MSG      = 0;
+    static final int TYPE_CHAT     = 1;
+    static final int TYPE_CONTACT  = 2;
+    static final int TYPE_LOT      = 3;
+    static final int TYPE_CHATLIST = 4;
+
+    private static final String[] TYPE_NAMES = {"DcMsg", "DcChat", "DcContact", "DcLot", "DcChatlist"};
+
+    private static final ReferenceQueue<Object> queue   = new ReferenceQueue<>();
+    private static final Set<Handle>            handles = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private static final AtomicLong[] live       = newCounters();
+    private static final AtomicLong[] closed     = newCounters();
+    private static final AtomicLong[] collected  = newCounters();
+
+    static {
+        Thread cleaner = new Thread(NativeHandles::cleanUp, "NativeHandleCleaner");
+        cleaner.setDaemon(true);
+        cleaner.start();
+    }
+
+    private static AtomicLong[] newCounters() {
+        AtomicLong[] counters = new AtomicLong[TYPE_NAMES.length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new AtomicLong();
+        }
+        return counters;
+    }
+
+    /**
+     * Takes ownership of the given pointer, returns null for null pointers.
+     */
+    static Handle register(Object owner, int type, long cPtr) {
+        if (cPtr == 0) {
+            return null;
+        }
+        Handle handle = new Handle(owner, type, cPtr);
+        handles.add(handle);
+        live[type].incrementAndGet();
+        return handle;
+    }
+
+    private static void cleanUp() {
+        while (true) {
+            try {
+                Handle handle = (Handle) queue.remove();
+                if (handle.release()) {
+                    collected[handle.type].incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                // the cleaner runs as long as the process
+            } catch (Throwable t) {
+                Log.e(TAG, "cannot release native handle", t);
+            }
+        }
+    }
+
+    public static long getLiveCount(int type) {
+        return live[type].get();
+    }
+
+    /**
+     * Number of handles per type that are alive, were closed explicitly or released after garbage collection,
+     * for debug logs.
+     */
+    public static String getStats() {
+        StringBuilder builder = new StringBuilder();
+        for (int type = 0; type < TYPE_NAMES.length; type++) {
+            builder.append(TYPE_NAMES[type])
+                .append(": live=").append(live[type].get())
+                .append(" closed=").append(closed[type].get())
+                .append(" collected=").append(collected[type].get())
+                .append("\n");
+        }
+        return builder.toString();
+    }
+
+    static final class Handle extends PhantomReference<Object> {
+        private final int           type;
+        private final long          cPtr;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Handle(Object owner, int type, long cPtr) {
+            super(owner, queue);
+            this.type = type;
+            this.cPtr = cPtr;
+        }
+
+        /**
+         * Releases the pointer when called by the owner, later calls do nothing.
+         */
+        void close() {
+            if (release()) {
+                closed[type].incrementAndGet();
+            }
+        }
+
+        private boolean release() {
+            if (!released.compareAndSet(false, true)) {
+                return false;
+            }
+            handles.remove(this);
+            clear();
+            unrefCPtr(type, cPtr);
+            live[type].decrementAndGet();
+            return true;
+        }
+    }
+
+    private static native void unrefCPtr(int type, long cPtr);
+}
@@ -3,13 +3,21 @@ package com.b44t.messenger.rpc;
 import android.util.Log;
 
 import com.b44t.messenger.DcJsonrpcInstance;
+import com.b44t.messenger.util.concurrent.ListenableFuture;
 import com.b44t.messenger.util.concurrent.SettableFuture;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.JsonParseException;
 import com.google.gson.reflect.TypeToken;
-
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -18,7 +26,9 @@ import java.util.concurrent.ExecutionException;
 public class Rpc {
     private final static String TAG = Rpc.class.getSimpleName();
 
-    private final Map<Integer, SettableFuture<JsonElement>> requestFutures = new ConcurrentHashMap<>();
+    private final Map<Integer, PendingRequest<?>> requestFutures = new ConcurrentHashMap<>();
+    // identical requests that are still in flight share one future, key is the result type and serialized method+params
+    private final ConcurrentHashMap<String, SettableFuture<?>> inFlightRequests = new ConcurrentHashMap<>();
     private final DcJsonrpcInstance dcJsonrpcInstance;
     private int requestId = 0;
     private boolean started = false;
@@ -28,36 +38,90 @@ public class Rpc {
         this.dcJsonrpcInstance = dcJsonrpcInstance;
     }
 
-    private void processResponse() throws JsonSyntaxException {
+    /**
+     * Decodes the response in one pass: as soon as the "id" is read,
+     * the "result" is decoded directly into the type registered for that request,
+     * without building an intermediate JsonElement tree.
+     */
+    private void processResponse() {
         String jsonResponse = dcJsonrpcInstance.getNextResponse();
 
-        Response response = gson.fromJson(jsonResponse, Response.class);
-        if (response == null) {
+        int id = 0;
+        PendingRequest<?> pending = null;
+        boolean hasResult = false;
+        Object result = null;
+        JsonElement resultTree = null;
+        JsonElement error = null;
+
+        JsonReader reader = new JsonReader(new StringReader(jsonResponse));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "id":
+                        if (reader.peek() == JsonToken.NUMBER) {
+                            id = reader.nextInt();
+                            pending = requestFutures.remove(id);
+                        } else {
+                            reader.skipValue();
+                        }
+                        break;
+                    case "result":
+                        hasResult = true;
+                        if (pending != null) {
+                            result = gson.fromJson(reader, pending.resultType);
+                        } else if (id == 0) {
+                            // "id" not read yet, keep the tree and decode it once the id is known
+                            resultTree = gson.fromJson(reader, JsonElement.class);
+                        } else {
+                            reader.skipValue();
+                        }
+                        break;
+                    case "error":
+                        error = gson.fromJson(reader, JsonElement.class);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+        } catch (IOException | IllegalStateException | JsonParseException e) {
             Log.e(TAG, "Error parsing JSON: " + jsonResponse);
-            return;
-        } else if (response.id == 0) {
-            // Got JSON-RPC notification/event, ignore
+            if (pending != null) {
+                pending.future.setException(new RpcException("Can't parse JSON-RPC response: " + e.getMessage()));
+            }
             return;
         }
 
-        SettableFuture<JsonElement> future = requestFutures.remove(response.id);
-        if (future == null) { // Got a response with unknown ID, ignore
+        if (id == 0) {
+            // Got JSON-RPC notification/event, ignore
+            return;
+        } else if (pending == null) { // Got a response with unknown ID, ignore
             return;
         }
 
-        if (response.error != null) {
+        if (error != null) {
             String message;
             try {
-                message = response.error.getAsJsonObject().get("message").getAsString();
+                message = error.getAsJsonObject().get("message").getAsString();
             } catch (Exception e) {
                 Log.e(TAG, "Can't get response error message: " + e);
-                message = response.error.toString();
+                message = error.toString();
+            }
+            pending.future.setException(new RpcException(message));
+        } else if (hasResult) {
+            if (resultTree != null) {
+                try {
+                    result = gson.fromJson(resultTree, pending.resultType);
+                } catch (JsonParseException e) {
+                    pending.future.setException(new RpcException("Can't parse JSON-RPC result: " + e.getMessage()));
+                    return;
+                }
             }
-            future.setException(new RpcException(message));
-        } else if (response.result != null) {
-            future.set(response.result);
+            pending.setResult(result);
         } else {
-            future.setException(new RpcException("Got JSON-RPC response without result or error: " + jsonResponse));
+            pending.future.setException(new RpcException("Got JSON-RPC response without result or error: " + jsonResponse));
         }
     }
 
@@ -75,22 +139,88 @@ public class Rpc {
     }
 
     public SettableFuture<JsonElement> call(String method, Object... params) throws RpcException {
+        return send(JsonElement.class, false, method, params);
+    }
+
+    /**
+     * Like call() but if an identical request is already in flight, its future is returned
+     * instead of sending the request again. Use this only for methods whose result depends on the parameters alone,
+     * eg. parsing a given file. State that may change, as reactions, must not be requested this way:
+     * a caller asking after a change could otherwise get the result of a request sent before it.
+     */
+    public SettableFuture<JsonElement> callShared(String method, Object... params) throws RpcException {
+        return send(JsonElement.class, true, method, params);
+    }
+
+    /**
+     * Like call() but the result is decoded directly to the given type on the jsonrpcThread;
+     * listeners are called there as well, so they should not block.
+     */
+    public <T> ListenableFuture<T> callAsync(final Type type, String method, Object... params) {
+        try {
+            return send(type, false, method, params);
+        } catch (RpcException e) {
+            SettableFuture<T> future = new SettableFuture<>();
+            future.setException(e);
+            return future;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> SettableFuture<T> send(Type type, boolean shared, String method, Object[] params) throws RpcException {
         if (!started) throw new RpcException("RPC not started yet.");
 
-        int id;
+        final String key = shared ? type + method + gson.toJson(params) : null;
+        final SettableFuture<T> future;
+        final int id;
         synchronized (this) {
+            if (shared) {
+                SettableFuture<T> inFlight = (SettableFuture<T>) inFlightRequests.get(key);
+                if (inFlight != null) {
+                    return inFlight;
+                }
+            }
             id = ++requestId;
+            future = new SettableFuture<>();
+            if (shared) {
+                inFlightRequests.put(key, future);
+            }
         }
+        if (shared) {
+            future.addListener(new ListenableFuture.Listener<T>() {
+                @Override
+                public void onSuccess(T result) {
+                    inFlightRequests.remove(key, future);
+                }
+
+                @Override
+                public void onFailure(ExecutionException e) {
+                    inFlightRequests.remove(key, future);
+                }
+            });
+        }
+
         String jsonRequest = gson.toJson(new Request(method, params, id));
-        SettableFuture<JsonElement> future = new SettableFuture<>();
-        requestFutures.put(id, future);
+        requestFutures.put(id, new PendingRequest<>(future, type));
         dcJsonrpcInstance.request(jsonRequest);
         return future;
     }
 
     public JsonElement getResult(String method, Object... params) throws RpcException {
+        return getResult(call(method, params));
+    }
+
+    private <T> T getResult(Type type, String method, Object... params) throws RpcException {
+        return getResult(this.<T>send(type, false, method, params));
+    }
+
+    private <T> T getSharedResult(Type type, String method, Object... params) throws RpcException {
+        return getResult(this.<T>send(type, true, method, params));
+    }
+
+    private <T> T getResult(ListenableFuture<T> future) throws RpcException {
         try {
-            return call(method, params).get();
+            return future.get();
         } catch (ExecutionException e) {
             throw (RpcException)e.getCause();
         } catch (InterruptedException e) {
@@ -98,26 +228,56 @@ public class Rpc {
         }
     }
 
+    private static <T> T notNull(T result, String method) throws RpcException {
+        if (result == null) throw new RpcException("Got null result for " + method);
+        return result;
+    }
+
     public List<VcardContact> parseVcard(String path) throws RpcException {
         TypeToken<List<VcardContact>> listType = new TypeToken<List<VcardContact>>(){};
-        return gson.fromJson(getResult("parse_vcard", path), listType.getType());
+        return getSharedResult(listType.getType(), "parse_vcard", path);
     }
 
     public String makeVcard(int accountId, int... contacts) throws RpcException {
-        return gson.fromJson(getResult("make_vcard", accountId, contacts), String.class);
+        return getResult(String.class, "make_vcard", accountId, contacts);
     }
 
     public List<Integer> importVcard(int accountId, String path) throws RpcException {
         TypeToken<List<Integer>> listType = new TypeToken<List<Integer>>(){};
-        return gson.fromJson(getResult("import_vcard", accountId, path), listType.getType());
+        return getResult(listType.getType(), "import_vcard", accountId, path);
     }
 
     public HttpResponse getHttpResponse(int accountId, String url) throws RpcException {
-        return gson.fromJson(getResult("get_http_response", accountId, url), HttpResponse.class);
+        return getResult(HttpResponse.class, "get_http_response", accountId, url);
     }
 
     public Reactions getMsgReactions(int accountId, int msgId) throws RpcException {
-        return gson.fromJson(getResult("get_message_reactions", accountId, msgId), Reactions.class);
+        return getResult(Reactions.class, "get_message_reactions", accountId, msgId);
+    }
+
+    public ListenableFuture<Reactions> getMsgReactionsAsync(int accountId, int msgId) {
+        return callAsync(Reactions.class, "get_message_reactions", accountId, msgId);
+    }
+
+    /**
+     * Get the reactions of several messages, eg. of all visible ones.
+     * All requests are sent before waiting for the first response,
+     * so the calls are pipelined instead of doing one round-trip after another.
+     * Messages without reactions are not added to the returned map.
+     */
+    public Map<Integer, Reactions> getMsgsReactions(int accountId, int... msgIds) throws RpcException {
+        List<ListenableFuture<Reactions>> futures = new ArrayList<>(msgIds.length);
+        for (int msgId : msgIds) {
+            futures.add(getMsgReactionsAsync(accountId, msgId));
+        }
+        Map<Integer, Reactions> result = new HashMap<>();
+        for (int i = 0; i < msgIds.length; i++) {
+            Reactions reactions = getResult(futures.get(i));
+            if (reactions != null) {
+                result.put(msgIds[i], reactions);
+            }
+        }
+        return result;
     }
 
     public int sendReaction(int accountId, int msgId, String... reaction) throws RpcException {
@@ -141,7 +301,7 @@ public class Rpc {
     }
 
     public int getAccountFileSize(int accountId) throws RpcException {
-        return getResult("get_account_file_size", accountId).getAsInt();
+        return notNull(this.<Integer>getResult(Integer.class, "get_account_file_size", accountId), "get_account_file_size");
     }
 
     public void changeContactName(int accountId, int contactId, String name) throws RpcException {
@@ -161,11 +321,11 @@ public class Rpc {
     }
 
     public int createBroadcast(int accountId, String chatName) throws RpcException {
-        return gson.fromJson(getResult("create_broadcast", accountId, chatName), Integer.class);
+        return notNull(this.<Integer>getResult(Integer.class, "create_broadcast", accountId, chatName), "create_broadcast");
     }
 
     public int createGroupChatUnencrypted(int accountId, String chatName) throws RpcException {
-        return gson.fromJson(getResult("create_group_chat_unencrypted", accountId, chatName), Integer.class);
+        return notNull(this.<Integer>getResult(Integer.class, "create_group_chat_unencrypted", accountId, chatName), "create_group_chat_unencrypted");
     }
 
     public void setAccountsOrder(List<Integer> order) throws RpcException {
@@ -186,18 +346,21 @@ public class Rpc {
     }
 
     public String getMigrationError(int accountId) throws RpcException {
-        return gson.fromJson(getResult("get_migration_error", accountId), String.class);
+        return getResult(String.class, "get_migration_error", accountId);
     }
 
-    private static class Response {
-        public final int id;
-        public final JsonElement result;
-        public final JsonElement error;
+    private static class PendingRequest<T> {
+        public final SettableFuture<T> future;
+        public final Type resultType;
 
-        public Response(int id, JsonElement result, JsonElement error) {
-            this.id = id;
-            this.result = result;
-            this.error = error;
+        public PendingRequest(SettableFuture<T> future, Type resultType) {
+            this.future = future;
+            this.resultType = resultType;
+        }
+
+        @SuppressWarnings("unchecked")
+        public void setResult(Object result) {
+            future.set((T) result);
         }
     }
 }
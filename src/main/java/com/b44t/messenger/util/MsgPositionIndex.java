@@ -0,0 +1,150 @@
+package com.b44t.messenger.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps message ids to positions for one snapshot of message ids as returned by DcContext.getChatMsgs().
+ * Positions are counted from the bottom, the newest message has the position 0.
+ * The snapshot may contain only the newest ids of the chat, as returned by DcContext.getChatMsgsNewest();
+ * as positions are counted from the bottom, they are the same as in the snapshot of all ids.
+ * The index is a primitive open-addressing hash table, built on the first lookup;
+ * after that, each lookup is O(1).
+ */
+public class MsgPositionIndex {
+
+  private static final int EMPTY = 0; // 0 is never a valid message id
+
+  private static final Map<Long, MsgPositionIndex> liveIndexes = new HashMap<>();
+
+  private final int[] msgIds;
+  private final int   totalCount;
+  private int[]       keys;
+  private int[]       indexes;
+  private int         mask;
+
+  public MsgPositionIndex(int[] msgIds) {
+    this(msgIds, msgIds == null ? 0 : msgIds.length);
+  }
+
+  /**
+   * @param msgIds     the newest message ids of the chat
+   * @param totalCount the number of all message ids of the snapshot the newest ones were taken from
+   */
+  public MsgPositionIndex(int[] msgIds, int totalCount) {
+    this.msgIds     = msgIds == null ? new int[0] : msgIds;
+    this.totalCount = Math.max(totalCount, this.msgIds.length);
+  }
+
+  public int[] getMsgIds() {
+    return msgIds;
+  }
+
+  public int size() {
+    return msgIds.length;
+  }
+
+  /**
+   * Returns the number of all message ids of the snapshot, including the older ones not contained in the index.
+   */
+  public int getTotalCount() {
+    return totalCount;
+  }
+
+  /**
+   * Returns the position of the message counted from the bottom
+   * or -1 if the message is not in the snapshot or older than the ids contained in the index.
+   */
+  public int getPosition(int msgId) {
+    int index = getIndex(msgId);
+    return index == -1 ? -1 : msgIds.length - 1 - index;
+  }
+
+  /**
+   * Returns the index of the message in the array of message ids or -1 if the message is not in the snapshot.
+   */
+  public int getIndex(int msgId) {
+    if (msgId == EMPTY) {
+      return -1;
+    }
+
+    synchronized (this) {
+      if (keys == null) {
+        build();
+      }
+    }
+
+    int slot = hash(msgId) & mask;
+    while (keys[slot] != EMPTY) {
+      if (keys[slot] == msgId) {
+        return indexes[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private void build() {
+    int capacity = Integer.highestOneBit(Math.max(msgIds.length, 1) * 2 - 1) << 1;
+    int[] newKeys = new int[capacity];
+    int[] newIndexes = new int[capacity];
+    int newMask = capacity - 1;
+
+    for (int i = 0; i < msgIds.length; i++) {
+      int msgId = msgIds[i];
+      if (msgId == EMPTY) {
+        continue;
+      }
+      int slot = hash(msgId) & newMask;
+      while (newKeys[slot] != EMPTY && newKeys[slot] != msgId) {
+        slot = (slot + 1) & newMask;
+      }
+      newKeys[slot] = msgId;
+      newIndexes[slot] = i;
+    }
+
+    indexes = newIndexes;
+    mask = newMask;
+    keys = newKeys;
+  }
+
+  private static int hash(int msgId) {
+    int h = msgId * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private static long chatKey(int accountId, int chatId) {
+    return ((long) accountId << 32) | (chatId & 0xffffffffL);
+  }
+
+  /**
+   * Makes the index available to other parts of the app for the given chat.
+   * This should only be done for indexes that are updated as the chat changes,
+   * eg. by an open conversation that observes its chat.
+   */
+  public static void setLive(int accountId, int chatId, MsgPositionIndex index) {
+    synchronized (liveIndexes) {
+      liveIndexes.put(chatKey(accountId, chatId), index);
+    }
+  }
+
+  public static void removeLive(int accountId, int chatId, MsgPositionIndex index) {
+    synchronized (liveIndexes) {
+      long key = chatKey(accountId, chatId);
+      if (liveIndexes.get(key) == index) {
+        liveIndexes.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Returns the live index of the given chat or null if the chat is not open.
+   * The index is updated only when the conversation reloads its list,
+   * so callers should check getTotalCount() against the current number of messages before trusting it.
+   */
+  public static MsgPositionIndex getLive(int accountId, int chatId) {
+    synchronized (liveIndexes) {
+      return liveIndexes.get(chatKey(accountId, chatId));
+    }
+  }
+}
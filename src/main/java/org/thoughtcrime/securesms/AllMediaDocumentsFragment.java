@@ -85,6 +85,7 @@ public class AllMediaDocumentsFragment
   @Override
   public void onDestroyView() {
     DcHelper.getEventCenter(getContext()).removeObservers(this);
+    getListAdapter().close();
     super.onDestroyView();
   }
 
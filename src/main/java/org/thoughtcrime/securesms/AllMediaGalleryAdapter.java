@@ -66,6 +66,14 @@ class AllMediaGalleryAdapter extends StickyHeaderGridAdapter {
     this.media = media;
   }
 
+  /**
+   * Releases the native objects of the loaded media, should be called when the views are gone.
+   * Media replaced by setMedia() is left to the garbage collector as it may still be selected.
+   */
+  public void close() {
+    media.close();
+  }
+
   @Override
   public StickyHeaderGridAdapter.HeaderViewHolder onCreateHeaderViewHolder(ViewGroup parent, int headerType) {
     return new HeaderHolder(LayoutInflater.from(context).inflate(R.layout.contact_selection_list_divider, parent, false));
@@ -83,6 +83,7 @@ public class AllMediaGalleryFragment
   public void onDestroyView() {
     DcEventCenter eventCenter = DcHelper.getEventCenter(getContext());
     eventCenter.removeObservers(this);
+    getListAdapter().close();
     super.onDestroyView();
   }
 
@@ -10,6 +10,7 @@ import android.net.ConnectivityManager;
 import android.net.LinkProperties;
 import android.net.NetworkCapabilities;
 import android.os.Build;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -23,20 +24,19 @@ import androidx.work.WorkManager;
 
 import com.b44t.messenger.DcAccounts;
 import com.b44t.messenger.DcContext;
-import com.b44t.messenger.DcEvent;
-import com.b44t.messenger.DcEventEmitter;
 import com.b44t.messenger.rpc.Rpc;
 import com.b44t.messenger.rpc.RpcException;
 
 import org.thoughtcrime.securesms.connect.AccountManager;
+import org.thoughtcrime.securesms.connect.DcContactCache;
 import org.thoughtcrime.securesms.connect.DcEventCenter;
+import org.thoughtcrime.securesms.connect.DcEventPump;
 import org.thoughtcrime.securesms.connect.DcHelper;
 import org.thoughtcrime.securesms.connect.FetchWorker;
 import org.thoughtcrime.securesms.connect.ForegroundDetector;
 import org.thoughtcrime.securesms.connect.KeepAliveService;
 import org.thoughtcrime.securesms.connect.NetworkStateReceiver;
-import org.thoughtcrime.securesms.crypto.DatabaseSecret;
-import org.thoughtcrime.securesms.crypto.DatabaseSecretProvider;
+import org.thoughtcrime.securesms.connect.StartupOrchestrator;
 import org.thoughtcrime.securesms.geolocation.DcLocationManager;
 import org.thoughtcrime.securesms.jobmanager.JobManager;
 import org.thoughtcrime.securesms.notifications.FcmReceiveService;
@@ -59,6 +59,9 @@ public class ApplicationContext extends MultiDexApplication {
   public DcContext              dcContext;
   public DcLocationManager      dcLocationManager;
   public DcEventCenter          eventCenter;
+  public DcContactCache         contactCache;
+  public StartupOrchestrator    startupOrchestrator;
+  public DcEventPump            eventPump;
   public NotificationCenter     notificationCenter;
   private JobManager            jobManager;
 
@@ -84,28 +87,29 @@ public class ApplicationContext extends MultiDexApplication {
 
     Log.i("DeltaChat", "++++++++++++++++++ ApplicationContext.onCreate() ++++++++++++++++++");
 
+    long start = SystemClock.elapsedRealtime();
     System.loadLibrary("native-utils");
 
     dcAccounts = new DcAccounts(new File(getFilesDir(), "accounts").getAbsolutePath());
     rpc = new Rpc(dcAccounts.getJsonrpcInstance());
     rpc.start();
     AccountManager.getInstance().migrateToDcAccounts(this);
-    int[] allAccounts = dcAccounts.getAll();
-    for (int accountId : allAccounts) {
-      DcContext ac = dcAccounts.getAccount(accountId);
-      if (!ac.isOpen()) {
-        try {
-          DatabaseSecret secret = DatabaseSecretProvider.getOrCreateDatabaseSecret(this, accountId);
-          boolean res = ac.open(secret.asString());
-          if (res) Log.i(TAG, "Successfully opened account " + accountId + ", path: " + ac.getBlobdir());
-          else Log.e(TAG, "Error opening account " + accountId + ", path: " + ac.getBlobdir());
-        } catch (Exception e) {
-          Log.e(TAG, "Failed to open account " + accountId + ", path: " + ac.getBlobdir() + ": " + e);
-          e.printStackTrace();
-        }
+    startupOrchestrator = new StartupOrchestrator(this, dcAccounts);
+    startupOrchestrator.recordPhase("loadAccounts", start);
+
+    // migrating global notifications pref. to per-account config, added  10/July/24
+    final String NOTIFICATION_PREF = "pref_key_enable_notifications";
+    final boolean isMuted = !Prefs.getBooleanPreference(this, NOTIFICATION_PREF, true);
+
+    // the selected account is opened here, all others in the background
+    startupOrchestrator.openAccounts(account -> {
+      if (isMuted) {
+        account.setMuted(true);
       }
-    }
-    if (allAccounts.length == 0) {
+      account.setConfig(CONFIG_VERIFIED_ONE_ON_ONE_CHATS, "1");
+    });
+
+    if (dcAccounts.getAll().length == 0) {
       try {
         rpc.addAccount();
       } catch (RpcException e) {
@@ -114,38 +118,25 @@ public class ApplicationContext extends MultiDexApplication {
     }
     dcContext = dcAccounts.getSelectedAccount();
     notificationCenter = new NotificationCenter(this);
+    contactCache = new DcContactCache();
     eventCenter = new DcEventCenter(this);
-    new Thread(() -> {
-      DcEventEmitter emitter = dcAccounts.getEventEmitter();
-      while (true) {
-        DcEvent event = emitter.getNextEvent();
-        if (event==null) {
-          break;
-        }
-        eventCenter.handleEvent(event);
-      }
-      Log.i("DeltaChat", "shutting down event handler");
-    }, "eventThread").start();
-
-    // migrating global notifications pref. to per-account config, added  10/July/24
-    final String NOTIFICATION_PREF = "pref_key_enable_notifications";
-    boolean isMuted = !Prefs.getBooleanPreference(this, NOTIFICATION_PREF, true);
-    if (isMuted) {
-      for (int accId : dcAccounts.getAll()) {
-        dcAccounts.getAccount(accId).setMuted(true);
-      }
-      Prefs.removePreference(this, NOTIFICATION_PREF);
-    }
-    // /migrating global notifications
-
-    for (int accountId : allAccounts) {
-      dcAccounts.getAccount(accountId).setConfig(CONFIG_VERIFIED_ONE_ON_ONE_CHATS, "1");
-    }
+    eventPump = new DcEventPump(dcAccounts.getEventEmitter(), eventCenter);
+    eventPump.start();
 
     // set translations before starting I/O to avoid sending untranslated MDNs (issue #2288)
+    long translationsStart = SystemClock.elapsedRealtime();
     DcHelper.setStockTranslations(this);
+    startupOrchestrator.recordPhase("setStockTranslations", translationsStart);
 
-    dcAccounts.startIo();
+    // start IO once for all accounts, startIo() only starts accounts that are open already
+    startupOrchestrator.runWhenAllOpened(() -> {
+      if (isMuted) {
+        Prefs.removePreference(this, NOTIFICATION_PREF);
+      }
+      // /migrating global notifications
+      dcAccounts.startIo();
+      startupOrchestrator.recordPhase("untilStartIo", start);
+    });
 
     new ForegroundDetector(ApplicationContext.getInstance(this));
 
@@ -2,8 +2,6 @@ package org.thoughtcrime.securesms;
 
 import androidx.annotation.NonNull;
 
-import com.b44t.messenger.DcLot;
-
 import org.thoughtcrime.securesms.database.model.ThreadRecord;
 import org.thoughtcrime.securesms.mms.GlideRequests;
 
@@ -13,7 +11,11 @@ public interface BindableConversationListItem extends Unbindable {
 
   public void bind(@NonNull ThreadRecord thread,
                    int msgId,
-                   @NonNull DcLot dcSummary,
                    @NonNull GlideRequests glideRequests,
                    @NonNull Set<Long> selectedThreads, boolean batchMode);
+
+  /**
+   * Shows an empty row for the given chat until its record is loaded and the row is bound again.
+   */
+  public void bindPlaceholder(long chatId, int msgId, @NonNull GlideRequests glideRequests);
 }
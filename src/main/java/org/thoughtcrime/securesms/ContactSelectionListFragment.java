@@ -306,11 +306,7 @@ public class ContactSelectionListFragment extends    Fragment
       @Override
       public void run() {
         try {
-          ContactAccessor contactAccessor = ContactAccessor.getInstance();
-          String allSystemContacts = contactAccessor.getAllSystemContactsAsString(getContext());
-          if (!allSystemContacts.isEmpty()) {
-            dcContext.addAddressBook(allSystemContacts);
-          }
+          ContactAccessor.getInstance().syncSystemContacts(getContext(), dcContext);
         } catch (SecurityException e) {
           Log.e(TAG, "Caught a weird bug in the Android OS https://github.com/deltachat/deltachat-android/issues/1639: " + e);
           e.printStackTrace();
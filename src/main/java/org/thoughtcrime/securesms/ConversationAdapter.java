@@ -32,23 +32,22 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.b44t.messenger.DcChat;
 import com.b44t.messenger.DcContext;
 import com.b44t.messenger.DcMsg;
+import com.b44t.messenger.util.MsgPositionIndex;
 
 import org.thoughtcrime.securesms.ConversationAdapter.HeaderViewHolder;
 import org.thoughtcrime.securesms.connect.DcHelper;
 import org.thoughtcrime.securesms.mms.GlideRequests;
 import org.thoughtcrime.securesms.recipients.Recipient;
 import org.thoughtcrime.securesms.util.DateUtils;
-import org.thoughtcrime.securesms.util.LRUCache;
 import org.thoughtcrime.securesms.util.StickyHeaderDecoration;
 import org.thoughtcrime.securesms.util.Util;
 import org.thoughtcrime.securesms.util.ViewUtil;
 
-import java.lang.ref.SoftReference;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -64,9 +63,9 @@ public class ConversationAdapter <V extends View & BindableConversationItem>
   implements StickyHeaderDecoration.StickyHeaderAdapter<HeaderViewHolder>
 {
 
-  private static final int MAX_CACHE_SIZE = 40;
-  private final Map<Integer,SoftReference<DcMsg>> recordCache =
-      Collections.synchronizedMap(new LRUCache<Integer,SoftReference<DcMsg>>(MAX_CACHE_SIZE));
+  private final ConversationMsgCache msgCache;
+  private final ConversationTextCache textCache = new ConversationTextCache();
+  private final ConversationReactionsCache reactionsCache;
 
   private static final int MESSAGE_TYPE_OUTGOING           = 0;
   private static final int MESSAGE_TYPE_INCOMING           = 1;
@@ -81,6 +80,9 @@ public class ConversationAdapter <V extends View & BindableConversationItem>
   private static final int MESSAGE_TYPE_STICKER_INCOMING   = 10;
   private static final int MESSAGE_TYPE_STICKER_OUTGOING   = 11;
 
+  // payload of notifyItemChanged() if only the delivery state or the reactions of a message changed
+  private static final Object PAYLOAD_MSG_STATUS = new Object();
+
   private final Set<DcMsg> batchSelected = Collections.synchronizedSet(new HashSet<DcMsg>());
 
   private final @Nullable ItemClickListener clickListener;
@@ -93,11 +95,13 @@ public class ConversationAdapter <V extends View & BindableConversationItem>
   private final DcContext      dcContext;
   private @NonNull DcChat      dcChat;
   private @NonNull int[]       dcMsgList = new int[0];
+  private @NonNull MsgPositionIndex positionIndex = new MsgPositionIndex(dcMsgList);
   private int                  positionToPulseHighlight = -1;
   private int                  positionCurrentlyPulseHighlighting = -1;
   private long                 pulseHighlightingSince = -1;
   private int                  lastSeenPosition = -1;
   private long                 lastSeen = -1;
+  private int                  lastBoundPosition = -1;
 
   protected static class ViewHolder extends RecyclerView.ViewHolder {
     public <V extends View & BindableConversationItem> ViewHolder(final @NonNull V itemView) {
@@ -158,29 +162,62 @@ public class ConversationAdapter <V extends View & BindableConversationItem>
       return new DcMsg(0);
     }
 
-    final SoftReference<DcMsg> reference = recordCache.get(position);
-    if (reference != null) {
-      final DcMsg fromCache = reference.get();
-      if (fromCache != null) {
-        return fromCache;
-      }
+    // positions count from the bottom, dcMsgList from the top; binding usually continues upwards
+    return msgCache.get(dcMsgList, dcMsgList.length-1-position, -1);
+  }
+
+  /**
+   * Drops the cached message, should be called when the message was modified.
+   */
+  public void invalidateMsg(int msgId) {
+    msgCache.invalidate(msgId);
+    reactionsCache.invalidate(msgId);
+  }
+
+  /**
+   * Reloads the message and updates its delivery state and reactions in place,
+   * should be called when only these were modified.
+   *
+   * @return false if the message is not in the list, eg. as the list was not reloaded since the message was added.
+   */
+  public boolean updateMsgStatus(int msgId) {
+    int position = msgIdToPosition(msgId);
+    if (position == -1) {
+      return false;
     }
+    msgCache.invalidate(msgId);
+    reactionsCache.invalidate(msgId);
+    notifyItemChanged(position, PAYLOAD_MSG_STATUS);
+    return true;
+  }
 
-    final DcMsg fromDb = dcContext.getMsg((int)getItemId(position));
-    recordCache.put(position, new SoftReference<>(fromDb));
-    return fromDb;
+  /**
+   * Drops all cached messages, should be called when several messages were modified.
+   */
+  public void invalidateMsgs() {
+    msgCache.clear();
+    reactionsCache.clear();
   }
 
   /**
    * Returns the position of the message with msgId in the chat list, counted from the top
    */
   public int msgIdToPosition(int msgId) {
-    for(int i=0; i<dcMsgList.length; i++ ) {
-      if(dcMsgList[i]==msgId) {
-        return dcMsgList.length - 1 - i;
-      }
-    }
-    return -1;
+    return positionIndex.getPosition(msgId);
+  }
+
+  /**
+   * Returns the id-to-position index of the currently shown messages.
+   */
+  public @NonNull MsgPositionIndex getPositionIndex() {
+    return positionIndex;
+  }
+
+  /**
+   * Returns true if only the newest messages of the chat are shown and older ones can be loaded.
+   */
+  public boolean hasOlderMsgs() {
+    return dcMsgList.length < positionIndex.getTotalCount();
   }
 
   static class HeaderViewHolder extends RecyclerView.ViewHolder {
@@ -220,6 +257,12 @@ public class ConversationAdapter <V extends View & BindableConversationItem>
     this.inflater = LayoutInflater.from(context);
     this.calendar = Calendar.getInstance();
     this.dcContext     = DcHelper.getContext(context);
+    this.msgCache      = new ConversationMsgCache(context, dcContext, ConversationMsgCache.DEFAULT_PREFETCH_WINDOW);
+    this.reactionsCache = new ConversationReactionsCache(DcHelper.getRpc(context), dcContext.getAccountId());
+    this.msgCache.setPrefetchListener(msgs -> {
+      textCache.preprocess(msgs);
+      reactionsCache.preload(msgs);
+    });
 
     setHasStableIds(true);
   }
@@ -239,6 +282,29 @@ public class ConversationAdapter <V extends View & BindableConversationItem>
     boolean pulseHighlight = (positionCurrentlyPulseHighlighting == position && elapsed < PULSE_HIGHLIGHT_MILLIS);
 
     holder.getItem().bind(getMsg(position), dcChat, glideRequests, batchSelected, recipient, pulseHighlight);
+
+    // positions count from the bottom, dcMsgList from the top
+    if (lastBoundPosition != -1 && position != lastBoundPosition) {
+      msgCache.prefetch(dcMsgList, dcMsgList.length - 1 - position, position > lastBoundPosition ? -1 : 1);
+    }
+    lastBoundPosition = position;
+  }
+
+  @Override
+  public void onBindViewHolder(@NonNull RecyclerView.ViewHolder viewHolder, int position, @NonNull List<Object> payloads) {
+    BindableConversationItem item = ((ConversationAdapter.ViewHolder)viewHolder).getItem();
+    if (!payloads.isEmpty() && item instanceof ConversationItem) {
+      boolean statusOnly = true;
+      for (Object payload : payloads) {
+        statusOnly &= payload == PAYLOAD_MSG_STATUS;
+      }
+      DcMsg boundMsg = ((ConversationItem) item).getMessageRecord();
+      if (statusOnly && boundMsg != null && boundMsg.getId() == getItemId(position)) {
+        ((ConversationItem) item).updateStatus(getMsg(position));
+        return;
+      }
+    }
+    onBindViewHolder(viewHolder, position);
   }
 
   @Override
@@ -263,6 +329,10 @@ public class ConversationAdapter <V extends View & BindableConversationItem>
       return true;
     });
     itemView.setEventListener(clickListener);
+    if (itemView instanceof ConversationItem) {
+      ((ConversationItem) itemView).setTextCache(textCache);
+      ((ConversationItem) itemView).setReactionsCache(reactionsCache);
+    }
     return new ViewHolder(itemView);
   }
 
@@ -374,19 +444,58 @@ public class ConversationAdapter <V extends View & BindableConversationItem>
 
 
   public void changeData(@Nullable int[] dcMsgList) {
-    // should be called when there are new messages
+    // should be called when there are new messages or when some items in a message are changed, eg. seen-state
+    changeData(dcMsgList, false);
+  }
+
+  /**
+   * Like changeData(dcMsgList), but if keepCachedMsgs is set, cached messages are kept as they are cached by id;
+   * this must only be used if all modified messages were invalidated before, eg. on DC_EVENT_INCOMING_MSG.
+   */
+  public void changeData(@Nullable int[] dcMsgList, boolean keepCachedMsgs) {
+    changeData(dcMsgList, dcMsgList == null ? 0 : dcMsgList.length, keepCachedMsgs);
+  }
+
+  /**
+   * Like changeData(dcMsgList, keepCachedMsgs), but dcMsgList may contain only the newest messages of the chat.
+   *
+   * @param totalCount the number of all messages of the chat when the newest ones were loaded
+   */
+  public void changeData(@Nullable int[] dcMsgList, int totalCount, boolean keepCachedMsgs) {
+    if (!keepCachedMsgs) {
+      invalidateMsgs();
+    }
     this.dcMsgList = dcMsgList == null ? new int[0] : dcMsgList;
+    this.positionIndex = new MsgPositionIndex(this.dcMsgList, totalCount);
+    MsgPositionIndex.setLive(dcContext.getAccountId(), dcChat.getId(), positionIndex);
     reloadData();
   }
 
+  /**
+   * Should be called when the adapter is no longer used, so that others do not use its outdated position index.
+   */
+  public void release() {
+    MsgPositionIndex.removeLive(dcContext.getAccountId(), dcChat.getId(), positionIndex);
+  }
+
+  /**
+   * Releases the adapter and the native objects of all cached messages,
+   * should be called when the views of the adapter are gone.
+   */
+  public void close() {
+    release();
+    msgCache.setPrefetchListener(null);
+    msgCache.close();
+    textCache.clear();
+    reactionsCache.clear();
+  }
+
   public void reloadChat() {
     // should be called when the chat was modified
     dcChat = dcContext.getChat(dcChat.getId());
   }
 
   private void reloadData() {
-    // should be called when some items in a message are changed, eg. seen-state
-    recordCache.clear();
     updateLastSeenPosition();
     notifyDataSetChanged();
   }
@@ -64,9 +64,11 @@ import org.thoughtcrime.securesms.util.Debouncer;
 import org.thoughtcrime.securesms.util.StickyHeaderDecoration;
 import org.thoughtcrime.securesms.util.Util;
 import org.thoughtcrime.securesms.util.ViewUtil;
+import org.thoughtcrime.securesms.util.concurrent.Lane;
 import org.thoughtcrime.securesms.util.views.ConversationAdaptiveActionsToolbar;
 import org.thoughtcrime.securesms.videochat.VideochatUtil;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -81,6 +83,10 @@ public class ConversationFragment extends MessageSelectorFragment
 
     private static final int SCROLL_ANIMATION_THRESHOLD = 50;
     private static final int CODE_ADD_EDIT_CONTACT      = 77;
+    // number of the newest messages loaded when a chat is opened
+    private static final int MSG_WINDOW_SIZE            = 200;
+    // older messages are loaded when the list is scrolled this close to the oldest loaded message
+    private static final int MSG_WINDOW_MARGIN          = 50;
 
     private final ActionModeCallback actionModeCallback     = new ActionModeCallback();
     private final ItemClickListener  selectionClickListener = new ConversationFragmentItemClickListener();
@@ -91,6 +97,11 @@ public class ConversationFragment extends MessageSelectorFragment
     private long                        chatId;
     private int                         startingPosition;
     private boolean                     firstLoad;
+    private int                         firstLoadLastSeenPosition = -1;
+    // number of the newest messages to load, grows when scrolling to older messages, main thread only
+    private int                         msgWindow = MSG_WINDOW_SIZE;
+    // scrolling that needs the messages, run when the next load finished, main thread only
+    private final List<Runnable>        afterNextLoad = new ArrayList<>();
     private RecyclerView                list;
     private RecyclerView.ItemDecoration lastSeenDecoration;
     private StickyHeaderDecoration      dateDecoration;
@@ -108,15 +119,6 @@ public class ConversationFragment extends MessageSelectorFragment
         super.onCreate(icicle);
         this.dcContext = DcHelper.getContext(getContext());
 
-        DcEventCenter eventCenter = DcHelper.getEventCenter(getContext());
-        eventCenter.addObserver(DcContext.DC_EVENT_INCOMING_MSG, this);
-        eventCenter.addObserver(DcContext.DC_EVENT_MSGS_CHANGED, this);
-        eventCenter.addObserver(DcContext.DC_EVENT_REACTIONS_CHANGED, this);
-        eventCenter.addObserver(DcContext.DC_EVENT_MSG_DELIVERED, this);
-        eventCenter.addObserver(DcContext.DC_EVENT_MSG_FAILED, this);
-        eventCenter.addObserver(DcContext.DC_EVENT_MSG_READ, this);
-        eventCenter.addObserver(DcContext.DC_EVENT_CHAT_MODIFIED, this);
-
         markseenDebouncer = new Debouncer(800);
         reloadTimer = new Timer("reloadTimer", false);
         reloadTimer.scheduleAtFixedRate(new TimerTask() {
@@ -191,6 +193,9 @@ public class ConversationFragment extends MessageSelectorFragment
     @Override
     public void onDestroy() {
         DcHelper.getEventCenter(getContext()).removeObservers(this);
+        if (list != null && getListAdapter() != null) {
+            getListAdapter().close();
+        }
         reloadTimer.cancel();
         super.onDestroy();
     }
@@ -250,6 +255,11 @@ public class ConversationFragment extends MessageSelectorFragment
             return;
         }
 
+        if (firstLoad) {
+            afterNextLoad.add(this::moveToLastSeen);
+            return;
+        }
+
         if (getListAdapter().getLastSeenPosition() < 0) {
             return;
         }
@@ -268,14 +278,38 @@ public class ConversationFragment extends MessageSelectorFragment
         this.recipient         = Recipient.from(getActivity(), Address.fromChat((int)this.chatId));
         this.startingPosition  = this.getActivity().getIntent().getIntExtra(ConversationActivity.STARTING_POSITION_EXTRA, -1);
         this.firstLoad         = true;
+        this.afterNextLoad.clear();
 
         OnScrollListener scrollListener = new ConversationScrollListener(getActivity());
         list.addOnScrollListener(scrollListener);
     }
 
+    private void initializeEventObservers() {
+        // events of other chats are filtered out by the event center, before they reach the main thread
+        DcEventCenter eventCenter = DcHelper.getEventCenter(getContext());
+        eventCenter.removeObservers(this);
+
+        int accountId = dcContext.getAccountId();
+        eventCenter.addChatObserver(DcContext.DC_EVENT_INCOMING_MSG, accountId, (int) chatId, this);
+        eventCenter.addChatObserver(DcContext.DC_EVENT_MSGS_CHANGED, accountId, (int) chatId, this);
+        eventCenter.addChatObserver(DcContext.DC_EVENT_REACTIONS_CHANGED, accountId, (int) chatId, this);
+        eventCenter.addChatObserver(DcContext.DC_EVENT_MSG_DELIVERED, accountId, (int) chatId, this);
+        eventCenter.addChatObserver(DcContext.DC_EVENT_MSG_FAILED, accountId, (int) chatId, this);
+        eventCenter.addChatObserver(DcContext.DC_EVENT_MSG_READ, accountId, (int) chatId, this);
+        eventCenter.addChatObserver(DcContext.DC_EVENT_CHAT_MODIFIED, accountId, (int) chatId, this);
+    }
+
     private void initializeListAdapter() {
         if (this.recipient != null && this.chatId != -1) {
+            initializeEventObservers();
+            if (getListAdapter() != null) {
+                getListAdapter().release();
+            }
             ConversationAdapter adapter = new ConversationAdapter(getActivity(), this.recipient.getChat(), GlideApp.with(this), selectionClickListener, this.recipient);
+            if (this.recipient.getChat().isMultiUser()) {
+                // senders are shown for each message, load them before the messages are bound
+                DcHelper.getContactCache(getActivity()).warmUpChat(dcContext, (int) chatId);
+            }
             list.setAdapter(adapter);
 
             if (dateDecoration != null) {
@@ -285,6 +319,10 @@ public class ConversationFragment extends MessageSelectorFragment
             list.addItemDecoration(dateDecoration);
 
             int freshMsgs = dcContext.getFreshMsgCount((int) chatId);
+            // set by the first showMsgs(), as the adapter updates the last seen position when it gets the messages
+            firstLoadLastSeenPosition = freshMsgs - 1;
+            // the first load contains the position the chat is opened at
+            msgWindow = Math.max(startingPosition, freshMsgs) + MSG_WINDOW_SIZE;
             SetStartingPositionLinearLayoutManager layoutManager = (SetStartingPositionLinearLayoutManager) list.getLayoutManager();
             if (startingPosition > -1) {
                 layoutManager.setStartingPosition(startingPosition);
@@ -299,7 +337,6 @@ public class ConversationFragment extends MessageSelectorFragment
                 list.removeItemDecoration(lastSeenDecoration);
             }
             if (freshMsgs > 0) {
-                getListAdapter().setLastSeenPosition(freshMsgs - 1);
                 lastSeenDecoration = new ConversationAdapter.LastSeenHeader(getListAdapter());
                 list.addItemDecoration(lastSeenDecoration);
             }
@@ -370,7 +407,8 @@ public class ConversationFragment extends MessageSelectorFragment
     }
 
     public void handleClearChat() {
-        handleDeleteMessages((int) chatId, getListAdapter().getMessageIds());
+        // the adapter may contain only the newest messages
+        handleDeleteMessages((int) chatId, dcContext.getChatMsgs((int) chatId, 0, 0));
     }
 
     private ConversationAdapter getListAdapter() {
@@ -388,6 +426,9 @@ public class ConversationFragment extends MessageSelectorFragment
 
     public void scrollToTop() {
         ConversationAdapter adapter = (ConversationAdapter)list.getAdapter();
+        if (loadAllMsgs(this::scrollToTop)) {
+            return;
+        }
         if (adapter.getItemCount()>0) {
             final int pos = adapter.getItemCount()-1;
             list.post(() -> {
@@ -506,10 +547,54 @@ public class ConversationFragment extends MessageSelectorFragment
     }
 
     private void reloadList() {
-        reloadList(false);
+        reloadList(false, false);
+    }
+
+    /**
+     * Drops the given message from the adapter's cache, msgId 0 drops all cached messages.
+     */
+    private void invalidateMsg(int msgId) {
+        ConversationAdapter adapter = getListAdapter();
+        if (adapter == null) {
+            return;
+        }
+        if (msgId > DcMsg.DC_MSG_ID_DAYMARKER) {
+            adapter.invalidateMsg(msgId);
+        } else {
+            adapter.invalidateMsgs();
+        }
     }
 
-    private void reloadList(boolean chatModified) {
+    /**
+     * Updates a message whose delivery state or reactions changed in place;
+     * the list is only reloaded if the message is not in the list yet.
+     */
+    private void updateMsgStatus(int msgId) {
+        ConversationAdapter adapter = getListAdapter();
+        if (adapter == null) {
+            return;
+        }
+        if (!adapter.updateMsgStatus(msgId)) {
+            invalidateMsg(msgId);
+            reloadList(false, true);
+        }
+    }
+
+    private final Object reloadLock = new Object();
+    private boolean inReload;
+    private boolean needsAnotherReload;
+    private boolean reloadKeepsCachedMsgs;
+    // what to reload, set on the main thread by each reloadList(), guarded by reloadLock
+    private ConversationAdapter reloadAdapter;
+    private DcContext           reloadContext;
+    private int                 reloadChatId;
+    private int                 reloadMsgWindow;
+
+    /**
+     * @param chatModified    the DcChat object has to be reloaded, eg. as the chat was accepted
+     * @param msgsInvalidated all modified messages were invalidated before, so the other cached messages can be kept
+     */
+    private void reloadList(boolean chatModified, boolean msgsInvalidated) {
         ConversationAdapter adapter = getListAdapter();
         if (adapter == null) {
             return;
@@ -520,36 +605,95 @@ public class ConversationFragment extends MessageSelectorFragment
             adapter.reloadChat();
         }
 
-        int oldCount = 0;
-        int oldIndex = 0;
-        int pixelOffset = 0;
-        if (!firstLoad) {
-            oldCount = adapter.getItemCount();
-            oldIndex = ((LinearLayoutManager) list.getLayoutManager()).findFirstCompletelyVisibleItemPosition();
-            View firstView = list.getLayoutManager().findViewByPosition(oldIndex);
-            pixelOffset = (firstView == null) ? 0 : list.getBottom() - firstView.getBottom() - list.getPaddingBottom();
-        }
-
         if (getContext() == null) {
             Log.e(TAG, "reloadList: getContext() was null");
             return;
         }
 
+        // the ids are loaded in the background as this takes long for large chats;
+        // reloads requested meanwhile are done in one go afterwards.
+        // only the newest msgWindow ids are passed to the adapter, older ones are loaded when scrolling to them
         DcContext dcContext = DcHelper.getContext(getContext());
+        synchronized (reloadLock) {
+            reloadAdapter = adapter;
+            reloadContext = dcContext;
+            reloadChatId  = (int) chatId;
+            reloadMsgWindow = msgWindow;
+            // coalesced reloads keep the cached messages only if all of them allow it
+            reloadKeepsCachedMsgs = needsAnotherReload ? reloadKeepsCachedMsgs && msgsInvalidated : msgsInvalidated;
+            needsAnotherReload = true;
+            if (inReload) {
+                return;
+            }
+            inReload = true;
+        }
+
+        // the loop runs as long as reloads are requested, so it must not block a thread of the small ui-critical lane
+        Lane.IO.execute(Lane.PRIORITY_HIGH, () -> {
+            while (true) {
+                final ConversationAdapter loadAdapter;
+                final DcContext loadContext;
+                final int loadChatId;
+                final int loadMsgWindow;
+                final boolean keepCachedMsgs;
+                synchronized (reloadLock) {
+                    if (!needsAnotherReload) {
+                        inReload = false;
+                        return;
+                    }
+                    needsAnotherReload = false;
+                    loadAdapter = reloadAdapter;
+                    loadContext = reloadContext;
+                    loadChatId  = reloadChatId;
+                    loadMsgWindow = reloadMsgWindow;
+                    keepCachedMsgs = reloadKeepsCachedMsgs;
+                }
 
-        long startMs = System.currentTimeMillis();
-        int[] msgs = dcContext.getChatMsgs((int) chatId, 0, 0);
-        Log.i(TAG, "⏰ getChatMsgs(" + chatId + "): " + (System.currentTimeMillis() - startMs) + "ms");
+                long startMs = System.currentTimeMillis();
+                int[] totalCount = new int[1];
+                int[] msgs = loadContext.getChatMsgsNewest(loadChatId, 0, 0, loadMsgWindow, totalCount);
+                Log.i(TAG, "⏰ getChatMsgsNewest(" + loadChatId + "): " + msgs.length + " of " + totalCount[0] + " msgs, " + (System.currentTimeMillis() - startMs) + "ms");
 
-        adapter.changeData(msgs);
+                Util.runOnMain(() -> {
+                    // drop the ids if another chat was opened meanwhile
+                    if (list != null && loadAdapter == getListAdapter() && loadChatId == (int) chatId) {
+                        showMsgs(loadAdapter, msgs, totalCount[0], keepCachedMsgs);
+                    }
+                });
+            }
+        });
+    }
+
+    private void showMsgs(@NonNull ConversationAdapter adapter, @NonNull int[] msgs, int totalCount, boolean keepCachedMsgs) {
+        int oldTotalCount = 0;
+        int oldIndex = 0;
+        int oldMsgId = 0;
+        int pixelOffset = 0;
+        if (!firstLoad) {
+            oldTotalCount = adapter.getPositionIndex().getTotalCount();
+            oldIndex = ((LinearLayoutManager) list.getLayoutManager()).findFirstCompletelyVisibleItemPosition();
+            oldMsgId = (int) adapter.getItemId(oldIndex);
+            View firstView = list.getLayoutManager().findViewByPosition(oldIndex);
+            pixelOffset = (firstView == null) ? 0 : list.getBottom() - firstView.getBottom() - list.getPaddingBottom();
+        }
+
+        adapter.changeData(msgs, totalCount, keepCachedMsgs);
 
         if (firstLoad) {
+            if (firstLoadLastSeenPosition >= 0) {
+                adapter.setLastSeenPosition(firstLoadLastSeenPosition);
+            }
             if (startingPosition >= 0) {
                 getListAdapter().pulseHighlightItem(startingPosition);
             }
             firstLoad = false;
         } else if(oldIndex  > 0) {
-            int newIndex = oldIndex + msgs.length - oldCount;
+            // positions count from the bottom, so they change by messages added or deleted below,
+            // but not by older messages loaded above
+            int newIndex = adapter.msgIdToPosition(oldMsgId);
+            if (newIndex == -1) {
+                newIndex = oldIndex + totalCount - oldTotalCount;
+            }
 
             if (newIndex < 0)                 { newIndex = 0; pixelOffset = 0; }
             else if (newIndex >= msgs.length) { newIndex = msgs.length - 1; pixelOffset = 0; }
@@ -568,6 +712,48 @@ public class ConversationFragment extends MessageSelectorFragment
         if (!isPaused) {
             markseenDebouncer.publish(() -> manageMessageSeenState());
         }
+
+        if (!afterNextLoad.isEmpty()) {
+            List<Runnable> pending = new ArrayList<>(afterNextLoad);
+            afterNextLoad.clear();
+            for (Runnable runnable : pending) {
+                runnable.run();
+            }
+        }
+    }
+
+    /**
+     * Loads older messages if the list is scrolled close to the oldest loaded message.
+     * The number of loaded messages is doubled each time,
+     * so that scrolling through a large chat loads the ids only a few times.
+     */
+    private void loadOlderMsgsIfNeeded() {
+        ConversationAdapter adapter = getListAdapter();
+        // nothing to do if all messages are loaded or if more messages are being loaded already
+        if (adapter == null || !adapter.hasOlderMsgs() || msgWindow > adapter.getItemCount()) {
+            return;
+        }
+        int lastVisible = ((LinearLayoutManager) list.getLayoutManager()).findLastVisibleItemPosition();
+        if (lastVisible >= adapter.getItemCount() - MSG_WINDOW_MARGIN) {
+            msgWindow = adapter.getItemCount() * 2;
+            reloadList(false, true);
+        }
+    }
+
+    /**
+     * Loads all messages if only the newest ones are loaded and runs the callback when they are shown.
+     *
+     * @return false if all messages are loaded already
+     */
+    private boolean loadAllMsgs(@NonNull Runnable afterLoad) {
+        ConversationAdapter adapter = getListAdapter();
+        if (adapter == null || !adapter.hasOlderMsgs()) {
+            return false;
+        }
+        msgWindow = Integer.MAX_VALUE;
+        afterNextLoad.add(afterLoad);
+        reloadList(false, true);
+        return true;
     }
 
     private void updateLocationButton() {
@@ -586,10 +772,16 @@ public class ConversationFragment extends MessageSelectorFragment
     }
 
     public void scrollToMsgId(final int msgId) {
+        if (firstLoad) {
+            afterNextLoad.add(() -> scrollToMsgId(msgId));
+            return;
+        }
         ConversationAdapter adapter = (ConversationAdapter)list.getAdapter();
         int position = adapter.msgIdToPosition(msgId);
         if (position!=-1) {
             scrollAndHighlight(position, false);
+        } else if (loadAllMsgs(() -> scrollToMsgId(msgId))) {
+            Log.i(TAG, "msgId " + msgId + " is older than the loaded messages, loading all messages");
         } else {
             Log.e(TAG, "msgId {} not found for scrolling");
         }
@@ -601,6 +793,10 @@ public class ConversationFragment extends MessageSelectorFragment
       ConversationAdapter adapter = (ConversationAdapter) list.getAdapter();
       if (adapter == null) return;
       int position = adapter.msgIdToPosition(msgId);
+      if (position == -1 && loadAllMsgs(() -> scrollMaybeSmoothToMsgId(msgId))) {
+        Log.i(TAG, "msgId " + msgId + " is older than the loaded messages, loading all messages");
+        return;
+      }
       if (layout != null) {
         int distance1 = Math.abs(position - layout.findFirstVisibleItemPosition());
         int distance2 = Math.abs(position - layout.findLastVisibleItemPosition());
@@ -661,6 +857,8 @@ public class ConversationFragment extends MessageSelectorFragment
             markseenDebouncer.publish(() -> manageMessageSeenState());
 
             ConversationFragment.this.addReactionView.move(dy);
+
+            loadOlderMsgsIfNeeded();
         }
 
         @Override
@@ -938,24 +1136,31 @@ public class ConversationFragment extends MessageSelectorFragment
             case DcContext.DC_EVENT_MSGS_CHANGED:
                 if (event.getData1Int() == 0 // deleted messages or batch insert
                  || event.getData1Int() == chatId) {
-                    reloadList();
+                    invalidateMsg(event.getData2Int());
+                    reloadList(false, true);
                 }
                 break;
 
             case DcContext.DC_EVENT_REACTIONS_CHANGED:
-            case DcContext.DC_EVENT_INCOMING_MSG:
             case DcContext.DC_EVENT_MSG_DELIVERED:
             case DcContext.DC_EVENT_MSG_FAILED:
             case DcContext.DC_EVENT_MSG_READ:
                 if (event.getData1Int() == chatId) {
-                    reloadList();
+                    updateMsgStatus(event.getData2Int());
+                }
+                break;
+
+            case DcContext.DC_EVENT_INCOMING_MSG:
+                if (event.getData1Int() == chatId) {
+                    reloadList(false, true);
                 }
                 break;
 
             case DcContext.DC_EVENT_CHAT_MODIFIED:
                 if (event.getData1Int() == chatId) {
                   updateLocationButton();
-                  reloadList(true);
+                  invalidateMsg(0);
+                  reloadList(true, true);
                 }
                 break;
         }
@@ -118,6 +118,8 @@ public class ConversationItem extends BaseConversationItem
   private           Stub<BorderlessImageView>       stickerStub;
   private           Stub<VcardView>                 vcardViewStub;
   private @Nullable EventListener                   eventListener;
+  private @Nullable ConversationTextCache           textCache;
+  private @Nullable ConversationReactionsCache      reactionsCache;
 
   private int measureCalls;
 
@@ -180,7 +182,7 @@ public class ConversationItem extends BaseConversationItem
     this.showSender             = ((dcChat.isMultiUser() || dcChat.isSelfTalk()) && !messageRecord.isOutgoing()) || messageRecord.getOverrideSenderName() != null;
 
     if (showSender) {
-      this.dcContact = dcContext.getContact(messageRecord.getFromId());
+      this.dcContact = DcHelper.getContactCache(context).getContact(dcContext, messageRecord.getFromId());
     }
 
     if (dcChat.isSelfTalk() && messageRecord.getOriginalMsgId() != 0) {
@@ -217,6 +219,33 @@ public class ConversationItem extends BaseConversationItem
     this.eventListener = eventListener;
   }
 
+  /**
+   * Updates the parts of the item that depend on the delivery state or on the reactions of the message,
+   * without binding the whole message again.
+   */
+  void updateStatus(@NonNull DcMsg messageRecord) {
+    this.messageRecord = messageRecord;
+    setReactions(messageRecord);
+    setFooter(messageRecord);
+    if (Util.isTouchExplorationEnabled(context)) {
+      setContentDescription();
+    }
+  }
+
+  /**
+   * Sets the cache of linkified texts shared by all items of a chat.
+   */
+  void setTextCache(@Nullable ConversationTextCache textCache) {
+    this.textCache = textCache;
+  }
+
+  /**
+   * Sets the cache of reactions shared by all items of a chat.
+   */
+  void setReactionsCache(@Nullable ConversationReactionsCache reactionsCache) {
+    this.reactionsCache = reactionsCache;
+  }
+
   public boolean disallowSwipe(float downX, float downY) {
     // If it is possible to reply to a message, it should also be possible to swipe it.
     // For this to be possible we need a non-null reply icon.
@@ -402,11 +431,13 @@ public class ConversationItem extends BaseConversationItem
       bodyText.setVisibility(View.GONE);
     }
     else {
-      SpannableString spannable = new SpannableString(text);
-      if (batchSelected.isEmpty()) {
-        spannable = Linkifier.linkify(spannable);
+      if (!batchSelected.isEmpty()) {
+        bodyText.setText(new SpannableString(text));
+      } else if (textCache != null) {
+        textCache.setBodyText(bodyText, messageRecord.getId(), text);
+      } else {
+        bodyText.setText(Linkifier.linkify(new SpannableString(text)));
       }
-      bodyText.setText(spannable);
       bodyText.setVisibility(View.VISIBLE);
     }
 
@@ -698,7 +729,7 @@ public class ConversationItem extends BaseConversationItem
     Recipient author = null;
     SlideDeck slideDeck = new SlideDeck();
     if (msg != null) {
-      author = new Recipient(context, dcContext.getContact(msg.getFromId()));
+      author = new Recipient(context, DcHelper.getContactCache(context).getContact(dcContext, msg.getFromId()));
       if (msg.getType() != DcMsg.DC_MSG_TEXT) {
         Slide slide = MediaUtil.getSlideForMsg(context, msg);
         if (slide != null) {
@@ -756,7 +787,8 @@ public class ConversationItem extends BaseConversationItem
 
   private void setReactions(@NonNull DcMsg current) {
     try {
-      Reactions reactions = rpc.getMsgReactions(dcContext.getAccountId(), current.getId());
+      Reactions reactions = reactionsCache != null ? reactionsCache.get(current.getId())
+                                                   : rpc.getMsgReactions(dcContext.getAccountId(), current.getId());
       if (reactions == null) {
         reactionsView.clear();
       } else {
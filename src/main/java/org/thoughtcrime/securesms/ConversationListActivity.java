@@ -168,6 +168,13 @@ public class ConversationListActivity extends PassphraseRequiredActionBarActivit
 
     initializeSearchListener();
 
+    // other accounts may still be opened in the background, update their unread count once they are open
+    ApplicationContext.getInstance(this).startupOrchestrator.runWhenAllOpened(() -> Util.runOnMain(() -> {
+      if (!isFinishing()) {
+        refreshUnreadIndicator();
+      }
+    }));
+
     TooltipCompat.setTooltipText(searchAction, getText(R.string.search_explain));
 
     TooltipCompat.setTooltipText(selfAvatar, getText(R.string.switch_account));
@@ -23,18 +23,25 @@ import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.b44t.messenger.DcChat;
 import com.b44t.messenger.DcChatlist;
 import com.b44t.messenger.DcContext;
-import com.b44t.messenger.DcLot;
 
 import org.thoughtcrime.securesms.connect.DcHelper;
+import org.thoughtcrime.securesms.database.model.ThreadRecord;
 import org.thoughtcrime.securesms.mms.GlideRequests;
+import org.thoughtcrime.securesms.util.Util;
 import org.thoughtcrime.securesms.util.ViewUtil;
+import org.thoughtcrime.securesms.util.concurrent.Lane;
 
 import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * A CursorAdapter for building a list of conversation threads.
@@ -50,9 +57,18 @@ class ConversationListAdapter extends BaseConversationListAdapter<ConversationLi
   private final WeakReference<Context>         context;
   private @NonNull        DcContext            dcContext;
   private @NonNull        DcChatlist           dcChatlist;
+  private volatile @NonNull ChatlistIds        chatlistIds;
   private final @NonNull  GlideRequests        glideRequests;
   private final @NonNull  LayoutInflater       inflater;
   private final @Nullable ItemClickListener    clickListener;
+  private final ThreadRecordCache              threadRecords = new ThreadRecordCache();
+
+  // rows shown by the list, the records of these rows and a margin are created in the background
+  private volatile int visibleFrom = 0;
+  private volatile int visibleTo   = 20;
+  private boolean      prefetching;
+  // chats whose rows are shown with a placeholder as their records were not created when the row was bound
+  private final Set<Integer> placeholders = new HashSet<>();
 
   protected static class ViewHolder extends RecyclerView.ViewHolder {
     public <V extends View & BindableConversationListItem> ViewHolder(final @NonNull V itemView)
@@ -65,14 +81,80 @@ class ConversationListAdapter extends BaseConversationListAdapter<ConversationLi
     }
   }
 
+  /**
+   * Chat ids and last-message ids of a chatlist, read once so that they can be compared without JNI calls.
+   * The numbers of fresh messages are -1 until they are loaded with the records by ThreadRecordCache.load().
+   */
+  static class ChatlistIds {
+    final int   accountId;
+    final int[] chatIds;
+    final int[] msgIds;
+    final int[] freshCounts;
+
+    private ChatlistIds(int accountId, int[] chatIds, int[] msgIds) {
+      this.accountId   = accountId;
+      this.chatIds     = chatIds;
+      this.msgIds      = msgIds;
+      this.freshCounts = new int[chatIds.length];
+      Arrays.fill(freshCounts, -1);
+    }
+
+    static @NonNull ChatlistIds from(@NonNull DcChatlist chatlist) {
+      int cnt = chatlist.getCnt();
+      int[] chatIds = new int[cnt];
+      int[] msgIds = new int[cnt];
+      for (int i = 0; i < cnt; i++) {
+        chatIds[i] = chatlist.getChatId(i);
+        msgIds[i] = chatlist.getMsgId(i);
+      }
+      return new ChatlistIds(chatlist.getAccountId(), chatIds, msgIds);
+    }
+
+    /**
+     * Compares the chatlists by id, a chat is regarded as changed if its last message changed,
+     * if its number of fresh messages is loaded for both lists and changed
+     * or if it is part of changedChatIds.
+     */
+    @NonNull DiffUtil.DiffResult diff(@NonNull ChatlistIds newIds, @NonNull Set<Integer> changedChatIds, boolean allChatsChanged) {
+      final ChatlistIds oldIds = this;
+      return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+        @Override
+        public int getOldListSize() {
+          return oldIds.chatIds.length;
+        }
+
+        @Override
+        public int getNewListSize() {
+          return newIds.chatIds.length;
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+          return oldIds.chatIds[oldPosition] == newIds.chatIds[newPosition];
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+          // special rows as the archive link summarize other chats, always rebind them
+          return !allChatsChanged
+              && newIds.chatIds[newPosition] > DcChat.DC_CHAT_ID_LAST_SPECIAL
+              && oldIds.msgIds[oldPosition] == newIds.msgIds[newPosition]
+              && (oldIds.freshCounts[oldPosition] < 0 || newIds.freshCounts[newPosition] < 0
+                  || oldIds.freshCounts[oldPosition] == newIds.freshCounts[newPosition])
+              && !changedChatIds.contains(newIds.chatIds[newPosition]);
+        }
+      });
+    }
+  }
+
   @Override
   public int getItemCount() {
-    return dcChatlist.getCnt();
+    return chatlistIds.chatIds.length;
   }
 
   @Override
   public long getItemId(int i) {
-    return dcChatlist.getChatId(i);
+    return chatlistIds.chatIds[i];
   }
 
   ConversationListAdapter(@NonNull Context context,
@@ -84,6 +166,7 @@ class ConversationListAdapter extends BaseConversationListAdapter<ConversationLi
     this.glideRequests  = glideRequests;
     this.dcContext      = DcHelper.getContext(context);
     this.dcChatlist     = new DcChatlist(0, 0);
+    this.chatlistIds    = ChatlistIds.from(dcChatlist);
     this.inflater       = LayoutInflater.from(context);
     this.clickListener  = clickListener;
     setHasStableIds(true);
@@ -128,14 +211,120 @@ class ConversationListAdapter extends BaseConversationListAdapter<ConversationLi
       return;
     }
 
-    DcChat chat = dcContext.getChat(dcChatlist.getChatId(i));
-    DcLot summary = dcChatlist.getSummary(i, chat);
-    viewHolder.getItem().bind(DcHelper.getThreadRecord(context, summary, chat), dcChatlist.getMsgId(i), summary, glideRequests, batchSet, batchMode);
+    // usually created by loadThreadRecords() or onVisibleRangeChanged() before;
+    // otherwise, the record is created in the background and the row is bound again then
+    ChatlistIds ids = chatlistIds;
+    ThreadRecord record = threadRecords.get(ids, i);
+    if (record != null) {
+      placeholders.remove(ids.chatIds[i]);
+      viewHolder.getItem().bind(record, ids.msgIds[i], glideRequests, batchSet, batchMode);
+    } else {
+      placeholders.add(ids.chatIds[i]);
+      viewHolder.getItem().bindPlaceholder(ids.chatIds[i], ids.msgIds[i], glideRequests);
+      loadThreadRecordsAsync(ids, i - ThreadRecordCache.PREFETCH_MARGIN, i + 1 + ThreadRecordCache.PREFETCH_MARGIN);
+    }
+  }
+
+  /**
+   * Creates the records of the visible rows of the given chatlist plus a margin,
+   * to be called on a background thread before the chatlist is shown.
+   * The records of changed chats are created again even if their last message did not change.
+   */
+  void loadThreadRecords(@NonNull Context context, @NonNull DcContext dcContext, @NonNull DcChatlist chatlist,
+                         @NonNull ChatlistIds ids, @NonNull Set<Integer> changedChatIds, boolean allChatsChanged) {
+    threadRecords.invalidate(changedChatIds, allChatsChanged);
+    threadRecords.load(context, dcContext, chatlist, ids,
+        visibleFrom - ThreadRecordCache.PREFETCH_MARGIN, visibleTo + ThreadRecordCache.PREFETCH_MARGIN);
+  }
+
+  /**
+   * To be called when the list is scrolled;
+   * creates the records of rows coming into view in the background.
+   *
+   * @param first first visible position
+   * @param last  last visible position
+   */
+  void onVisibleRangeChanged(int first, int last) {
+    if (first < 0) {
+      return;
+    }
+    visibleFrom = first;
+    visibleTo   = last + 1;
+
+    final ChatlistIds ids = chatlistIds;
+    final int from = Math.max(0, first - ThreadRecordCache.PREFETCH_MARGIN);
+    final int to   = Math.min(ids.chatIds.length, last + 1 + ThreadRecordCache.PREFETCH_MARGIN);
+    for (int i = from; i < to; i++) {
+      if (threadRecords.get(ids, i) == null) {
+        loadThreadRecordsAsync(ids, from, to);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Creates the records of the given rows in the background and binds the rows again that were changed
+   * or shown with a placeholder. If a load is already running, placeholders are handled when it is done.
+   */
+  private void loadThreadRecordsAsync(@NonNull ChatlistIds ids, int from, int to) {
+    Context context = this.context.get();
+    if (context == null || prefetching) {
+      return;
+    }
+
+    final DcChatlist chatlist  = dcChatlist;
+    final DcContext  dcContext = this.dcContext;
+    prefetching = true;
+    Lane.UI_CRITICAL.execute(() -> {
+      List<Integer> created = threadRecords.load(context, dcContext, chatlist, ids, from, to);
+      Util.runOnMain(() -> {
+        prefetching = false;
+        if (ids == chatlistIds) {
+          for (int position : created) {
+            notifyItemChanged(position);
+          }
+        }
+        updatePlaceholders();
+      });
+    });
+  }
+
+  /**
+   * Binds the rows shown with a placeholder again if their records are created by now
+   * and creates the records of the other ones in the background. Must not be called while binding.
+   */
+  private void updatePlaceholders() {
+    if (placeholders.isEmpty()) {
+      return;
+    }
+
+    ChatlistIds ids = chatlistIds;
+    int from = Integer.MAX_VALUE;
+    int to   = 0;
+    for (int i = 0; i < ids.chatIds.length; i++) {
+      if (!placeholders.contains(ids.chatIds[i])) {
+        continue;
+      }
+      if (threadRecords.get(ids, i) != null) {
+        placeholders.remove(ids.chatIds[i]);
+        notifyItemChanged(i);
+      } else {
+        from = Math.min(from, i);
+        to   = i + 1;
+      }
+    }
+
+    if (from < to) {
+      loadThreadRecordsAsync(ids, from, to);
+    } else {
+      // the remaining chats are no longer part of the chatlist
+      placeholders.clear();
+    }
   }
 
   @Override
   public int getItemViewType(int i) {
-    int chatId = dcChatlist.getChatId(i);
+    int chatId = chatlistIds.chatIds[i];
 
     if (chatId == DcChat.DC_CHAT_ID_ARCHIVED_LINK) {
       return MESSAGE_TYPE_SWITCH_ARCHIVE;
@@ -148,8 +337,8 @@ class ConversationListAdapter extends BaseConversationListAdapter<ConversationLi
 
   @Override
   public void selectAllThreads() {
-    for (int i = 0; i < dcChatlist.getCnt(); i++) {
-      long threadId = dcChatlist.getChatId(i);
+    for (int chatId : chatlistIds.chatIds) {
+      long threadId = chatId;
       if (threadId > DcChat.DC_CHAT_ID_LAST_SPECIAL) {
         batchSet.add(threadId);
       }
@@ -163,6 +352,13 @@ class ConversationListAdapter extends BaseConversationListAdapter<ConversationLi
     void onSwitchToArchive();
   }
 
+  /**
+   * Returns the ids of the chatlist currently shown; may be called from any thread.
+   */
+  @NonNull ChatlistIds getChatlistIds() {
+    return chatlistIds;
+  }
+
   void changeData(@Nullable DcChatlist chatlist) {
     Context context = this.context.get();
     if (context == null) {
@@ -174,6 +370,30 @@ class ConversationListAdapter extends BaseConversationListAdapter<ConversationLi
       dcChatlist = chatlist;
       dcContext = DcHelper.getContext(context);
     }
+    chatlistIds = ChatlistIds.from(dcChatlist);
     notifyDataSetChanged();
   }
+
+  /**
+   * Shows the new chatlist and only updates the rows that were moved, changed, inserted or removed.
+   * The ids and the diff should be computed on a background thread.
+   * If the shown chatlist is no longer the one the diff is based on, all rows are updated.
+   */
+  void changeData(@NonNull DcChatlist chatlist, @NonNull ChatlistIds newIds, @NonNull ChatlistIds oldIds, @NonNull DiffUtil.DiffResult diff) {
+    Context context = this.context.get();
+    if (context == null) {
+      return;
+    }
+    dcChatlist = chatlist;
+    dcContext = DcHelper.getContext(context);
+    boolean canDispatchDiff = oldIds == chatlistIds && oldIds.accountId == newIds.accountId;
+    chatlistIds = newIds;
+    if (canDispatchDiff) {
+      diff.dispatchUpdatesTo(this);
+      // unchanged rows are not bound again by the diff, even if they show a placeholder
+      updatePlaceholders();
+    } else {
+      notifyDataSetChanged();
+    }
+  }
 }
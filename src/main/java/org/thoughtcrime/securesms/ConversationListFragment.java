@@ -31,6 +31,7 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -51,7 +52,10 @@ import org.thoughtcrime.securesms.util.Prefs;
 import org.thoughtcrime.securesms.util.RelayUtil;
 import org.thoughtcrime.securesms.util.Util;
 import org.thoughtcrime.securesms.util.ViewUtil;
+import org.thoughtcrime.securesms.util.concurrent.Lane;
 
+import java.util.HashSet;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 
@@ -119,6 +123,16 @@ public class ConversationListFragment extends BaseConversationListFragment
     list.setHasFixedSize(true);
     list.setLayoutManager(new LinearLayoutManager(getActivity()));
     list.setItemAnimator(new DeleteItemAnimator());
+    list.addOnScrollListener(new RecyclerView.OnScrollListener() {
+      @Override
+      public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        ConversationListAdapter adapter = (ConversationListAdapter) recyclerView.getAdapter();
+        if (layoutManager != null && adapter != null) {
+          adapter.onVisibleRangeChanged(layoutManager.findFirstVisibleItemPosition(), layoutManager.findLastVisibleItemPosition());
+        }
+      }
+    });
 
     return view;
   }
@@ -142,7 +156,8 @@ public class ConversationListFragment extends BaseConversationListFragment
 
     if (requireActivity().getIntent().getIntExtra(RELOAD_LIST, 0) == 1
         && !chatlistJustLoaded) {
-      loadChatlist();
+      markChatChanged(0);
+      loadChatlistAsync();
       reloadTimerInstantly = false;
     }
     chatlistJustLoaded = false;
@@ -228,6 +243,19 @@ public class ConversationListFragment extends BaseConversationListFragment
   private final Object loadChatlistLock = new Object();
   private boolean inLoadChatlist;
   private boolean needsAnotherLoad;
+  // chats whose rows have to be rebound on the next load even if their last message did not change
+  private final Set<Integer> changedChatIds = new HashSet<>();
+  private boolean allChatsChanged;
+
+  private void markChatChanged(int chatId) {
+    synchronized (loadChatlistLock) {
+      if (chatId == 0) {
+        allChatsChanged = true;
+      } else {
+        changedChatIds.add(chatId);
+      }
+    }
+  }
   private void loadChatlistAsync() {
     synchronized (loadChatlistLock) {
       needsAnotherLoad = true;
@@ -238,7 +266,8 @@ public class ConversationListFragment extends BaseConversationListFragment
       inLoadChatlist = true;
     }
 
-    Util.runOnAnyBackgroundThread(() -> {
+    // the loop sleeps between loads, so it must not block a thread of the small ui-critical lane
+    Util.runOnAnyBackgroundThread(Lane.IO, () -> {
       while(true) {
         synchronized (loadChatlistLock) {
           if (!needsAnotherLoad) {
@@ -271,7 +300,23 @@ public class ConversationListFragment extends BaseConversationListFragment
       Log.w(TAG, "Ignoring call to loadChatlist()");
       return;
     }
-    DcChatlist chatlist = DcHelper.getContext(context).getChatlist(listflags, queryFilter.isEmpty() ? null : queryFilter, 0);
+    ConversationListAdapter adapter = (ConversationListAdapter) list.getAdapter();
+    DcContext dcContext = DcHelper.getContext(context);
+    DcChatlist chatlist = dcContext.getChatlist(listflags, queryFilter.isEmpty() ? null : queryFilter, 0);
+
+    // compare ids with the shown chatlist, so that only changed rows are updated
+    Set<Integer> changedChats;
+    boolean allChanged;
+    synchronized (loadChatlistLock) {
+      changedChats = new HashSet<>(changedChatIds);
+      allChanged = allChatsChanged;
+      changedChatIds.clear();
+      allChatsChanged = false;
+    }
+    ConversationListAdapter.ChatlistIds oldIds = adapter.getChatlistIds();
+    ConversationListAdapter.ChatlistIds newIds = ConversationListAdapter.ChatlistIds.from(chatlist);
+    adapter.loadThreadRecords(context, dcContext, chatlist, newIds, changedChats, allChanged);
+    DiffUtil.DiffResult diff = oldIds.diff(newIds, changedChats, allChanged);
 
     Util.runOnMain(() -> {
       if (chatlist.getCnt() <= 0 && TextUtils.isEmpty(queryFilter)) {
@@ -291,7 +336,7 @@ public class ConversationListFragment extends BaseConversationListFragment
         fab.stopPulse();
       }
 
-      ((ConversationListAdapter)list.getAdapter()).changeData(chatlist);
+      adapter.changeData(chatlist, newIds, oldIds, diff);
     });
   }
 
@@ -344,6 +389,11 @@ public class ConversationListFragment extends BaseConversationListFragment
       }
 
     } else {
+      if (event.getId() == DcContext.DC_EVENT_CONTACTS_CHANGED) {
+        markChatChanged(0);
+      } else {
+        markChatChanged(event.getData1Int());
+      }
       loadChatlistAsync();
     }
   }
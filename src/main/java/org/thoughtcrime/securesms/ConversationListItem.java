@@ -38,7 +38,6 @@ import com.amulyakhare.textdrawable.TextDrawable;
 import com.b44t.messenger.DcChat;
 import com.b44t.messenger.DcContact;
 import com.b44t.messenger.DcContext;
-import com.b44t.messenger.DcLot;
 import com.b44t.messenger.DcMsg;
 
 import org.thoughtcrime.securesms.components.AvatarView;
@@ -102,17 +101,15 @@ public class ConversationListItem extends RelativeLayout
   @Override
   public void bind(@NonNull ThreadRecord thread,
                    int msgId,
-                   @NonNull DcLot dcSummary,
                    @NonNull GlideRequests glideRequests,
                    @NonNull Set<Long> selectedThreads,
                    boolean batchMode)
   {
-    bind(thread, msgId, dcSummary, glideRequests, selectedThreads, batchMode, null);
+    bind(thread, msgId, glideRequests, selectedThreads, batchMode, null);
   }
 
   public void bind(@NonNull ThreadRecord thread,
                    int msgId,
-                   @NonNull DcLot dcSummary,
                    @NonNull GlideRequests glideRequests,
                    @NonNull Set<Long> selectedThreads,
                    boolean batchMode,
@@ -123,13 +120,13 @@ public class ConversationListItem extends RelativeLayout
     this.chatId           = thread.getThreadId();
     this.msgId            = msgId;
 
-    int state       = dcSummary.getState();
+    int state       = thread.getSummaryState();
     int unreadCount = thread.getUnreadCount();
 
     if (highlightSubstring != null) {
-      this.fromView.setText(getHighlightedSpan(recipient.getName(), highlightSubstring));
+      this.fromView.setText(getHighlightedSpan(thread.getName(), highlightSubstring));
     } else {
-      this.fromView.setText(recipient, state!=DcMsg.DC_STATE_IN_FRESH);
+      this.fromView.setText(thread.getName());
     }
 
     subjectView.setVisibility(chatId == DcChat.DC_CHAT_ID_ARCHIVED_LINK? GONE : VISIBLE);
@@ -157,8 +154,7 @@ public class ConversationListItem extends RelativeLayout
 
     this.avatar.setAvatar(glideRequests, recipient, false);
 
-    DcContact contact = recipient.getDcContact();
-    avatar.setSeenRecently(contact != null && contact.wasSeenRecently());
+    avatar.setSeenRecently(thread.isSeenRecently());
 
     fromView.setCompoundDrawablesWithIntrinsicBounds(
         thread.isMuted()? R.drawable.ic_volume_off_grey600_18dp : 0,
@@ -194,7 +190,7 @@ public class ConversationListItem extends RelativeLayout
                    @Nullable String        highlightSubstring)
   {
     DcContext dcContext = DcHelper.getContext(getContext());
-    DcContact sender = dcContext.getContact(messageResult.getFromId());
+    DcContact sender = DcHelper.getContactCache(getContext()).getContact(dcContext, messageResult.getFromId());
     this.selectedThreads = Collections.emptySet();
     Recipient recipient  = new Recipient(getContext(), sender);
 
@@ -221,6 +217,28 @@ public class ConversationListItem extends RelativeLayout
     avatar.setSeenRecently(false);
   }
 
+  @Override
+  public void bindPlaceholder(long chatId, int msgId, @NonNull GlideRequests glideRequests) {
+    this.selectedThreads = Collections.emptySet();
+    this.chatId          = chatId;
+    this.msgId           = msgId;
+
+    fromView.setText("");
+    fromView.setCompoundDrawablesWithIntrinsicBounds(0, 0, 0, 0);
+    subjectView.setText("");
+    dateView.setText("");
+    dateView.setCompoundDrawablesWithIntrinsicBounds(0, 0, 0, 0);
+    archivedBadgeView.setVisibility(GONE);
+    requestBadgeView.setVisibility(GONE);
+    unreadIndicator.setVisibility(GONE);
+    deliveryStatusIndicator.setNone();
+
+    setBatchState(false);
+    setBgColor(null);
+    avatar.clear(glideRequests);
+    avatar.setSeenRecently(false);
+  }
+
   @Override
   public void unbind() {
   }
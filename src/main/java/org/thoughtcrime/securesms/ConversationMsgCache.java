@@ -0,0 +1,238 @@
+package org.thoughtcrime.securesms;
+
+import android.app.ActivityManager;
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.b44t.messenger.DcContext;
+import com.b44t.messenger.DcMsg;
+
+import org.thoughtcrime.securesms.util.LRUCache;
+import org.thoughtcrime.securesms.util.ThreadUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caches DcMsg objects of a chat or of the media gallery by their message id,
+ * so that the cache survives list reloads where only the positions of messages change.
+ * Messages ahead of the scroll direction are prefetched on a background thread,
+ * so that binding a view does not need to wait for the database in most cases.
+ */
+public class ConversationMsgCache {
+
+  private static final int MIN_CACHE_SIZE = 80;
+  private static final int MAX_CACHE_SIZE = 800;
+
+  private static final int BIND_BATCH_SIZE = 12;
+
+  public static final int DEFAULT_PREFETCH_WINDOW = 30;
+
+  private final DcContext                    dcContext;
+  private final LRUCache<Integer, DcMsg>     cache;
+  private final ExecutorService              prefetchExecutor = ThreadUtil.newDynamicSingleThreadedExecutor();
+  private final AtomicInteger                prefetchGeneration = new AtomicInteger();
+  // guarded by cache; incremented on each invalidation, messages loaded before must not be cached afterwards
+  private long                               generation;
+  private final int                          prefetchWindow;
+  private volatile @Nullable PrefetchListener prefetchListener;
+
+  public ConversationMsgCache(@NonNull Context context, @NonNull DcContext dcContext, int prefetchWindow) {
+    this.dcContext      = dcContext;
+    this.cache          = new LRUCache<>(getCacheSize(context, prefetchWindow));
+    this.prefetchWindow = prefetchWindow;
+  }
+
+  public interface PrefetchListener {
+    /**
+     * Called on the prefetch thread with the messages that were just loaded into the cache.
+     */
+    void onPrefetched(@NonNull DcMsg[] msgs);
+  }
+
+  public void setPrefetchListener(@Nullable PrefetchListener prefetchListener) {
+    this.prefetchListener = prefetchListener;
+  }
+
+  /**
+   * The number of cached messages depends on the memory class of the device,
+   * but it is always large enough to hold the prefetch window in both directions.
+   */
+  private static int getCacheSize(@NonNull Context context, int prefetchWindow) {
+    ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+    int memoryClass = activityManager != null ? activityManager.getMemoryClass() : 0;
+    int size = Math.min(Math.max(memoryClass * 2, MIN_CACHE_SIZE), MAX_CACHE_SIZE);
+    return Math.max(size, prefetchWindow * 3);
+  }
+
+  public @NonNull DcMsg get(int msgId) {
+    long loadGeneration;
+    synchronized (cache) {
+      DcMsg fromCache = cache.get(msgId);
+      if (fromCache != null) {
+        return fromCache;
+      }
+      loadGeneration = generation;
+    }
+
+    DcMsg fromDb = dcContext.getMsg(msgId);
+    synchronized (cache) {
+      if (loadGeneration == generation) {
+        cache.put(msgId, fromDb);
+      }
+    }
+    return fromDb;
+  }
+
+  /**
+   * Like get(msgId), but on a cache miss, the following messages are loaded in the same native call,
+   * so that filling an empty screen does not need one call per message.
+   *
+   * @param msgIds    the message ids as returned by getChatMsgs()
+   * @param index     index into msgIds of the message to return
+   * @param direction +1 if the following messages have larger indices, -1 for smaller ones
+   */
+  public @NonNull DcMsg get(@NonNull int[] msgIds, int index, int direction) {
+    int msgId = msgIds[index];
+    if (msgId <= DcMsg.DC_MSG_ID_DAYMARKER) {
+      return get(msgId);
+    }
+    long loadGeneration;
+    synchronized (cache) {
+      DcMsg fromCache = cache.get(msgId);
+      if (fromCache != null) {
+        return fromCache;
+      }
+      loadGeneration = generation;
+    }
+
+    int[] batch = new int[BIND_BATCH_SIZE];
+    int batchCount = 0;
+    batch[batchCount++] = msgId;
+    for (int i = index + direction; i >= 0 && i < msgIds.length && batchCount < BIND_BATCH_SIZE; i += direction) {
+      if (msgIds[i] > DcMsg.DC_MSG_ID_DAYMARKER && !contains(msgIds[i])) {
+        batch[batchCount++] = msgIds[i];
+      }
+    }
+
+    batch = Arrays.copyOf(batch, batchCount);
+    DcMsg[] msgs = dcContext.getMsgs(batch);
+    synchronized (cache) {
+      if (loadGeneration == generation) {
+        for (int i = 0; i < batch.length; i++) {
+          cache.put(batch[i], msgs[i]);
+        }
+      }
+    }
+    return msgs[0];
+  }
+
+  private boolean contains(int msgId) {
+    synchronized (cache) {
+      return cache.containsKey(msgId);
+    }
+  }
+
+  /**
+   * Loads the messages following the given index of msgIds in the given direction into the cache.
+   * Older prefetch requests that did not start yet are skipped.
+   *
+   * @param msgIds    the message ids as returned by getChatMsgs(), the array must not be modified afterwards
+   * @param index     index into msgIds of the message that was just displayed
+   * @param direction +1 to prefetch messages with larger indices, -1 for smaller ones
+   */
+  public void prefetch(@NonNull int[] msgIds, int index, int direction) {
+    final int last = Math.max(0, Math.min(msgIds.length - 1, index + direction * prefetchWindow));
+    if (last == index) {
+      return;
+    }
+
+    // if the middle of the window is already cached, the previous prefetch is still good enough
+    int middle = index + (last - index) / 2;
+    if (middle == index) {
+      middle = last;
+    }
+    if (contains(msgIds[middle])) {
+      return;
+    }
+
+    final int generation = prefetchGeneration.incrementAndGet();
+    prefetchExecutor.execute(() -> {
+      if (generation != prefetchGeneration.get()) {
+        return;
+      }
+
+      int[] missing = new int[Math.abs(last - index)];
+      int missingCount = 0;
+      for (int i = index + direction; direction > 0 ? i <= last : i >= last; i += direction) {
+        int msgId = msgIds[i];
+        if (msgId > DcMsg.DC_MSG_ID_DAYMARKER && !contains(msgId)) {
+          missing[missingCount++] = msgId;
+        }
+      }
+      if (missingCount == 0) {
+        return;
+      }
+
+      // load the whole window in one native call instead of one call per message and field
+      missing = Arrays.copyOf(missing, missingCount);
+      DcMsg[] msgs = dcContext.getMsgs(missing);
+      synchronized (cache) {
+        // do not add messages that were invalidated while loading
+        if (generation == prefetchGeneration.get()) {
+          for (int i = 0; i < missing.length; i++) {
+            cache.put(missing[i], msgs[i]);
+          }
+        }
+      }
+
+      PrefetchListener listener = prefetchListener;
+      if (listener != null && generation == prefetchGeneration.get()) {
+        listener.onPrefetched(msgs);
+      }
+    });
+  }
+
+  public void invalidate(int msgId) {
+    prefetchGeneration.incrementAndGet();
+    synchronized (cache) {
+      generation++;
+      cache.remove(msgId);
+    }
+  }
+
+  public void clear() {
+    prefetchGeneration.incrementAndGet();
+    synchronized (cache) {
+      generation++;
+      cache.clear();
+    }
+  }
+
+  /**
+   * Drops all cached messages and releases their native objects.
+   * Evicted or invalidated messages are not closed as they may still be displayed;
+   * this must only be called when no view uses the messages anymore.
+   * The messages are closed on the prefetch thread after a running prefetch finished,
+   * so that the prefetch listener never reads a message while it is closed.
+   */
+  public void close() {
+    prefetchGeneration.incrementAndGet();
+    final List<DcMsg> msgs;
+    synchronized (cache) {
+      generation++;
+      msgs = new ArrayList<>(cache.values());
+      cache.clear();
+    }
+    prefetchExecutor.execute(() -> {
+      for (DcMsg msg : msgs) {
+        msg.close();
+      }
+    });
+  }
+}
@@ -0,0 +1,122 @@
+package org.thoughtcrime.securesms;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.b44t.messenger.DcMsg;
+import com.b44t.messenger.rpc.Reactions;
+import com.b44t.messenger.rpc.Rpc;
+import com.b44t.messenger.rpc.RpcException;
+
+import org.thoughtcrime.securesms.util.LRUCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Caches the reactions of the messages of a chat by message id.
+ * Reactions of prefetched messages are loaded on the prefetch thread with one pipelined rpc call for the whole window,
+ * so that binding a message usually does not wait for a round-trip to the core on the ui thread.
+ */
+class ConversationReactionsCache {
+  private static final String TAG = ConversationReactionsCache.class.getSimpleName();
+
+  private static final int CACHE_SIZE = 300;
+
+  // cached for messages without reactions, so that they are not requested again
+  private static final Reactions NO_REACTIONS = new Reactions(new HashMap<>(), new ArrayList<>());
+
+  private final Rpc rpc;
+  private final int accountId;
+
+  // guarded by cache
+  private final LRUCache<Integer, Reactions> cache = new LRUCache<>(CACHE_SIZE);
+  // incremented on each invalidation, reactions loaded before must not be cached afterwards
+  private long generation;
+
+  ConversationReactionsCache(@NonNull Rpc rpc, int accountId) {
+    this.rpc       = rpc;
+    this.accountId = accountId;
+  }
+
+  /**
+   * Returns the reactions of the message, null if it has none.
+   * If they are not cached, they are requested from the core.
+   */
+  @Nullable Reactions get(int msgId) throws RpcException {
+    long loadGeneration;
+    synchronized (cache) {
+      Reactions fromCache = cache.get(msgId);
+      if (fromCache != null) {
+        return fromCache == NO_REACTIONS ? null : fromCache;
+      }
+      loadGeneration = generation;
+    }
+
+    Reactions reactions = rpc.getMsgReactions(accountId, msgId);
+    synchronized (cache) {
+      if (loadGeneration == generation) {
+        cache.put(msgId, reactions != null ? reactions : NO_REACTIONS);
+      }
+    }
+    return reactions;
+  }
+
+  /**
+   * Loads the reactions of the given messages that are not cached yet.
+   * To be called on a background thread.
+   */
+  void preload(@NonNull DcMsg[] msgs) {
+    int[] missing = new int[msgs.length];
+    int missingCount = 0;
+    long loadGeneration;
+    synchronized (cache) {
+      for (DcMsg msg : msgs) {
+        if (!msg.isInfo() && !cache.containsKey(msg.getId())) {
+          missing[missingCount++] = msg.getId();
+        }
+      }
+      loadGeneration = generation;
+    }
+    if (missingCount == 0) {
+      return;
+    }
+
+    missing = Arrays.copyOf(missing, missingCount);
+    Map<Integer, Reactions> reactions;
+    try {
+      reactions = rpc.getMsgsReactions(accountId, missing);
+    } catch (RpcException e) {
+      Log.w(TAG, "cannot preload reactions", e);
+      return;
+    }
+
+    synchronized (cache) {
+      if (loadGeneration != generation) {
+        return;
+      }
+      for (int msgId : missing) {
+        Reactions msgReactions = reactions.get(msgId);
+        cache.put(msgId, msgReactions != null ? msgReactions : NO_REACTIONS);
+      }
+    }
+  }
+
+  void invalidate(int msgId) {
+    synchronized (cache) {
+      generation++;
+      cache.remove(msgId);
+    }
+  }
+
+  void clear() {
+    synchronized (cache) {
+      generation++;
+      cache.clear();
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package org.thoughtcrime.securesms;
+
+import android.text.Spannable;
+import android.text.SpannableString;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+
+import com.b44t.messenger.DcMsg;
+
+import org.thoughtcrime.securesms.util.LRUCache;
+import org.thoughtcrime.securesms.util.Linkifier;
+
+/**
+ * Caches the linkified body texts of a chat by message id.
+ * Texts of prefetched messages are linkified on the prefetch thread,
+ * so that binding a message usually does not run the linkify regular expressions on the ui thread.
+ * For long texts, also the text layout is precomputed
+ * once the text metrics of the body views are known.
+ */
+class ConversationTextCache {
+
+  private static final int CACHE_SIZE = 300;
+
+  // AutoScaledEmojiTextView only changes the text size for texts of up to 21 characters,
+  // so the text metrics of longer texts are the same for all body views of a chat.
+  private static final int PRECOMPUTE_MIN_LENGTH = 100;
+
+  private final LRUCache<Integer, Entry> cache = new LRUCache<>(CACHE_SIZE);
+
+  private volatile PrecomputedTextCompat.Params textMetrics;
+
+  /**
+   * Sets the linkified text to the view, from the cache if the message text did not change.
+   */
+  void setBodyText(@NonNull TextView view, int msgId, @NonNull String text) {
+    Entry entry = get(msgId, text);
+    if (entry == null) {
+      entry = new Entry(text, Linkifier.linkify(new SpannableString(text)), null);
+      put(msgId, entry);
+    }
+
+    PrecomputedTextCompat precomputed = entry.precomputed;
+    if (precomputed != null && precomputed.getParams().equals(TextViewCompat.getTextMetricsParams(view))) {
+      TextViewCompat.setPrecomputedText(view, precomputed);
+    } else {
+      view.setText(entry.linkified);
+    }
+
+    if (text.length() >= PRECOMPUTE_MIN_LENGTH && textMetrics == null) {
+      textMetrics = TextViewCompat.getTextMetricsParams(view);
+    }
+  }
+
+  /**
+   * Linkifies the texts of the given messages that are not cached yet.
+   * To be called on a background thread.
+   */
+  void preprocess(@NonNull DcMsg[] msgs) {
+    PrecomputedTextCompat.Params metrics = textMetrics;
+    for (DcMsg msg : msgs) {
+      String text = msg.getText();
+      if (text.isEmpty() || get(msg.getId(), text) != null) {
+        continue;
+      }
+
+      Spannable linkified = Linkifier.linkify(new SpannableString(text));
+      PrecomputedTextCompat precomputed = null;
+      if (metrics != null && text.length() >= PRECOMPUTE_MIN_LENGTH) {
+        precomputed = PrecomputedTextCompat.create(linkified, metrics);
+      }
+      put(msg.getId(), new Entry(text, linkified, precomputed));
+    }
+  }
+
+  private @Nullable Entry get(int msgId, @NonNull String text) {
+    Entry entry;
+    synchronized (cache) {
+      entry = cache.get(msgId);
+    }
+    // the text of a message may change, eg. when it is edited
+    return entry != null && entry.textHash == text.hashCode() && entry.text.equals(text) ? entry : null;
+  }
+
+  private void put(int msgId, @NonNull Entry entry) {
+    synchronized (cache) {
+      cache.put(msgId, entry);
+    }
+  }
+
+  void clear() {
+    synchronized (cache) {
+      cache.clear();
+    }
+  }
+
+  private static class Entry {
+    final String                text;
+    final int                   textHash;
+    final Spannable             linkified;
+    final PrecomputedTextCompat precomputed;
+
+    Entry(String text, Spannable linkified, @Nullable PrecomputedTextCompat precomputed) {
+      this.text        = text;
+      this.textHash    = text.hashCode();
+      this.linkified   = linkified;
+      this.precomputed = precomputed;
+    }
+  }
+}
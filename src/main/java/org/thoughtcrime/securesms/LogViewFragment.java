@@ -38,11 +38,14 @@ import androidx.core.content.PermissionChecker;
 import androidx.fragment.app.Fragment;
 
 import com.b44t.messenger.DcContext;
+import com.b44t.messenger.NativeHandles;
 
 import org.thoughtcrime.securesms.connect.DcHelper;
 import org.thoughtcrime.securesms.notifications.FcmReceiveService;
 import org.thoughtcrime.securesms.util.Prefs;
 import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.WebxdcAssets;
+import org.thoughtcrime.securesms.util.concurrent.Lane;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -266,6 +269,19 @@ public class LogViewFragment extends Fragment {
       builder.append("Unknown\n");
     }
 
+    ApplicationContext appContext = ApplicationContext.getInstance(context);
+    builder.append("\n");
+    builder.append(appContext.eventPump.getStats());
+    builder.append("eventCenterMerged=").append(appContext.eventCenter.getMergedEventCount()).append("\n");
+    builder.append("eventCenterDropped=").append(appContext.eventCenter.getDroppedEventCount()).append("\n");
+    builder.append(Lane.getStats());
+    builder.append(NativeHandles.getStats());
+    builder.append(appContext.contactCache.getStats());
+    builder.append(appContext.notificationCenter.getStats());
+    builder.append(appContext.startupOrchestrator.getStats());
+    builder.append(WebxdcAssets.getStats());
+    builder.append(appContext.getJobManager().getStats());
+
     builder.append("\n");
     builder.append(dcContext.getInfo());
 
@@ -22,7 +22,6 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -65,6 +64,7 @@ import org.thoughtcrime.securesms.util.SaveAttachmentTask;
 import org.thoughtcrime.securesms.util.SaveAttachmentTask.Attachment;
 import org.thoughtcrime.securesms.util.StorageUtil;
 import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.concurrent.Lane;
 
 import java.io.IOException;
 import java.util.WeakHashMap;
@@ -312,7 +312,7 @@ public class MediaPreviewActivity extends PassphraseRequiredActionBarActivity
   private void performSavetoDisk(@NonNull MediaItem mediaItem) {
     SaveAttachmentTask saveTask = new SaveAttachmentTask(MediaPreviewActivity.this);
     long               saveDate = (mediaItem.date > 0) ? mediaItem.date : System.currentTimeMillis();
-    saveTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, new Attachment(mediaItem.uri, mediaItem.type, saveDate, mediaItem.name));
+    saveTask.executeOnExecutor(Lane.IO.asExecutor(), new Attachment(mediaItem.uri, mediaItem.type, saveDate, mediaItem.name));
   }
 
   private void showInChat() {
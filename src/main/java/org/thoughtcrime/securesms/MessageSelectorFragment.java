@@ -4,7 +4,6 @@ import android.Manifest;
 import android.app.Activity;
 import android.content.Intent;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.view.Menu;
 import android.view.View;
 import android.widget.TextView;
@@ -24,6 +23,7 @@ import org.thoughtcrime.securesms.permissions.Permissions;
 import org.thoughtcrime.securesms.util.SaveAttachmentTask;
 import org.thoughtcrime.securesms.util.StorageUtil;
 import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.concurrent.Lane;
 
 import java.util.Set;
 
@@ -130,7 +130,7 @@ public abstract class MessageSelectorFragment
         index++;
     }
     SaveAttachmentTask saveTask = new SaveAttachmentTask(getContext());
-    saveTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, attachments);
+    saveTask.executeOnExecutor(Lane.IO.asExecutor(), attachments);
     if (actionMode != null) actionMode.finish();
   }
 
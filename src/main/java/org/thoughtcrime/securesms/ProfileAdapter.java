@@ -173,7 +173,7 @@ public class ProfileAdapter extends RecyclerView.Adapter
         name = context.getString(R.string.qrshow_title);
       }
       else {
-        dcContact = dcContext.getContact(contactId);
+        dcContact = DcHelper.getContactCache(context).getContact(dcContext, contactId);
         name = dcContact.getDisplayName();
         addr = dcContact.getAddr();
       }
@@ -193,7 +193,7 @@ public class ProfileAdapter extends RecyclerView.Adapter
       DcLot summary = itemDataSharedChats.getSummary(chatlistIndex, chat);
 
       conversationListItem.bind(DcHelper.getThreadRecord(context, summary, chat),
-        itemDataSharedChats.getMsgId(chatlistIndex), summary, glideRequests,
+        itemDataSharedChats.getMsgId(chatlistIndex), glideRequests,
         Collections.emptySet(), false);
       conversationListItem.setOnClickListener(view -> clickListener.onSharedChatClicked(chatId));
     }
@@ -25,6 +25,7 @@ import com.b44t.messenger.DcContact;
 import com.b44t.messenger.DcContext;
 import com.b44t.messenger.DcEvent;
 
+import org.thoughtcrime.securesms.connect.DcContactCache;
 import org.thoughtcrime.securesms.connect.DcEventCenter;
 import org.thoughtcrime.securesms.connect.DcHelper;
 import org.thoughtcrime.securesms.mms.GlideApp;
@@ -103,7 +104,9 @@ public class ProfileFragment extends Fragment
     if (chatId>0)    { dcChat    = dcContext.getChat(chatId); }
 
     if(dcChat!=null && dcChat.isMultiUser()) {
-      memberList = dcContext.getChatContacts(chatId);
+      DcContactCache contactCache = DcHelper.getContactCache(getContext());
+      memberList = contactCache.getChatContacts(dcContext, chatId);
+      contactCache.warmUp(dcContext, memberList);
     }
     else if(contactId>0 && contactId!=DcContact.DC_CONTACT_ID_SELF) {
       sharedChats = dcContext.getChatlist(0, null, contactId);
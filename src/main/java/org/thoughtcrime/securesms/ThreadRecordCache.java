@@ -0,0 +1,162 @@
+package org.thoughtcrime.securesms;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.b44t.messenger.DcChat;
+import com.b44t.messenger.DcChatlist;
+import com.b44t.messenger.DcContext;
+import com.b44t.messenger.DcLot;
+
+import org.thoughtcrime.securesms.connect.DcHelper;
+import org.thoughtcrime.securesms.database.model.ThreadRecord;
+import org.thoughtcrime.securesms.util.LRUCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Caches the ThreadRecords of the rows of a chatlist by chat id.
+ * Records are created on a background thread for the visible rows plus a margin,
+ * so that binding a row never calls into the core on the ui thread.
+ * A record is reused as long as the last message and the number of fresh messages of its chat do not change;
+ * for other changes, eg. a renamed or muted chat, the chat has to be invalidated.
+ */
+class ThreadRecordCache {
+
+  static final int PREFETCH_MARGIN = 10;
+
+  private static final int CACHE_SIZE = 200;
+
+  // guarded by rows
+  private final LRUCache<Integer, Row> rows = new LRUCache<>(CACHE_SIZE);
+  private int  accountId;
+  // incremented on each invalidation, records created before must not be cached afterwards
+  private long generation;
+
+  /**
+   * Returns the cached record of the given position if it was created for the last message
+   * and the number of fresh messages of the position; does not call into the core.
+   * As long as the number of fresh messages of the position is not loaded, null is returned.
+   */
+  @Nullable ThreadRecord get(@NonNull ConversationListAdapter.ChatlistIds ids, int position) {
+    int freshCount = ids.freshCounts[position];
+    if (freshCount < 0) {
+      return null;
+    }
+    synchronized (rows) {
+      if (ids.accountId != this.accountId) {
+        return null;
+      }
+      Row row = rows.get(ids.chatIds[position]);
+      return row != null && row.msgId == ids.msgIds[position] && row.freshCount == freshCount ? row.record : null;
+    }
+  }
+
+  /**
+   * Creates the records of the positions from (inclusive) to (exclusive)
+   * that are not cached or whose number of fresh messages changed.
+   * The numbers of fresh messages are read by a single call for all positions and stored in ids.
+   * To be called on a background thread.
+   *
+   * @return the positions whose records were created.
+   */
+  @NonNull List<Integer> load(@NonNull Context context, @NonNull DcContext dcContext, @NonNull DcChatlist chatlist,
+                              @NonNull ConversationListAdapter.ChatlistIds ids, int from, int to) {
+    List<Integer> created = new ArrayList<>();
+    from = Math.max(0, from);
+    to = Math.min(ids.chatIds.length, to);
+    if (from >= to) {
+      return created;
+    }
+
+    long loadGeneration = prepare(ids.accountId);
+    int[] freshCounts = dcContext.getFreshMsgCounts(Arrays.copyOfRange(ids.chatIds, from, to));
+    for (int i = from; i < to; i++) {
+      int chatId = ids.chatIds[i];
+      int msgId = ids.msgIds[i];
+      int freshCount = freshCounts[i - from];
+      ids.freshCounts[i] = freshCount;
+
+      // special rows as the archive link summarize other chats, always recreate them
+      if (chatId > DcChat.DC_CHAT_ID_LAST_SPECIAL) {
+        synchronized (rows) {
+          Row row = rows.get(chatId);
+          if (row != null && row.msgId == msgId && row.freshCount == freshCount) {
+            continue;
+          }
+        }
+      }
+
+      ThreadRecord record = create(context, dcContext, chatlist, i, freshCount);
+      if (!put(loadGeneration, chatId, new Row(msgId, freshCount, record))) {
+        break;
+      }
+      created.add(i);
+    }
+    return created;
+  }
+
+  /**
+   * Drops the records of the given chats or, if all is set, of all chats.
+   */
+  void invalidate(@NonNull Set<Integer> chatIds, boolean all) {
+    synchronized (rows) {
+      generation++;
+      if (all) {
+        rows.clear();
+      } else {
+        for (int chatId : chatIds) {
+          rows.remove(chatId);
+        }
+      }
+    }
+  }
+
+  private long prepare(int accountId) {
+    synchronized (rows) {
+      if (accountId != this.accountId) {
+        this.accountId = accountId;
+        generation++;
+        rows.clear();
+      }
+      return generation;
+    }
+  }
+
+  private boolean put(long loadGeneration, int chatId, @NonNull Row row) {
+    synchronized (rows) {
+      if (loadGeneration != generation) {
+        return false;
+      }
+      rows.put(chatId, row);
+      return true;
+    }
+  }
+
+  private static @NonNull ThreadRecord create(@NonNull Context context, @NonNull DcContext dcContext, @NonNull DcChatlist chatlist,
+                                              int position, int freshCount) {
+    DcChat chat = dcContext.getChat(chatlist.getChatId(position));
+    DcLot summary = chatlist.getSummary(position, chat);
+    ThreadRecord record = DcHelper.getThreadRecord(context, summary, chat, freshCount);
+    // the record does not keep the summary; the chat is kept by the recipient for loading the avatar
+    summary.close();
+    return record;
+  }
+
+  private static class Row {
+    final int          msgId;
+    final int          freshCount;
+    final ThreadRecord record;
+
+    Row(int msgId, int freshCount, ThreadRecord record) {
+      this.msgId      = msgId;
+      this.freshCount = freshCount;
+      this.record     = record;
+    }
+  }
+}
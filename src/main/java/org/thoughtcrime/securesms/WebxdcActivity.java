@@ -50,6 +50,7 @@ import org.thoughtcrime.securesms.util.JsonUtils;
 import org.thoughtcrime.securesms.util.MediaUtil;
 import org.thoughtcrime.securesms.util.Prefs;
 import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.WebxdcAssets;
 
 import java.io.ByteArrayInputStream;
 import java.io.FileOutputStream;
@@ -75,6 +76,7 @@ public class WebxdcActivity extends WebViewActivity implements DcEventCenter.DcE
   private DcContext dcContext;
   private Rpc rpc;
   private DcMsg dcAppMsg;
+  private WebxdcAssets assets;
   private String baseURL;
   private String sourceCodeUrl = "";
   private String selfAddr;
@@ -203,6 +205,7 @@ public class WebxdcActivity extends WebViewActivity implements DcEventCenter.DcE
     // (WebView may use a global cache shared across objects).
     // (a random-id would also work, but would need maintenance and does not add benefits as we regard the file-part interceptRequest() only,
     // also a random-id is not that useful for debugging)
+    this.assets = new WebxdcAssets(dcAppMsg);
     this.baseURL = "https://acc" + dcContext.getAccountId() + "-msg" + appMessageId + ".localhost";
 
     final JSONObject info = this.dcAppMsg.getWebxdcInfo();
@@ -277,6 +280,9 @@ public class WebxdcActivity extends WebViewActivity implements DcEventCenter.DcE
     leaveRealtimeChannel();
     tts.shutdown();
     super.onDestroy();
+    if (assets != null) {
+      assets.close();
+    }
   }
 
   @Override
@@ -367,8 +373,8 @@ public class WebxdcActivity extends WebViewActivity implements DcEventCenter.DcE
         InputStream targetStream = getResources().openRawResource(R.raw.sandboxed_iframe_rtcpeerconnection_check);
         res = new WebResourceResponse("text/html", "UTF-8", targetStream);
       } else {
-        byte[] blob = this.dcAppMsg.getWebxdcBlob(path);
-        if (blob == null) {
+        InputStream targetStream = this.assets.open(path);
+        if (targetStream == null) {
           if (internetAccess) {
             return null; // do not intercept request
           }
@@ -384,7 +390,6 @@ public class WebxdcActivity extends WebViewActivity implements DcEventCenter.DcE
           }
         }
         String encoding = mimeType.startsWith("text/")? "UTF-8" : null;
-        InputStream targetStream = new ByteArrayInputStream(blob);
         res = new WebResourceResponse(mimeType, encoding, targetStream);
       }
     } catch (Exception e) {
@@ -0,0 +1,168 @@
+package org.thoughtcrime.securesms.connect;
+
+import androidx.annotation.NonNull;
+
+import com.b44t.messenger.DcContact;
+import com.b44t.messenger.DcContext;
+
+import org.thoughtcrime.securesms.util.LRUCache;
+import org.thoughtcrime.securesms.util.concurrent.Lane;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide cache of contacts and of the member lists of chats, for all accounts.
+ * Entries are dropped by DcEventCenter before observers are notified about
+ * DC_EVENT_CONTACTS_CHANGED, DC_EVENT_CHAT_MODIFIED or DC_EVENT_SELFAVATAR_CHANGED,
+ * so that observers reloading their views already get the new data.
+ * Cached contacts are shared and must not be closed by the caller.
+ */
+public class DcContactCache {
+
+  private static final int MAX_CONTACTS = 500;
+  private static final int MAX_CHATS    = 100;
+
+  private final LRUCache<Long, DcContact> contacts     = new LRUCache<>(MAX_CONTACTS);
+  private final LRUCache<Long, int[]>     chatContacts = new LRUCache<>(MAX_CHATS);
+
+  // incremented on each invalidation, data loaded before must not be cached afterwards
+  private long generation;
+
+  private final AtomicLong hits          = new AtomicLong();
+  private final AtomicLong misses        = new AtomicLong();
+  private final AtomicLong invalidations = new AtomicLong();
+
+  private static long key(int accountId, int id) {
+    return ((long) accountId << 32) | (id & 0xffffffffL);
+  }
+
+  private static int accountIdOf(long key) {
+    return (int) (key >>> 32);
+  }
+
+  public @NonNull DcContact getContact(@NonNull DcContext dcContext, int contactId) {
+    long key = key(dcContext.getAccountId(), contactId);
+    long loadGeneration;
+    synchronized (this) {
+      DcContact fromCache = contacts.get(key);
+      if (fromCache != null) {
+        hits.incrementAndGet();
+        return fromCache;
+      }
+      loadGeneration = generation;
+    }
+
+    misses.incrementAndGet();
+    DcContact fromDb = dcContext.getContact(contactId);
+    synchronized (this) {
+      if (loadGeneration == generation) {
+        contacts.put(key, fromDb);
+      }
+    }
+    return fromDb;
+  }
+
+  /**
+   * Returns the contact ids of the chat's members as DcContext.getChatContacts() does.
+   * The returned array must not be modified.
+   */
+  public @NonNull int[] getChatContacts(@NonNull DcContext dcContext, int chatId) {
+    long key = key(dcContext.getAccountId(), chatId);
+    long loadGeneration;
+    synchronized (this) {
+      int[] fromCache = chatContacts.get(key);
+      if (fromCache != null) {
+        hits.incrementAndGet();
+        return fromCache;
+      }
+      loadGeneration = generation;
+    }
+
+    misses.incrementAndGet();
+    int[] fromDb = dcContext.getChatContacts(chatId);
+    synchronized (this) {
+      if (loadGeneration == generation) {
+        chatContacts.put(key, fromDb);
+      }
+    }
+    return fromDb;
+  }
+
+  /**
+   * Loads the given contacts into the cache on a background thread,
+   * eg. the members of a group before its messages or its member list are shown.
+   */
+  public void warmUp(@NonNull DcContext dcContext, @NonNull int[] contactIds) {
+    Lane.IO.execute(Lane.PRIORITY_LOW, () -> {
+      // only the first MAX_CONTACTS / 2 members, larger groups would just push out other contacts
+      int count = Math.min(contactIds.length, MAX_CONTACTS / 2);
+      for (int i = 0; i < count; i++) {
+        getContact(dcContext, contactIds[i]);
+      }
+    });
+  }
+
+  /**
+   * Loads the members of the given chat into the cache on a background thread.
+   */
+  public void warmUpChat(@NonNull DcContext dcContext, int chatId) {
+    Lane.IO.execute(Lane.PRIORITY_LOW, () -> warmUp(dcContext, getChatContacts(dcContext, chatId)));
+  }
+
+  /**
+   * Drops the given contact or, if contactId is 0, all contacts of the account.
+   * Member lists are kept, they do not contain contact data.
+   */
+  synchronized void invalidateContact(int accountId, int contactId) {
+    generation++;
+    invalidations.incrementAndGet();
+    if (contactId != 0) {
+      contacts.remove(key(accountId, contactId));
+    } else {
+      removeAccount(contacts, accountId);
+    }
+  }
+
+  /**
+   * Drops the member list of the given chat or, if chatId is 0, of all chats of the account.
+   */
+  synchronized void invalidateChat(int accountId, int chatId) {
+    generation++;
+    invalidations.incrementAndGet();
+    if (chatId != 0) {
+      chatContacts.remove(key(accountId, chatId));
+    } else {
+      removeAccount(chatContacts, accountId);
+    }
+  }
+
+  private static void removeAccount(@NonNull Map<Long, ?> map, int accountId) {
+    Iterator<Long> keys = map.keySet().iterator();
+    while (keys.hasNext()) {
+      if (accountIdOf(keys.next()) == accountId) {
+        keys.remove();
+      }
+    }
+  }
+
+  /**
+   * Summary of the cache metrics, for debug logs.
+   */
+  public @NonNull String getStats() {
+    int contactCount;
+    int chatCount;
+    synchronized (this) {
+      contactCount = contacts.size();
+      chatCount    = chatContacts.size();
+    }
+    long hitCount  = hits.get();
+    long missCount = misses.get();
+    return String.format(Locale.US, "contactCache: contacts=%d chats=%d hits=%d misses=%d hitRate=%.2f invalidations=%d\n",
+        contactCount, chatCount, hitCount, missCount,
+        hitCount + missCount == 0 ? 0 : hitCount / (double) (hitCount + missCount),
+        invalidations.get());
+  }
+}
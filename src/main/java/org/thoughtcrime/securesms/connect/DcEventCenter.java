@@ -5,7 +5,9 @@ import android.util.Log;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import com.b44t.messenger.DcContact;
 import com.b44t.messenger.DcContext;
 import com.b44t.messenger.DcEvent;
 
@@ -13,15 +15,31 @@ import org.thoughtcrime.securesms.ApplicationContext;
 import org.thoughtcrime.securesms.R;
 import org.thoughtcrime.securesms.service.FetchForegroundService;
 import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.concurrent.Lane;
 
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DcEventCenter {
     private static final String TAG = DcEventCenter.class.getSimpleName();
-    private @NonNull final Hashtable<Integer, ArrayList<DcEventDelegate>> currentAccountObservers = new Hashtable<>();
-    private @NonNull final Hashtable<Integer, ArrayList<DcEventDelegate>> multiAccountObservers = new Hashtable<>();
-    private final Object LOCK = new Object();
+
+    // events arriving within this window are delivered to an observer as one batch
+    private static final long FRAME_WINDOW_MS = 16;
+    // if more events are pending for an observer, the batch is delivered without waiting for the window to end
+    private static final int MAX_PENDING_EVENTS = 256;
+
+    private @NonNull final ConcurrentHashMap<Integer, CopyOnWriteArrayList<ObserverQueue>> currentAccountObservers = new ConcurrentHashMap<>();
+    private @NonNull final ConcurrentHashMap<Integer, CopyOnWriteArrayList<ObserverQueue>> multiAccountObservers = new ConcurrentHashMap<>();
+    // observers scoped to a chat, indexed by event id and chatKey(accountId, chatId)
+    private @NonNull final ConcurrentHashMap<Integer, ConcurrentHashMap<Long, CopyOnWriteArrayList<ChatObserver>>> chatObservers = new ConcurrentHashMap<>();
+    private @NonNull final ConcurrentHashMap<DcEventDelegate, ObserverQueue> observerQueues = new ConcurrentHashMap<>();
+    private final AtomicLong mergedEvents = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
     private final @NonNull ApplicationContext context;
 
     public interface DcEventDelegate {
@@ -29,6 +47,24 @@ public class DcEventCenter {
         default boolean runOnMain() {
             return true;
         }
+
+        /**
+         * Called with all events that arrived within a short time window, oldest first.
+         * Redundant events, eg. several DC_EVENT_MSGS_CHANGED for the same message, are merged before.
+         */
+        default void handleEvents(@NonNull List<DcEvent> events) {
+            for (DcEvent event : events) {
+                // using try/catch blocks as under some circumstances eg. getContext() may return NULL -
+                // and as this function is used virtually everywhere, also in libs,
+                // it's not feasible to check all single occurrences.
+                try {
+                    handleEvent(event);
+                }
+                catch(Exception e) {
+                    Log.e(TAG, "Error calling observer.handleEvent()", e);
+                }
+            }
+        }
     }
 
     public DcEventCenter(@NonNull Context context) {
@@ -43,46 +79,136 @@ public class DcEventCenter {
         addObserver(multiAccountObservers, eventId, observer);
     }
 
-    private void addObserver(Hashtable<Integer, ArrayList<DcEventDelegate>> observers, int eventId, @NonNull DcEventDelegate observer) {
-        synchronized (LOCK) {
-            ArrayList<DcEventDelegate> idObservers = observers.get(eventId);
-            if (idObservers == null) {
-                observers.put(eventId, (idObservers = new ArrayList<>()));
+    /**
+     * Add an observer that gets only the events of the given chat in the given account,
+     * no matter if the account is selected or not.
+     * Events that refer to all chats (chat id 0) are passed to the observer as well.
+     * The chat is matched on the event thread, so events of other chats never wake up the observer.
+     * Only events that carry the chat id as data1 can be scoped this way,
+     * eg. DC_EVENT_MSGS_CHANGED, DC_EVENT_INCOMING_MSG, DC_EVENT_MSG_READ or DC_EVENT_CHAT_MODIFIED.
+     */
+    public void addChatObserver(int eventId, int accountId, int chatId, @NonNull DcEventDelegate observer) {
+        addMsgObserver(eventId, accountId, chatId, 0, observer);
+    }
+
+    /**
+     * Like addChatObserver() but the observer gets only the events of the given message
+     * and events that refer to the whole chat (msg id 0).
+     */
+    public void addMsgObserver(int eventId, int accountId, int chatId, int msgId, @NonNull DcEventDelegate observer) {
+        ConcurrentHashMap<Long, CopyOnWriteArrayList<ChatObserver>> byChat = chatObservers.get(eventId);
+        if (byChat == null) {
+            ConcurrentHashMap<Long, CopyOnWriteArrayList<ChatObserver>> newMap = new ConcurrentHashMap<>();
+            byChat = chatObservers.putIfAbsent(eventId, newMap);
+            if (byChat == null) {
+                byChat = newMap;
             }
-            idObservers.add(observer);
         }
-    }
 
-    public void removeObserver(int eventId, DcEventDelegate observer) {
-        synchronized (LOCK) {
-            ArrayList<DcEventDelegate> idObservers = currentAccountObservers.get(eventId);
-            if (idObservers != null) {
-                idObservers.remove(observer);
+        long chatKey = chatKey(accountId, chatId);
+        CopyOnWriteArrayList<ChatObserver> scopedObservers = byChat.get(chatKey);
+        if (scopedObservers == null) {
+            CopyOnWriteArrayList<ChatObserver> newList = new CopyOnWriteArrayList<>();
+            scopedObservers = byChat.putIfAbsent(chatKey, newList);
+            if (scopedObservers == null) {
+                scopedObservers = newList;
             }
-            idObservers = multiAccountObservers.get(eventId);
-            if (idObservers != null) {
-                idObservers.remove(observer);
+        }
+        scopedObservers.addIfAbsent(new ChatObserver(getObserverQueue(observer), msgId));
+    }
+
+    private static long chatKey(int accountId, int chatId) {
+        return ((long) accountId << 32) | (chatId & 0xffffffffL);
+    }
+
+    private ObserverQueue getObserverQueue(@NonNull DcEventDelegate observer) {
+        ObserverQueue queue = observerQueues.get(observer);
+        if (queue == null) {
+            ObserverQueue newQueue = new ObserverQueue(observer);
+            queue = observerQueues.putIfAbsent(observer, newQueue);
+            if (queue == null) {
+                queue = newQueue;
             }
         }
+        return queue;
     }
 
-    public void removeObservers(DcEventDelegate observer) {
-        synchronized (LOCK) {
-            for(Integer eventId : currentAccountObservers.keySet()) {
-                ArrayList<DcEventDelegate> idObservers = currentAccountObservers.get(eventId);
-                if (idObservers != null) {
-                    idObservers.remove(observer);
-                }
+    private void addObserver(ConcurrentHashMap<Integer, CopyOnWriteArrayList<ObserverQueue>> observers, int eventId, @NonNull DcEventDelegate observer) {
+        ObserverQueue queue = getObserverQueue(observer);
+
+        CopyOnWriteArrayList<ObserverQueue> idObservers = observers.get(eventId);
+        if (idObservers == null) {
+            CopyOnWriteArrayList<ObserverQueue> newList = new CopyOnWriteArrayList<>();
+            idObservers = observers.putIfAbsent(eventId, newList);
+            if (idObservers == null) {
+                idObservers = newList;
             }
-            for(Integer eventId : multiAccountObservers.keySet()) {
-                ArrayList<DcEventDelegate> idObservers = multiAccountObservers.get(eventId);
-                if (idObservers != null) {
-                    idObservers.remove(observer);
+        }
+        idObservers.addIfAbsent(queue);
+    }
+
+    public void removeObserver(int eventId, DcEventDelegate observer) {
+        ObserverQueue queue = observerQueues.get(observer);
+        if (queue == null) {
+            return;
+        }
+        CopyOnWriteArrayList<ObserverQueue> idObservers = currentAccountObservers.get(eventId);
+        if (idObservers != null) {
+            idObservers.remove(queue);
+        }
+        idObservers = multiAccountObservers.get(eventId);
+        if (idObservers != null) {
+            idObservers.remove(queue);
+        }
+        ConcurrentHashMap<Long, CopyOnWriteArrayList<ChatObserver>> byChat = chatObservers.get(eventId);
+        if (byChat != null) {
+            removeChatObservers(byChat, queue);
+        }
+    }
+
+    private static void removeChatObservers(ConcurrentHashMap<Long, CopyOnWriteArrayList<ChatObserver>> byChat, ObserverQueue queue) {
+        for (CopyOnWriteArrayList<ChatObserver> scopedObservers : byChat.values()) {
+            for (ChatObserver scopedObserver : scopedObservers) {
+                if (scopedObserver.queue == queue) {
+                    scopedObservers.remove(scopedObserver);
                 }
             }
         }
     }
 
+    public void removeObservers(DcEventDelegate observer) {
+        ObserverQueue queue = observerQueues.remove(observer);
+        if (queue == null) {
+            return;
+        }
+        queue.removed = true;
+        for (CopyOnWriteArrayList<ObserverQueue> idObservers : currentAccountObservers.values()) {
+            idObservers.remove(queue);
+        }
+        for (CopyOnWriteArrayList<ObserverQueue> idObservers : multiAccountObservers.values()) {
+            idObservers.remove(queue);
+        }
+        for (ConcurrentHashMap<Long, CopyOnWriteArrayList<ChatObserver>> byChat : chatObservers.values()) {
+            removeChatObservers(byChat, queue);
+        }
+    }
+
+    /**
+     * Number of events that were not delivered separately
+     * as they were merged with an equal event pending for the same observer.
+     */
+    public long getMergedEventCount() {
+        return mergedEvents.get();
+    }
+
+    /**
+     * Number of events that were not delivered at all
+     * as the observer was removed before the pending batch was delivered.
+     */
+    public long getDroppedEventCount() {
+        return droppedEvents.get();
+    }
+
     private void sendToMultiAccountObservers(@NonNull DcEvent event) {
         sendToObservers(multiAccountObservers, event);
     }
@@ -91,35 +217,203 @@ public class DcEventCenter {
         sendToObservers(currentAccountObservers, event);
     }
 
-    private void sendToObservers(Hashtable<Integer, ArrayList<DcEventDelegate>> observers, @NonNull DcEvent event) {
-        synchronized (LOCK) {
-            ArrayList<DcEventDelegate> idObservers = observers.get(event.getId());
-            if (idObservers != null) {
-                for (DcEventDelegate observer : idObservers) {
-                    // using try/catch blocks as under some circumstances eg. getContext() may return NULL -
-                    // and as this function is used virtually everywhere, also in libs,
-                    // it's not feasible to check all single occurrences.
-                    if(observer.runOnMain()) {
-                        Util.runOnMain(() -> {
-                            try {
-                                observer.handleEvent(event);
-                            }
-                            catch(Exception e) {
-                                Log.e(TAG, "Error calling observer.handleEvent()", e);
-                            }
-                        });
-                    } else {
-                        Util.runOnBackground(() -> {
-                            try {
-                                observer.handleEvent(event);
-                            }
-                            catch (Exception e) {
-                                Log.e(TAG, "Error calling observer.handleEvent()", e);
-                            }
-                        });
+    private void sendToObservers(ConcurrentHashMap<Integer, CopyOnWriteArrayList<ObserverQueue>> observers, @NonNull DcEvent event) {
+        CopyOnWriteArrayList<ObserverQueue> idObservers = observers.get(event.getId());
+        if (idObservers != null && !idObservers.isEmpty()) {
+            EventKey key = EventKey.forEvent(event);
+            for (ObserverQueue queue : idObservers) {
+                queue.enqueue(key, event);
+            }
+        }
+    }
+
+    private void sendToChatObservers(@NonNull DcEvent event) {
+        ConcurrentHashMap<Long, CopyOnWriteArrayList<ChatObserver>> byChat = chatObservers.get(event.getId());
+        if (byChat == null || byChat.isEmpty()) {
+            return;
+        }
+
+        int accountId = event.getAccountId();
+        int chatId = event.getData1Int();
+        if (chatId != 0) {
+            CopyOnWriteArrayList<ChatObserver> scopedObservers = byChat.get(chatKey(accountId, chatId));
+            if (scopedObservers != null && !scopedObservers.isEmpty()) {
+                sendToChatObservers(scopedObservers, event);
+            }
+        } else {
+            // the event refers to all chats of the account
+            for (Map.Entry<Long, CopyOnWriteArrayList<ChatObserver>> entry : byChat.entrySet()) {
+                if ((int) (entry.getKey() >>> 32) == accountId && !entry.getValue().isEmpty()) {
+                    sendToChatObservers(entry.getValue(), event);
+                }
+            }
+        }
+    }
+
+    private void sendToChatObservers(CopyOnWriteArrayList<ChatObserver> scopedObservers, @NonNull DcEvent event) {
+        EventKey key = EventKey.forEvent(event);
+        int msgId = event.getId() == DcContext.DC_EVENT_CHAT_MODIFIED ? 0 : event.getData2Int();
+        for (ChatObserver scopedObserver : scopedObservers) {
+            if (scopedObserver.msgId == 0 || msgId == 0 || scopedObserver.msgId == msgId) {
+                scopedObserver.queue.enqueue(key, event);
+            }
+        }
+    }
+
+    private static class ChatObserver {
+        final ObserverQueue queue;
+        final int msgId;
+
+        ChatObserver(ObserverQueue queue, int msgId) {
+            this.queue = queue;
+            this.msgId = msgId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ChatObserver)) return false;
+            ChatObserver other = (ChatObserver) o;
+            return queue == other.queue && msgId == other.msgId;
+        }
+
+        @Override
+        public int hashCode() {
+            return queue.hashCode() * 31 + msgId;
+        }
+    }
+
+    /**
+     * Collects the events for one observer and delivers them as a batch
+     * on the main thread or on a background thread, as requested by the observer.
+     */
+    private class ObserverQueue {
+        private final DcEventDelegate observer;
+        private final boolean runOnMain;
+        private final LinkedHashMap<Object, DcEvent> pending = new LinkedHashMap<>();
+        private boolean flushScheduled;
+        private boolean earlyFlushScheduled;
+        volatile boolean removed;
+
+        ObserverQueue(DcEventDelegate observer) {
+            this.observer = observer;
+            this.runOnMain = observer.runOnMain();
+        }
+
+        void enqueue(@Nullable EventKey key, @NonNull DcEvent event) {
+            boolean scheduleFlush = false;
+            boolean scheduleEarlyFlush = false;
+            synchronized (this) {
+                if (key != null) {
+                    if (pending.remove(key) != null) {
+                        mergedEvents.incrementAndGet();
                     }
+                    pending.put(key, event);
+                } else {
+                    pending.put(new Object(), event);
+                }
+
+                if (!flushScheduled) {
+                    flushScheduled = scheduleFlush = true;
+                } else if (pending.size() >= MAX_PENDING_EVENTS && !earlyFlushScheduled) {
+                    earlyFlushScheduled = scheduleEarlyFlush = true;
                 }
             }
+
+            if (scheduleFlush) {
+                if (runOnMain) {
+                    Util.runOnMainDelayed(this::flush, FRAME_WINDOW_MS);
+                } else {
+                    Util.runOnBackgroundDelayed(Lane.UI_CRITICAL, this::flush, FRAME_WINDOW_MS);
+                }
+            } else if (scheduleEarlyFlush) {
+                if (runOnMain) {
+                    Util.handler.post(this::flush);
+                } else {
+                    Util.runOnBackground(Lane.UI_CRITICAL, this::flush);
+                }
+            }
+        }
+
+        private void flush() {
+            ArrayList<DcEvent> batch;
+            synchronized (this) {
+                batch = new ArrayList<>(pending.values());
+                pending.clear();
+                flushScheduled = false;
+                earlyFlushScheduled = false;
+            }
+
+            if (batch.isEmpty()) {
+                return;
+            }
+            if (removed) {
+                droppedEvents.addAndGet(batch.size());
+                return;
+            }
+
+            try {
+                observer.handleEvents(batch);
+            }
+            catch(Exception e) {
+                Log.e(TAG, "Error calling observer.handleEvents()", e);
+            }
+        }
+    }
+
+    /**
+     * Identifies events that only tell observers to refresh some state;
+     * if several events with the same key are pending for an observer, only the last one is delivered.
+     */
+    static class EventKey {
+        private final int accountId;
+        private final int eventId;
+        private final int data1;
+        private final int data2;
+
+        private EventKey(int accountId, int eventId, int data1, int data2) {
+            this.accountId = accountId;
+            this.eventId = eventId;
+            this.data1 = data1;
+            this.data2 = data2;
+        }
+
+        static @Nullable EventKey forEvent(@NonNull DcEvent event) {
+            int eventId = event.getId();
+            switch (eventId) {
+                case DcContext.DC_EVENT_INCOMING_MSG:
+                    // observers only look at the chat, not at the single message
+                    return new EventKey(event.getAccountId(), eventId, event.getData1Int(), 0);
+
+                case DcContext.DC_EVENT_MSGS_CHANGED:
+                case DcContext.DC_EVENT_REACTIONS_CHANGED:
+                case DcContext.DC_EVENT_MSGS_NOTICED:
+                case DcContext.DC_EVENT_MSG_DELIVERED:
+                case DcContext.DC_EVENT_MSG_FAILED:
+                case DcContext.DC_EVENT_MSG_READ:
+                case DcContext.DC_EVENT_CHAT_MODIFIED:
+                case DcContext.DC_EVENT_CHAT_EPHEMERAL_TIMER_MODIFIED:
+                case DcContext.DC_EVENT_CONTACTS_CHANGED:
+                case DcContext.DC_EVENT_LOCATION_CHANGED:
+                case DcContext.DC_EVENT_CONNECTIVITY_CHANGED:
+                case DcContext.DC_EVENT_SELFAVATAR_CHANGED:
+                    return new EventKey(event.getAccountId(), eventId, event.getData1Int(), event.getData2Int());
+
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof EventKey)) return false;
+            EventKey other = (EventKey) o;
+            return accountId == other.accountId && eventId == other.eventId
+                && data1 == other.data1 && data2 == other.data2;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((accountId * 31 + eventId) * 31 + data1) * 31 + data2;
         }
     }
 
@@ -168,7 +462,23 @@ public class DcEventCenter {
     int accountId = event.getAccountId();
     int id = event.getId();
 
+    // drop cached data before any observer reloads it
+    switch (id) {
+      case DcContext.DC_EVENT_CONTACTS_CHANGED:
+        context.contactCache.invalidateContact(accountId, event.getData1Int());
+        break;
+
+      case DcContext.DC_EVENT_CHAT_MODIFIED:
+        context.contactCache.invalidateChat(accountId, event.getData1Int());
+        break;
+
+      case DcContext.DC_EVENT_SELFAVATAR_CHANGED:
+        context.contactCache.invalidateContact(accountId, DcContact.DC_CONTACT_ID_SELF);
+        break;
+    }
+
     sendToMultiAccountObservers(event);
+    sendToChatObservers(event);
 
     switch (id) {
       case DcContext.DC_EVENT_INCOMING_MSG:
@@ -0,0 +1,255 @@
+package org.thoughtcrime.securesms.connect;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.b44t.messenger.DcContext;
+import com.b44t.messenger.DcEvent;
+import com.b44t.messenger.DcEventEmitter;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads events from the core on one thread and hands them over to the DcEventCenter on another one.
+ * Both threads are connected by a bounded queue,
+ * so a slow handler does not make the core's event channel grow without limit.
+ * If the dispatching thread dies, it is restarted.
+ */
+public class DcEventPump {
+  private static final String TAG = DcEventPump.class.getSimpleName();
+
+  public enum OverflowPolicy {
+    /**
+     * Wait until there is space in the queue; the core buffers the events meanwhile.
+     */
+    BLOCK,
+    /**
+     * Drop events that only ask to refresh some state if an equal event is still queued,
+     * wait for space for all other events.
+     */
+    COALESCE
+  }
+
+  private static final int DEFAULT_CAPACITY = 1000;
+
+  private final DcEventEmitter                  emitter;
+  private final DcEventCenter                   eventCenter;
+  private final OverflowPolicy                  overflowPolicy;
+  private final ArrayBlockingQueue<QueuedEvent> queue;
+  private final Set<DcEventCenter.EventKey>     queuedKeys = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+  private final AtomicLong receivedEvents  = new AtomicLong();
+  private final AtomicLong coalescedEvents = new AtomicLong();
+  private final AtomicLong blockedPuts     = new AtomicLong();
+  private final AtomicLong dispatcherRestarts = new AtomicLong();
+  private final ConcurrentHashMap<Integer, HandlerStats> handlerStats = new ConcurrentHashMap<>();
+  private final long startedAt = SystemClock.elapsedRealtime();
+
+  private volatile boolean finished;
+
+  public DcEventPump(@NonNull DcEventEmitter emitter, @NonNull DcEventCenter eventCenter) {
+    this(emitter, eventCenter, OverflowPolicy.COALESCE, DEFAULT_CAPACITY);
+  }
+
+  public DcEventPump(@NonNull DcEventEmitter emitter, @NonNull DcEventCenter eventCenter, @NonNull OverflowPolicy overflowPolicy, int capacity) {
+    this.emitter        = emitter;
+    this.eventCenter    = eventCenter;
+    this.overflowPolicy = overflowPolicy;
+    this.queue          = new ArrayBlockingQueue<>(capacity);
+  }
+
+  public void start() {
+    new Thread(this::poll, "eventThread").start();
+    startDispatcher();
+  }
+
+  private void startDispatcher() {
+    Thread dispatcher = new Thread(this::dispatch, "eventDispatchThread");
+    dispatcher.setUncaughtExceptionHandler((thread, throwable) -> {
+      Log.e(TAG, "event dispatcher died, restarting", throwable);
+      dispatcherRestarts.incrementAndGet();
+      startDispatcher();
+    });
+    dispatcher.start();
+  }
+
+  private void poll() {
+    while (true) {
+      DcEvent event = emitter.getNextEvent();
+      if (event == null) {
+        break;
+      }
+      receivedEvents.incrementAndGet();
+
+      DcEventCenter.EventKey key = null;
+      if (overflowPolicy == OverflowPolicy.COALESCE && isRefreshOnly(event.getId())) {
+        key = DcEventCenter.EventKey.forEvent(event);
+        if (key != null && !queuedKeys.add(key)) {
+          coalescedEvents.incrementAndGet();
+          continue;
+        }
+      }
+
+      QueuedEvent queuedEvent = new QueuedEvent(event, key);
+      if (!queue.offer(queuedEvent)) {
+        blockedPuts.incrementAndGet();
+        try {
+          queue.put(queuedEvent);
+        } catch (InterruptedException e) {
+          Log.w(TAG, "interrupted while waiting for space in the event queue");
+          break;
+        }
+      }
+    }
+    finished = true;
+    Log.i("DeltaChat", "shutting down event handler");
+  }
+
+  private void dispatch() {
+    while (!finished || !queue.isEmpty()) {
+      QueuedEvent queuedEvent;
+      try {
+        queuedEvent = queue.poll(1, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        continue;
+      }
+      if (queuedEvent == null) {
+        continue;
+      }
+      if (queuedEvent.key != null) {
+        queuedKeys.remove(queuedEvent.key);
+      }
+
+      DcEvent event = queuedEvent.event;
+      long start = SystemClock.elapsedRealtimeNanos();
+      try {
+        eventCenter.handleEvent(event);
+      } catch (Exception e) {
+        Log.e(TAG, "Error handling event " + event.getId(), e);
+      }
+      recordLatency(event.getId(), SystemClock.elapsedRealtimeNanos() - start);
+    }
+  }
+
+  /**
+   * Events that only tell observers to reload some state;
+   * handling an equal event later gives the same result.
+   * Events that trigger notifications are never coalesced here.
+   */
+  private static boolean isRefreshOnly(int eventId) {
+    switch (eventId) {
+      case DcContext.DC_EVENT_MSGS_CHANGED:
+      case DcContext.DC_EVENT_REACTIONS_CHANGED:
+      case DcContext.DC_EVENT_MSG_DELIVERED:
+      case DcContext.DC_EVENT_MSG_FAILED:
+      case DcContext.DC_EVENT_MSG_READ:
+      case DcContext.DC_EVENT_CHAT_MODIFIED:
+      case DcContext.DC_EVENT_CHAT_EPHEMERAL_TIMER_MODIFIED:
+      case DcContext.DC_EVENT_CONTACTS_CHANGED:
+      case DcContext.DC_EVENT_LOCATION_CHANGED:
+      case DcContext.DC_EVENT_CONNECTIVITY_CHANGED:
+      case DcContext.DC_EVENT_SELFAVATAR_CHANGED:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private void recordLatency(int eventId, long nanos) {
+    HandlerStats stats = handlerStats.get(eventId);
+    if (stats == null) {
+      HandlerStats newStats = new HandlerStats();
+      stats = handlerStats.putIfAbsent(eventId, newStats);
+      if (stats == null) {
+        stats = newStats;
+      }
+    }
+    stats.record(nanos);
+  }
+
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  public long getReceivedEventCount() {
+    return receivedEvents.get();
+  }
+
+  public long getCoalescedEventCount() {
+    return coalescedEvents.get();
+  }
+
+  /**
+   * Number of times the polling thread had to wait for space in the queue.
+   */
+  public long getBlockedPutCount() {
+    return blockedPuts.get();
+  }
+
+  /**
+   * Average number of events received per second since the pump was created.
+   */
+  public double getEventsPerSecond() {
+    long elapsedMs = Math.max(1, SystemClock.elapsedRealtime() - startedAt);
+    return receivedEvents.get() * 1000.0 / elapsedMs;
+  }
+
+  /**
+   * Summary of the pump's counters and the handler latencies per event id, for debug logs.
+   */
+  public @NonNull String getStats() {
+    StringBuilder builder = new StringBuilder();
+    builder.append(String.format(Locale.US, "queueDepth=%d received=%d eventsPerSecond=%.2f coalesced=%d blockedPuts=%d dispatcherRestarts=%d\n",
+        getQueueDepth(), getReceivedEventCount(), getEventsPerSecond(), getCoalescedEventCount(), getBlockedPutCount(), dispatcherRestarts.get()));
+    for (Map.Entry<Integer, HandlerStats> entry : new TreeMap<>(handlerStats).entrySet()) {
+      HandlerStats stats = entry.getValue();
+      builder.append(String.format(Locale.US, "event %d: count=%d avgMs=%.2f maxMs=%.2f\n",
+          entry.getKey(), stats.getCount(), stats.getAverageMs(), stats.getMaxMs()));
+    }
+    return builder.toString();
+  }
+
+  private static class QueuedEvent {
+    final DcEvent                 event;
+    final DcEventCenter.EventKey  key;
+
+    QueuedEvent(DcEvent event, DcEventCenter.EventKey key) {
+      this.event = event;
+      this.key   = key;
+    }
+  }
+
+  private static class HandlerStats {
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+
+    synchronized void record(long nanos) {
+      count++;
+      totalNanos += nanos;
+      maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    synchronized long getCount() {
+      return count;
+    }
+
+    synchronized double getAverageMs() {
+      return count == 0 ? 0 : totalNanos / (count * 1000000.0);
+    }
+
+    synchronized double getMaxMs() {
+      return maxNanos / 1000000.0;
+    }
+  }
+}
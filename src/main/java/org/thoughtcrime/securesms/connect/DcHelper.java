@@ -42,6 +42,8 @@ import org.thoughtcrime.securesms.util.Util;
 import java.io.File;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class DcHelper {
 
@@ -96,6 +98,10 @@ public class DcHelper {
         return ApplicationContext.getInstance(context).notificationCenter;
     }
 
+    public static DcContactCache getContactCache(@NonNull Context context) {
+        return ApplicationContext.getInstance(context).contactCache;
+    }
+
     public static boolean hasAnyConfiguredContext(Context context) {
       DcAccounts accounts = getAccounts(context);
       int[] accountIds = accounts.getAll();
@@ -140,110 +146,131 @@ public class DcHelper {
         dcContext.setConfig(key, value);
     }
 
+  // hash of the translations last passed to each account, guarded by itself
+  private static final HashMap<Integer, Integer> stockTranslationHashes = new HashMap<>();
+
+  /**
+   * Passes the translations of the core's stock strings to the selected account.
+   * As these are more than 100 JNI calls, nothing is done if the translations did not change
+   * since they were last passed to the account, eg. on switching back to an account.
+   */
   public static void setStockTranslations(Context context) {
     DcContext dcContext = getContext(context);
+    LinkedHashMap<Integer, String> translations = new LinkedHashMap<>();
     // the integers are defined in the core and used only here, an enum or sth. like that won't have a big benefit
-    dcContext.setStockTranslation(1, context.getString(R.string.chat_no_messages));
-    dcContext.setStockTranslation(2, context.getString(R.string.self));
-    dcContext.setStockTranslation(3, context.getString(R.string.draft));
-    dcContext.setStockTranslation(7, context.getString(R.string.voice_message));
-    dcContext.setStockTranslation(9, context.getString(R.string.image));
-    dcContext.setStockTranslation(10, context.getString(R.string.video));
-    dcContext.setStockTranslation(11, context.getString(R.string.audio));
-    dcContext.setStockTranslation(12, context.getString(R.string.file));
-    dcContext.setStockTranslation(23, context.getString(R.string.gif));
-    dcContext.setStockTranslation(29, context.getString(R.string.systemmsg_cannot_decrypt));
-    dcContext.setStockTranslation(35, context.getString(R.string.contact_verified));
-    dcContext.setStockTranslation(40, context.getString(R.string.chat_archived_label));
-    dcContext.setStockTranslation(60, context.getString(R.string.login_error_cannot_login));
-    dcContext.setStockTranslation(66, context.getString(R.string.location));
-    dcContext.setStockTranslation(67, context.getString(R.string.sticker));
-    dcContext.setStockTranslation(68, context.getString(R.string.device_talk));
-    dcContext.setStockTranslation(69, context.getString(R.string.saved_messages));
-    dcContext.setStockTranslation(70, context.getString(R.string.device_talk_explain));
-    dcContext.setStockTranslation(71, context.getString(R.string.device_talk_welcome_message2));
-    dcContext.setStockTranslation(72, context.getString(R.string.systemmsg_unknown_sender_for_chat));
-    dcContext.setStockTranslation(73, context.getString(R.string.systemmsg_subject_for_new_contact));
-    dcContext.setStockTranslation(74, context.getString(R.string.systemmsg_failed_sending_to));
-    dcContext.setStockTranslation(82, context.getString(R.string.videochat_invitation));
-    dcContext.setStockTranslation(83, context.getString(R.string.videochat_invitation_body));
-    dcContext.setStockTranslation(84, context.getString(R.string.configuration_failed_with_error));
-    dcContext.setStockTranslation(85, context.getString(R.string.devicemsg_bad_time));
-    dcContext.setStockTranslation(86, context.getString(R.string.devicemsg_update_reminder));
-    dcContext.setStockTranslation(90, context.getString(R.string.reply_noun));
-    dcContext.setStockTranslation(91, context.getString(R.string.devicemsg_self_deleted));
-    dcContext.setStockTranslation(97, context.getString(R.string.forwarded));
-    dcContext.setStockTranslation(98, context.getString(R.string.devicemsg_storage_exceeding));
-    dcContext.setStockTranslation(99, context.getString(R.string.n_bytes_message));
-    dcContext.setStockTranslation(100, context.getString(R.string.download_max_available_until));
-    dcContext.setStockTranslation(103, context.getString(R.string.incoming_messages));
-    dcContext.setStockTranslation(104, context.getString(R.string.outgoing_messages));
-    dcContext.setStockTranslation(105, context.getString(R.string.storage_on_domain));
-    dcContext.setStockTranslation(107, context.getString(R.string.connectivity_connected));
-    dcContext.setStockTranslation(108, context.getString(R.string.connectivity_connecting));
-    dcContext.setStockTranslation(109, context.getString(R.string.connectivity_updating));
-    dcContext.setStockTranslation(110, context.getString(R.string.sending));
-    dcContext.setStockTranslation(111, context.getString(R.string.last_msg_sent_successfully));
-    dcContext.setStockTranslation(112, context.getString(R.string.error_x));
-    dcContext.setStockTranslation(113, context.getString(R.string.not_supported_by_provider));
-    dcContext.setStockTranslation(114, context.getString(R.string.messages));
-    dcContext.setStockTranslation(116, context.getString(R.string.part_of_total_used));
-    dcContext.setStockTranslation(117, context.getString(R.string.secure_join_started));
-    dcContext.setStockTranslation(118, context.getString(R.string.secure_join_replies));
-    dcContext.setStockTranslation(119, context.getString(R.string.qrshow_join_contact_hint));
-
-    dcContext.setStockTranslation(124, context.getString(R.string.group_name_changed_by_you));
-    dcContext.setStockTranslation(125, context.getString(R.string.group_name_changed_by_other));
-    dcContext.setStockTranslation(126, context.getString(R.string.group_image_changed_by_you));
-    dcContext.setStockTranslation(127, context.getString(R.string.group_image_changed_by_other));
-    dcContext.setStockTranslation(128, context.getString(R.string.add_member_by_you));
-    dcContext.setStockTranslation(129, context.getString(R.string.add_member_by_other));
-    dcContext.setStockTranslation(130, context.getString(R.string.remove_member_by_you));
-    dcContext.setStockTranslation(131, context.getString(R.string.remove_member_by_other));
-    dcContext.setStockTranslation(132, context.getString(R.string.group_left_by_you));
-    dcContext.setStockTranslation(133, context.getString(R.string.group_left_by_other));
-    dcContext.setStockTranslation(134, context.getString(R.string.group_image_deleted_by_you));
-    dcContext.setStockTranslation(135, context.getString(R.string.group_image_deleted_by_other));
-    dcContext.setStockTranslation(136, context.getString(R.string.location_enabled_by_you));
-    dcContext.setStockTranslation(137, context.getString(R.string.location_enabled_by_other));
-    dcContext.setStockTranslation(138, context.getString(R.string.ephemeral_timer_disabled_by_you));
-    dcContext.setStockTranslation(139, context.getString(R.string.ephemeral_timer_disabled_by_other));
-    dcContext.setStockTranslation(140, context.getString(R.string.ephemeral_timer_seconds_by_you));
-    dcContext.setStockTranslation(141, context.getString(R.string.ephemeral_timer_seconds_by_other));
-    dcContext.setStockTranslation(142, context.getString(R.string.ephemeral_timer_1_minute_by_you));
-    dcContext.setStockTranslation(143, context.getString(R.string.ephemeral_timer_1_minute_by_other));
-    dcContext.setStockTranslation(144, context.getString(R.string.ephemeral_timer_1_hour_by_you));
-    dcContext.setStockTranslation(145, context.getString(R.string.ephemeral_timer_1_hour_by_other));
-    dcContext.setStockTranslation(146, context.getString(R.string.ephemeral_timer_1_day_by_you));
-    dcContext.setStockTranslation(147, context.getString(R.string.ephemeral_timer_1_day_by_other));
-    dcContext.setStockTranslation(148, context.getString(R.string.ephemeral_timer_1_week_by_you));
-    dcContext.setStockTranslation(149, context.getString(R.string.ephemeral_timer_1_week_by_other));
-    dcContext.setStockTranslation(150, context.getString(R.string.ephemeral_timer_minutes_by_you));
-    dcContext.setStockTranslation(151, context.getString(R.string.ephemeral_timer_minutes_by_other));
-    dcContext.setStockTranslation(152, context.getString(R.string.ephemeral_timer_hours_by_you));
-    dcContext.setStockTranslation(153, context.getString(R.string.ephemeral_timer_hours_by_other));
-    dcContext.setStockTranslation(154, context.getString(R.string.ephemeral_timer_days_by_you));
-    dcContext.setStockTranslation(155, context.getString(R.string.ephemeral_timer_days_by_other));
-    dcContext.setStockTranslation(156, context.getString(R.string.ephemeral_timer_weeks_by_you));
-    dcContext.setStockTranslation(157, context.getString(R.string.ephemeral_timer_weeks_by_other));
-    dcContext.setStockTranslation(158, context.getString(R.string.ephemeral_timer_1_year_by_you));
-    dcContext.setStockTranslation(159, context.getString(R.string.ephemeral_timer_1_year_by_other));
+    translations.put(1, context.getString(R.string.chat_no_messages));
+    translations.put(2, context.getString(R.string.self));
+    translations.put(3, context.getString(R.string.draft));
+    translations.put(7, context.getString(R.string.voice_message));
+    translations.put(9, context.getString(R.string.image));
+    translations.put(10, context.getString(R.string.video));
+    translations.put(11, context.getString(R.string.audio));
+    translations.put(12, context.getString(R.string.file));
+    translations.put(23, context.getString(R.string.gif));
+    translations.put(29, context.getString(R.string.systemmsg_cannot_decrypt));
+    translations.put(35, context.getString(R.string.contact_verified));
+    translations.put(40, context.getString(R.string.chat_archived_label));
+    translations.put(60, context.getString(R.string.login_error_cannot_login));
+    translations.put(66, context.getString(R.string.location));
+    translations.put(67, context.getString(R.string.sticker));
+    translations.put(68, context.getString(R.string.device_talk));
+    translations.put(69, context.getString(R.string.saved_messages));
+    translations.put(70, context.getString(R.string.device_talk_explain));
+    translations.put(71, context.getString(R.string.device_talk_welcome_message2));
+    translations.put(72, context.getString(R.string.systemmsg_unknown_sender_for_chat));
+    translations.put(73, context.getString(R.string.systemmsg_subject_for_new_contact));
+    translations.put(74, context.getString(R.string.systemmsg_failed_sending_to));
+    translations.put(82, context.getString(R.string.videochat_invitation));
+    translations.put(83, context.getString(R.string.videochat_invitation_body));
+    translations.put(84, context.getString(R.string.configuration_failed_with_error));
+    translations.put(85, context.getString(R.string.devicemsg_bad_time));
+    translations.put(86, context.getString(R.string.devicemsg_update_reminder));
+    translations.put(90, context.getString(R.string.reply_noun));
+    translations.put(91, context.getString(R.string.devicemsg_self_deleted));
+    translations.put(97, context.getString(R.string.forwarded));
+    translations.put(98, context.getString(R.string.devicemsg_storage_exceeding));
+    translations.put(99, context.getString(R.string.n_bytes_message));
+    translations.put(100, context.getString(R.string.download_max_available_until));
+    translations.put(103, context.getString(R.string.incoming_messages));
+    translations.put(104, context.getString(R.string.outgoing_messages));
+    translations.put(105, context.getString(R.string.storage_on_domain));
+    translations.put(107, context.getString(R.string.connectivity_connected));
+    translations.put(108, context.getString(R.string.connectivity_connecting));
+    translations.put(109, context.getString(R.string.connectivity_updating));
+    translations.put(110, context.getString(R.string.sending));
+    translations.put(111, context.getString(R.string.last_msg_sent_successfully));
+    translations.put(112, context.getString(R.string.error_x));
+    translations.put(113, context.getString(R.string.not_supported_by_provider));
+    translations.put(114, context.getString(R.string.messages));
+    translations.put(116, context.getString(R.string.part_of_total_used));
+    translations.put(117, context.getString(R.string.secure_join_started));
+    translations.put(118, context.getString(R.string.secure_join_replies));
+    translations.put(119, context.getString(R.string.qrshow_join_contact_hint));
+
+    translations.put(124, context.getString(R.string.group_name_changed_by_you));
+    translations.put(125, context.getString(R.string.group_name_changed_by_other));
+    translations.put(126, context.getString(R.string.group_image_changed_by_you));
+    translations.put(127, context.getString(R.string.group_image_changed_by_other));
+    translations.put(128, context.getString(R.string.add_member_by_you));
+    translations.put(129, context.getString(R.string.add_member_by_other));
+    translations.put(130, context.getString(R.string.remove_member_by_you));
+    translations.put(131, context.getString(R.string.remove_member_by_other));
+    translations.put(132, context.getString(R.string.group_left_by_you));
+    translations.put(133, context.getString(R.string.group_left_by_other));
+    translations.put(134, context.getString(R.string.group_image_deleted_by_you));
+    translations.put(135, context.getString(R.string.group_image_deleted_by_other));
+    translations.put(136, context.getString(R.string.location_enabled_by_you));
+    translations.put(137, context.getString(R.string.location_enabled_by_other));
+    translations.put(138, context.getString(R.string.ephemeral_timer_disabled_by_you));
+    translations.put(139, context.getString(R.string.ephemeral_timer_disabled_by_other));
+    translations.put(140, context.getString(R.string.ephemeral_timer_seconds_by_you));
+    translations.put(141, context.getString(R.string.ephemeral_timer_seconds_by_other));
+    translations.put(142, context.getString(R.string.ephemeral_timer_1_minute_by_you));
+    translations.put(143, context.getString(R.string.ephemeral_timer_1_minute_by_other));
+    translations.put(144, context.getString(R.string.ephemeral_timer_1_hour_by_you));
+    translations.put(145, context.getString(R.string.ephemeral_timer_1_hour_by_other));
+    translations.put(146, context.getString(R.string.ephemeral_timer_1_day_by_you));
+    translations.put(147, context.getString(R.string.ephemeral_timer_1_day_by_other));
+    translations.put(148, context.getString(R.string.ephemeral_timer_1_week_by_you));
+    translations.put(149, context.getString(R.string.ephemeral_timer_1_week_by_other));
+    translations.put(150, context.getString(R.string.ephemeral_timer_minutes_by_you));
+    translations.put(151, context.getString(R.string.ephemeral_timer_minutes_by_other));
+    translations.put(152, context.getString(R.string.ephemeral_timer_hours_by_you));
+    translations.put(153, context.getString(R.string.ephemeral_timer_hours_by_other));
+    translations.put(154, context.getString(R.string.ephemeral_timer_days_by_you));
+    translations.put(155, context.getString(R.string.ephemeral_timer_days_by_other));
+    translations.put(156, context.getString(R.string.ephemeral_timer_weeks_by_you));
+    translations.put(157, context.getString(R.string.ephemeral_timer_weeks_by_other));
+    translations.put(158, context.getString(R.string.ephemeral_timer_1_year_by_you));
+    translations.put(159, context.getString(R.string.ephemeral_timer_1_year_by_other));
 
     // HACK: svg does not handle entities correctly and shows `&quot;` as the text `quot;`.
     // until that is fixed, we fix the most obvious errors (core uses encode_minimal, so this does not affect so many characters)
     // cmp. https://github.com/deltachat/deltachat-android/issues/2187
-    dcContext.setStockTranslation(120, context.getString(R.string.qrshow_join_group_hint).replace("\"", ""));
-    dcContext.setStockTranslation(121, context.getString(R.string.connectivity_not_connected));
-    dcContext.setStockTranslation(162, context.getString(R.string.multidevice_qr_subtitle));
-    dcContext.setStockTranslation(163, context.getString(R.string.multidevice_transfer_done_devicemsg));
-    dcContext.setStockTranslation(170, context.getString(R.string.chat_protection_enabled_tap_to_learn_more));
-    dcContext.setStockTranslation(172, context.getString(R.string.chat_new_group_hint));
-    dcContext.setStockTranslation(173, context.getString(R.string.member_x_added));
-    dcContext.setStockTranslation(174, context.getString(R.string.invalid_unencrypted_tap_to_learn_more));
-    dcContext.setStockTranslation(176, context.getString(R.string.reaction_by_you));
-    dcContext.setStockTranslation(177, context.getString(R.string.reaction_by_other));
-    dcContext.setStockTranslation(190, context.getString(R.string.secure_join_wait));
-    dcContext.setStockTranslation(193, context.getString(R.string.donate_device_msg));
+    translations.put(120, context.getString(R.string.qrshow_join_group_hint).replace("\"", ""));
+    translations.put(121, context.getString(R.string.connectivity_not_connected));
+    translations.put(162, context.getString(R.string.multidevice_qr_subtitle));
+    translations.put(163, context.getString(R.string.multidevice_transfer_done_devicemsg));
+    translations.put(170, context.getString(R.string.chat_protection_enabled_tap_to_learn_more));
+    translations.put(172, context.getString(R.string.chat_new_group_hint));
+    translations.put(173, context.getString(R.string.member_x_added));
+    translations.put(174, context.getString(R.string.invalid_unencrypted_tap_to_learn_more));
+    translations.put(176, context.getString(R.string.reaction_by_you));
+    translations.put(177, context.getString(R.string.reaction_by_other));
+    translations.put(190, context.getString(R.string.secure_join_wait));
+    translations.put(193, context.getString(R.string.donate_device_msg));
+
+    int hash = translations.hashCode();
+    synchronized (stockTranslationHashes) {
+      Integer lastHash = stockTranslationHashes.get(dcContext.getAccountId());
+      if (lastHash != null && lastHash == hash) {
+        return;
+      }
+      for (Map.Entry<Integer, String> translation : translations.entrySet()) {
+        dcContext.setStockTranslation(translation.getKey(), translation.getValue());
+      }
+      stockTranslationHashes.put(dcContext.getAccountId(), hash);
+    }
   }
 
   public static File getImexDir() {
@@ -403,7 +430,14 @@ public class DcHelper {
   }
 
   @NonNull
-  public static ThreadRecord getThreadRecord(Context context, DcLot summary, DcChat chat) { // adapted from ThreadDatabase.getCurrent()
+  public static ThreadRecord getThreadRecord(Context context, DcLot summary, DcChat chat) {
+    return getThreadRecord(context, summary, chat, getContext(context).getFreshMsgCount(chat.getId()));
+  }
+
+  /**
+   * Creates the record with an unread count that was already loaded, eg. by DcContext.getFreshMsgCounts() for many chats.
+   */
+  public static ThreadRecord getThreadRecord(Context context, DcLot summary, DcChat chat, int unreadCount) { // adapted from ThreadDatabase.getCurrent()
     int chatId = chat.getId();
 
     String body = summary.getText1();
@@ -414,7 +448,6 @@ public class DcHelper {
 
     Recipient recipient = new Recipient(context, chat);
     long date = summary.getTimestamp();
-    int unreadCount = getContext(context).getFreshMsgCount(chatId);
 
     return new ThreadRecord(body, recipient, date,
       unreadCount, chatId,
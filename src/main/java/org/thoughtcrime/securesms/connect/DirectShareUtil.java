@@ -27,6 +27,7 @@ import org.thoughtcrime.securesms.recipients.Recipient;
 import org.thoughtcrime.securesms.util.BitmapUtil;
 import org.thoughtcrime.securesms.util.DrawableUtil;
 import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.concurrent.Lane;
 
 import java.util.Collections;
 import java.util.LinkedList;
@@ -49,7 +50,7 @@ public class DirectShareUtil {
 
   public static void clearShortcut(@NonNull Context context, int chatId) {
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-      Util.runOnAnyBackgroundThread(() -> {
+      Util.runOnAnyBackgroundThread(Lane.MAINTENANCE, () -> {
         try {
           ShortcutManagerCompat.removeDynamicShortcuts(context, Collections.singletonList(Integer.toString(chatId)));
         } catch (Exception e) {
@@ -60,7 +61,7 @@ public class DirectShareUtil {
   }
 
   public static void resetAllShortcuts(@NonNull Context context) {
-    Util.runOnBackground(() -> {
+    Util.runOnBackground(Lane.MAINTENANCE, () -> {
       try {
         ShortcutManagerCompat.removeAllDynamicShortcuts(context);
         triggerRefreshDirectShare(context);
@@ -73,7 +74,7 @@ public class DirectShareUtil {
   public static void triggerRefreshDirectShare(Context context) {
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
 
-      Util.runOnBackgroundDelayed(() -> {
+      Util.runOnBackgroundDelayed(Lane.MAINTENANCE, () -> {
         try {
           if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N_MR1
                   && context.getSystemService(ShortcutManager.class).isRateLimitingActive()) {
@@ -0,0 +1,209 @@
+package org.thoughtcrime.securesms.connect;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.b44t.messenger.DcAccounts;
+import com.b44t.messenger.DcContext;
+
+import org.thoughtcrime.securesms.crypto.DatabaseSecret;
+import org.thoughtcrime.securesms.crypto.DatabaseSecretProvider;
+import org.thoughtcrime.securesms.util.Util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens the accounts when the application starts.
+ * The selected account is opened on the calling thread as the first screen needs it;
+ * all other accounts are opened in parallel on background threads.
+ * Until then, DcAccounts.getAccount() waits for them on background threads,
+ * so code using other accounts early, eg. to show notifications, still gets opened accounts.
+ * The main thread does not wait but gets the account while it is still being opened;
+ * it may use runWhenAllOpened() to update eg. unread counts afterwards.
+ * The durations of the startup phases are recorded for the debug log.
+ */
+public class StartupOrchestrator implements DcAccounts.OpenBarrier {
+  private static final String TAG = StartupOrchestrator.class.getSimpleName();
+
+  public interface AccountSetup {
+    /**
+     * Called for each account after it was opened, on the thread that opened it.
+     */
+    void onOpened(@NonNull DcContext dcContext);
+  }
+
+  private final Context    context;
+  private final DcAccounts dcAccounts;
+
+  private final ConcurrentHashMap<Integer, CountDownLatch> pendingAccounts = new ConcurrentHashMap<>();
+  private final LinkedHashMap<String, Long>                phaseMillis     = new LinkedHashMap<>();
+
+  // guarded by allOpenedCallbacks
+  private final List<Runnable> allOpenedCallbacks = new ArrayList<>();
+  private boolean              allOpened;
+
+  public StartupOrchestrator(@NonNull Context context, @NonNull DcAccounts dcAccounts) {
+    this.context    = context.getApplicationContext();
+    this.dcAccounts = dcAccounts;
+  }
+
+  /**
+   * Opens the selected account before returning and starts opening all other accounts.
+   *
+   * @param setup called for each opened account
+   */
+  public void openAccounts(@NonNull AccountSetup setup) {
+    long start = SystemClock.elapsedRealtime();
+
+    // get all contexts before the barrier is set, getAccount() would wait for the accounts otherwise
+    DcContext selected = dcAccounts.getSelectedAccount();
+    int selectedId = selected.getAccountId();
+    List<DcContext> others = new ArrayList<>();
+    for (int accountId : dcAccounts.getAll()) {
+      if (accountId != selectedId) {
+        others.add(dcAccounts.getAccount(accountId));
+        pendingAccounts.put(accountId, new CountDownLatch(1));
+      }
+    }
+    dcAccounts.setOpenBarrier(this);
+
+    if (selectedId != 0) {
+      open(selected, setup);
+    }
+    recordPhase("openSelectedAccount", start);
+
+    if (others.isEmpty()) {
+      onAllOpened();
+      return;
+    }
+
+    final long othersStart = SystemClock.elapsedRealtime();
+    final AtomicInteger remaining = new AtomicInteger(others.size());
+    final AtomicInteger threadCount = new AtomicInteger();
+    int poolSize = Math.max(1, Math.min(others.size(), Runtime.getRuntime().availableProcessors() - 1));
+    ExecutorService executor = Executors.newFixedThreadPool(poolSize,
+        runnable -> new Thread(runnable, "AccountOpener-" + threadCount.incrementAndGet()));
+    for (DcContext dcContext : others) {
+      executor.execute(() -> {
+        int accountId = dcContext.getAccountId();
+        try {
+          open(dcContext, setup);
+        } finally {
+          CountDownLatch latch = pendingAccounts.remove(accountId);
+          if (latch != null) {
+            latch.countDown();
+          }
+        }
+        if (remaining.decrementAndGet() == 0) {
+          recordPhase("openOtherAccounts", othersStart);
+          onAllOpened();
+        }
+      });
+    }
+    executor.shutdown();
+  }
+
+  private void open(@NonNull DcContext dcContext, @NonNull AccountSetup setup) {
+    int accountId = dcContext.getAccountId();
+    if (!dcContext.isOpen()) {
+      try {
+        DatabaseSecret secret = DatabaseSecretProvider.getOrCreateDatabaseSecret(context, accountId);
+        boolean res = dcContext.open(secret.asString());
+        if (res) Log.i(TAG, "Successfully opened account " + accountId + ", path: " + dcContext.getBlobdir());
+        else Log.e(TAG, "Error opening account " + accountId + ", path: " + dcContext.getBlobdir());
+      } catch (Exception e) {
+        Log.e(TAG, "Failed to open account " + accountId + ", path: " + dcContext.getBlobdir() + ": " + e);
+        e.printStackTrace();
+      }
+    }
+    setup.onOpened(dcContext);
+  }
+
+  private void onAllOpened() {
+    List<Runnable> callbacks;
+    synchronized (allOpenedCallbacks) {
+      allOpened = true;
+      callbacks = new ArrayList<>(allOpenedCallbacks);
+      allOpenedCallbacks.clear();
+    }
+    for (Runnable callback : callbacks) {
+      callback.run();
+    }
+  }
+
+  /**
+   * Runs the callback once all accounts are open;
+   * directly if they are open already, on the thread that opened the last account otherwise.
+   */
+  public void runWhenAllOpened(@NonNull Runnable callback) {
+    synchronized (allOpenedCallbacks) {
+      if (!allOpened) {
+        allOpenedCallbacks.add(callback);
+        return;
+      }
+    }
+    callback.run();
+  }
+
+  @Override
+  public void awaitOpen(int accountId) {
+    CountDownLatch latch = pendingAccounts.get(accountId);
+    if (latch == null) {
+      return;
+    }
+    if (Util.isMainThread()) {
+      // opening an account may take seconds, this must not block the ui
+      Log.w(TAG, "account " + accountId + " is not yet open, not waiting on the main thread", new Throwable());
+      return;
+    }
+    long start = SystemClock.elapsedRealtime();
+    boolean interrupted = false;
+    while (true) {
+      try {
+        latch.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    Log.i(TAG, "waited " + (SystemClock.elapsedRealtime() - start) + " ms for account " + accountId + " on " + Thread.currentThread().getName());
+  }
+
+  /**
+   * Records the duration of a startup phase that began at the given SystemClock.elapsedRealtime().
+   */
+  public void recordPhase(@NonNull String phase, long start) {
+    synchronized (phaseMillis) {
+      phaseMillis.put(phase, SystemClock.elapsedRealtime() - start);
+    }
+  }
+
+  /**
+   * Durations of the startup phases in the order they were recorded, for the debug log.
+   */
+  public @NonNull String getStats() {
+    StringBuilder builder = new StringBuilder();
+    synchronized (phaseMillis) {
+      for (Map.Entry<String, Long> phase : phaseMillis.entrySet()) {
+        builder.append(String.format(Locale.US, "startup %s: %d ms\n", phase.getKey(), phase.getValue()));
+      }
+    }
+    builder.append(String.format(Locale.US, "startup pendingAccounts=%d\n", pendingAccounts.size()));
+    return builder.toString();
+  }
+}
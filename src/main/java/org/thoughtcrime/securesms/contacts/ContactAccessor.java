@@ -21,13 +21,14 @@ import android.database.Cursor;
 import android.provider.ContactsContract;
 import android.util.Log;
 
+import com.b44t.messenger.DcContext;
+
 import org.thoughtcrime.securesms.ContactSelectionListFragment;
 import org.thoughtcrime.securesms.util.Hash;
 import org.thoughtcrime.securesms.util.Prefs;
 
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
+import java.util.Iterator;
 import java.util.Set;
 
 /**
@@ -51,6 +52,11 @@ public class ContactAccessor {
 
   private static final int CONTACT_CURSOR_CONTACT_ID = 2;
 
+  private static final int CONTACT_CURSOR_UPDATED = 3;
+
+  // number of addresses passed to one addAddressBook() call
+  private static final int ADDRESS_BOOK_CHUNK_SIZE = 500;
+
   private static final ContactAccessor instance = new ContactAccessor();
 
   public static synchronized ContactAccessor getInstance() {
@@ -58,57 +64,149 @@ public class ContactAccessor {
   }
 
   public Cursor getAllSystemContacts(Context context) {
-    String[] projection = {ContactsContract.Data.DISPLAY_NAME, ContactsContract.CommonDataKinds.Email.ADDRESS, ContactsContract.Data.CONTACT_ID};
-    return context.getContentResolver().query(ContactsContract.CommonDataKinds.Email.CONTENT_URI, projection, null, null, null);
+    return getSystemContactsUpdatedAfter(context, 0);
   }
 
-  public String getAllSystemContactsAsString(Context context) {
-    Cursor systemContactsCursor = getAllSystemContacts(context);
-    StringBuilder result = new StringBuilder();
-    List<String> mailList = new ArrayList<>();
-    Set<String> contactPhotoIdentifiers = new HashSet<>();
-    while (systemContactsCursor != null && systemContactsCursor.moveToNext()) {
-
-      String name;
-      try {
-        name = systemContactsCursor.getString(CONTACT_CURSOR_NAME);
-        if (name != null) {
-          name = name.replace("\r", ""); // remove characters later used as field separator
-          name = name.replace("\n", "");
-        } else {
-          name = "";
+  private Cursor getSystemContactsUpdatedAfter(Context context, long timestamp) {
+    String[] projection = {ContactsContract.Data.DISPLAY_NAME, ContactsContract.CommonDataKinds.Email.ADDRESS, ContactsContract.Data.CONTACT_ID, ContactsContract.Data.CONTACT_LAST_UPDATED_TIMESTAMP};
+    // contacts updated in the same millisecond as the last imported one may not have been imported yet
+    String selection = timestamp != 0 ? ContactsContract.Data.CONTACT_LAST_UPDATED_TIMESTAMP + " >= ?" : null;
+    String[] selectionArgs = timestamp != 0 ? new String[]{String.valueOf(timestamp)} : null;
+    return context.getContentResolver().query(ContactsContract.CommonDataKinds.Email.CONTENT_URI, projection, selection, selectionArgs, null);
+  }
+
+  /**
+   * Imports the email addresses of the system contacts into the given account.
+   * Only contacts changed since the last sync of the account are read,
+   * they are passed to the core in chunks so that no single huge string is built.
+   * The identifiers used to find photos of system contacts are updated along;
+   * the core cannot remove contacts from its address book, so deleted system contacts only lose their photos.
+   */
+  public synchronized void syncSystemContacts(Context context, DcContext dcContext) {
+    int accountId = dcContext.getAccountId();
+    long syncStart = System.currentTimeMillis();
+    // syncedUntil is the newest update timestamp imported, lastSync the time of the last sync;
+    // deleted contacts are only reported for a limited time, read all contacts if the last sync is older
+    long syncedUntil = Prefs.getSystemContactsSynced(context, accountId);
+    long lastSync = Prefs.getSystemContactsLastSync(context, accountId);
+    if (syncStart - lastSync > ContactsContract.DeletedContacts.DAYS_KEPT_MILLISECONDS) {
+      syncedUntil = 0;
+    }
+    long newSyncedUntil = syncedUntil;
+
+    Set<String> contactPhotoIdentifiers;
+    if (syncedUntil == 0) {
+      contactPhotoIdentifiers = new HashSet<>();
+    } else {
+      // changed and deleted contacts get new identifiers below or none at all
+      Set<String> changedContactIds = new HashSet<>();
+      newSyncedUntil = Math.max(newSyncedUntil, getChangedContactIds(context, syncedUntil, lastSync, changedContactIds));
+      contactPhotoIdentifiers = Prefs.getSystemContactPhotos(context);
+      Iterator<String> iterator = contactPhotoIdentifiers.iterator();
+      while (iterator.hasNext()) {
+        String identifier = iterator.next();
+        if (changedContactIds.contains(identifier.substring(identifier.lastIndexOf('|') + 1))) {
+          iterator.remove();
         }
-      } catch(Exception e) {
-        Log.e(TAG, "Can't get contact name: " + e);
-        name = "";
       }
+    }
 
-      String mail = null;
-      try {
-        mail = systemContactsCursor.getString(CONTACT_CURSOR_MAIL);
-        if (mail != null) {
-          mail = mail.replace("\r", ""); // remove characters later used as field separator
-          mail = mail.replace("\n", "");
+    Cursor systemContactsCursor = getSystemContactsUpdatedAfter(context, syncedUntil);
+    StringBuilder chunk = new StringBuilder();
+    int chunkCount = 0;
+    int importedCount = 0;
+    Set<String> mails = new HashSet<>();
+    try {
+      while (systemContactsCursor != null && systemContactsCursor.moveToNext()) {
+
+        String name;
+        try {
+          name = systemContactsCursor.getString(CONTACT_CURSOR_NAME);
+          if (name != null) {
+            name = name.replace("\r", ""); // remove characters later used as field separator
+            name = name.replace("\n", "");
+          } else {
+            name = "";
+          }
+        } catch(Exception e) {
+          Log.e(TAG, "Can't get contact name: " + e);
+          name = "";
         }
-      } catch(Exception e) {
-        Log.e(TAG, "Can't get contact addr: " + e);
-      }
 
-      String contactId = systemContactsCursor.getString(CONTACT_CURSOR_CONTACT_ID);
-      if (contactId != null) {
-        String identifier = name + mail;
-        String hashedIdentifierAndId = Hash.sha256(identifier) + "|" + contactId;
-        contactPhotoIdentifiers.add(hashedIdentifierAndId);
-      }
-      if (mail != null && !mail.isEmpty() && !mailList.contains(mail)) {
-          mailList.add(mail);
+        String mail = null;
+        try {
+          mail = systemContactsCursor.getString(CONTACT_CURSOR_MAIL);
+          if (mail != null) {
+            mail = mail.replace("\r", ""); // remove characters later used as field separator
+            mail = mail.replace("\n", "");
+          }
+        } catch(Exception e) {
+          Log.e(TAG, "Can't get contact addr: " + e);
+        }
+
+        newSyncedUntil = Math.max(newSyncedUntil, systemContactsCursor.getLong(CONTACT_CURSOR_UPDATED));
+
+        String contactId = systemContactsCursor.getString(CONTACT_CURSOR_CONTACT_ID);
+        if (contactId != null) {
+          String identifier = name + mail;
+          String hashedIdentifierAndId = Hash.sha256(identifier) + "|" + contactId;
+          contactPhotoIdentifiers.add(hashedIdentifierAndId);
+        }
+        if (mail != null && !mail.isEmpty() && mails.add(mail)) {
           if (name.isEmpty()) {
             name = mail;
           }
-          result.append(name).append("\n").append(mail).append("\n");
+          chunk.append(name).append("\n").append(mail).append("\n");
+          chunkCount++;
+          if (chunkCount >= ADDRESS_BOOK_CHUNK_SIZE) {
+            dcContext.addAddressBook(chunk.toString());
+            importedCount += chunkCount;
+            chunk.setLength(0);
+            chunkCount = 0;
+          }
+        }
       }
+    } finally {
+      if (systemContactsCursor != null) {
+        systemContactsCursor.close();
+      }
+    }
+    if (chunkCount > 0) {
+      dcContext.addAddressBook(chunk.toString());
+      importedCount += chunkCount;
     }
+
     Prefs.setSystemContactPhotos(context, contactPhotoIdentifiers);
-    return result.toString();
+    Prefs.setSystemContactsSynced(context, accountId, newSyncedUntil);
+    Prefs.setSystemContactsLastSync(context, accountId, syncStart);
+    Log.i(TAG, "Imported " + importedCount + " system contact addresses into account " + accountId + (syncedUntil == 0 ? "" : " (changes only)"));
+  }
+
+  /**
+   * Adds the ids of the system contacts updated since updatedSince or deleted since deletedSince to contactIds.
+   *
+   * @return the newest update timestamp, 0 if there are no updates.
+   */
+  private long getChangedContactIds(Context context, long updatedSince, long deletedSince, Set<String> contactIds) {
+    long newest = 0;
+
+    String[] updatedProjection = {ContactsContract.Contacts._ID, ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP};
+    try (Cursor cursor = context.getContentResolver().query(ContactsContract.Contacts.CONTENT_URI, updatedProjection,
+        ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP + " >= ?", new String[]{String.valueOf(updatedSince)}, null)) {
+      while (cursor != null && cursor.moveToNext()) {
+        contactIds.add(cursor.getString(0));
+        newest = Math.max(newest, cursor.getLong(1));
+      }
+    }
+
+    String[] deletedProjection = {ContactsContract.DeletedContacts.CONTACT_ID};
+    try (Cursor cursor = context.getContentResolver().query(ContactsContract.DeletedContacts.CONTENT_URI, deletedProjection,
+        ContactsContract.DeletedContacts.CONTACT_DELETED_TIMESTAMP + " >= ?", new String[]{String.valueOf(deletedSince)}, null)) {
+      while (cursor != null && cursor.moveToNext()) {
+        contactIds.add(cursor.getString(0));
+      }
+    }
+
+    return newest;
   }
 }
@@ -31,15 +31,12 @@ import com.b44t.messenger.DcContact;
 import com.b44t.messenger.DcContext;
 
 import org.thoughtcrime.securesms.R;
+import org.thoughtcrime.securesms.connect.DcContactCache;
 import org.thoughtcrime.securesms.connect.DcContactsLoader;
 import org.thoughtcrime.securesms.connect.DcHelper;
 import org.thoughtcrime.securesms.mms.GlideRequests;
-import org.thoughtcrime.securesms.util.LRUCache;
 
-import java.lang.ref.SoftReference;
-import java.util.Collections;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 /**
@@ -50,13 +47,9 @@ import java.util.Set;
 public class ContactSelectionListAdapter extends RecyclerView.Adapter<ContactSelectionListAdapter.ViewHolder>
 {
   private static final int VIEW_TYPE_CONTACT = 0;
-  private static final int MAX_CACHE_SIZE = 100;
-
-  private final Map<Integer,SoftReference<DcContact>> recordCache =
-          Collections.synchronizedMap(new LRUCache<Integer,SoftReference<DcContact>>(MAX_CACHE_SIZE));
-
   private final @NonNull Context              context;
   private final @NonNull DcContext            dcContext;
+  private final @NonNull DcContactCache       contactCache;
   private @NonNull int[]                      dcContactList = new int[0];
   private final boolean                       multiSelect;
   private final boolean                       longPressSelect;
@@ -76,17 +69,7 @@ public class ContactSelectionListAdapter extends RecyclerView.Adapter<ContactSel
       return new DcContact(0);
     }
 
-    final SoftReference<DcContact> reference = recordCache.get(position);
-    if (reference != null) {
-      final DcContact fromCache = reference.get();
-      if (fromCache != null) {
-        return fromCache;
-      }
-    }
-
-    final DcContact fromDb = dcContext.getContact(dcContactList[position]);
-    recordCache.put(position, new SoftReference<>(fromDb));
-    return fromDb;
+    return contactCache.getContact(dcContext, dcContactList[position]);
   }
 
     public void resetActionModeSelection() {
@@ -237,6 +220,7 @@ public class ContactSelectionListAdapter extends RecyclerView.Adapter<ContactSel
     super();
     this.context       = context;
     this.dcContext     = DcHelper.getContext(context);
+    this.contactCache  = DcHelper.getContactCache(context);
     this.li            = LayoutInflater.from(context);
     this.glideRequests = glideRequests;
     this.multiSelect   = multiSelect;
@@ -318,7 +302,6 @@ public class ContactSelectionListAdapter extends RecyclerView.Adapter<ContactSel
 
   public void changeData(DcContactsLoader.Ret loaderRet) {
     this.dcContactList = loaderRet==null? new int[0] : loaderRet.ids;
-    recordCache.clear();
     notifyDataSetChanged();
   }
 }
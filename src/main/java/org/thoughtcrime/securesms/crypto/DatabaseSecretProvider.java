@@ -19,10 +19,12 @@ import java.util.concurrent.ConcurrentHashMap;
 public final class DatabaseSecretProvider {
 
   private static final ConcurrentHashMap<Integer, DatabaseSecret> instances = new ConcurrentHashMap<>();
+  // one lock per account, so that the secrets of several accounts can be read in parallel
+  private static final ConcurrentHashMap<Integer, Object>         locks     = new ConcurrentHashMap<>();
 
   public static DatabaseSecret getOrCreateDatabaseSecret(@NonNull Context context, int accountId) {
     if (instances.get(accountId) == null) {
-      synchronized (DatabaseSecretProvider.class) {
+      synchronized (getLock(accountId)) {
         if (instances.get(accountId) == null) {
           instances.put(accountId, getOrCreate(context, accountId));
         }
@@ -32,6 +34,18 @@ public final class DatabaseSecretProvider {
     return instances.get(accountId);
   }
 
+  private static @NonNull Object getLock(int accountId) {
+    Object lock = locks.get(accountId);
+    if (lock == null) {
+      Object newLock = new Object();
+      lock = locks.putIfAbsent(accountId, newLock);
+      if (lock == null) {
+        lock = newLock;
+      }
+    }
+    return lock;
+  }
+
   private DatabaseSecretProvider() {
   }
 
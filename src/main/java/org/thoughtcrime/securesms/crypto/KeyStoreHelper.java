@@ -76,8 +76,9 @@ public final class KeyStoreHelper {
     }
   }
 
+  // synchronized as the secrets of several accounts may be read in parallel, the key must be created only once
   @RequiresApi(Build.VERSION_CODES.M)
-  private static SecretKey getOrCreateKeyStoreEntry() {
+  private static synchronized SecretKey getOrCreateKeyStoreEntry() {
     if (hasKeyStoreEntry()) return getKeyStoreEntry();
     else                    return createKeyStoreEntry();
   }
@@ -9,12 +9,14 @@ import androidx.loader.content.AsyncTaskLoader;
 import com.b44t.messenger.DcContext;
 import com.b44t.messenger.DcMsg;
 
+import org.thoughtcrime.securesms.ConversationMsgCache;
 import org.thoughtcrime.securesms.R;
 import org.thoughtcrime.securesms.connect.DcHelper;
 import org.thoughtcrime.securesms.util.Util;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
@@ -25,6 +27,8 @@ import java.util.Map;
 
 public class BucketedThreadMediaLoader extends AsyncTaskLoader<BucketedThreadMediaLoader.BucketedThreadMedia> {
 
+  private static final int TIMESTAMP_PAGE_SIZE = 500;
+
   private final int chatId;
   private final int msgType1;
   private final int msgType2;
@@ -56,22 +60,46 @@ public class BucketedThreadMediaLoader extends AsyncTaskLoader<BucketedThreadMed
   protected void onAbandon() {
   }
 
+  @Override
+  public void onCanceled(BucketedThreadMedia media) {
+    if (media != null) {
+      media.close();
+    }
+  }
+
   @Override
   public BucketedThreadMedia loadInBackground() {
     BucketedThreadMedia result   = new BucketedThreadMedia(getContext());
     DcContext context = DcHelper.getContext(getContext());
     if(chatId!=-1 /*0=all, -1=none*/) {
       int[] messages = context.getChatMedia(chatId, msgType1, msgType2, msgType3);
-      for(int nextId : messages) {
-        result.add(context.getMsg(nextId));
+      // buckets only need the timestamps; DcMsg objects are loaded when their cells are displayed.
+      // getMsgTimestamps() still loads each message in the core, it only avoids the Java objects,
+      // so timestamps are fetched in pages and a large gallery can be cancelled in between.
+      for (int start = 0; start < messages.length; start += TIMESTAMP_PAGE_SIZE) {
+        if (isLoadInBackgroundCanceled()) {
+          break;
+        }
+        int[]  page       = Arrays.copyOfRange(messages, start, Math.min(start + TIMESTAMP_PAGE_SIZE, messages.length));
+        long[] timestamps = context.getMsgTimestamps(page);
+        for (int i = 0; i < page.length; i++) {
+          result.add(page[i], timestamps[i]);
+        }
       }
     }
 
     return result;
   }
 
+  /**
+   * Media of a chat or of all chats, sorted into time buckets.
+   * Only message ids and timestamps are kept;
+   * DcMsg objects are loaded on demand and the following ones are prefetched in the background.
+   */
   public static class BucketedThreadMedia {
 
+    private final Context      context;
+
     private final TimeBucket   TODAY;
     private final TimeBucket   YESTERDAY;
     private final TimeBucket   THIS_WEEK;
@@ -82,7 +110,14 @@ public class BucketedThreadMediaLoader extends AsyncTaskLoader<BucketedThreadMed
 
     private final TimeBucket[] TIME_SECTIONS;
 
+    private List<TimeBucket>     activeTimeBuckets;
+    private int[]                displayedMsgIds;
+    private int[]                sectionOffsets;
+    private ConversationMsgCache msgCache;
+    private int                  lastIndex;
+
     public BucketedThreadMedia(@NonNull Context context) {
+      this.context       = context.getApplicationContext();
       // from today midnight until the end of human time
       this.TODAY         = new TimeBucket(context.getString(R.string.today),
           addToCalendarFromTodayMidnight(Calendar.DAY_OF_YEAR, 0), Long.MAX_VALUE);
@@ -105,65 +140,110 @@ public class BucketedThreadMediaLoader extends AsyncTaskLoader<BucketedThreadMed
       this.OLDER         = new MonthBuckets();
     }
 
-    public void add(DcMsg imageMessage) {
+    public void add(int msgId, long timestamp) {
+      activeTimeBuckets = null;
+      displayedMsgIds = null;
       for (TimeBucket timeSection : TIME_SECTIONS) {
-        if (timeSection.inRange(imageMessage.getTimestamp())) {
-          timeSection.add(imageMessage);
+        if (timeSection.inRange(timestamp)) {
+          timeSection.add(msgId);
           return;
         }
       }
-      OLDER.add(imageMessage);
+      OLDER.add(msgId, timestamp);
     }
 
+    /**
+     * Loads all messages, this should only be used for explicit actions as "select all".
+     */
     public LinkedList<DcMsg> getAll() {
+      DcContext dcContext = DcHelper.getContext(context);
       LinkedList<DcMsg> messages = new LinkedList<>();
-      for (TimeBucket section : TIME_SECTIONS) {
-        messages.addAll(section.records);
-      }
-      for (List<DcMsg> records : OLDER.months.values()) {
-        messages.addAll(records);
+      for (int msgId : getDisplayedMsgIds()) {
+        messages.add(dcContext.getMsg(msgId));
       }
       return messages;
     }
 
     public int getSectionCount() {
-      int count = 0;
-      for (TimeBucket section : TIME_SECTIONS) {
-        if (!section.isEmpty()) count++;
-      }
-      return count + OLDER.getSectionCount();
+      return getActiveTimeBuckets().size() + OLDER.getSectionCount();
     }
 
     public int getSectionItemCount(int section) {
-      List<TimeBucket> activeTimeBuckets = new ArrayList<>();
-      for (TimeBucket bucket : TIME_SECTIONS) {
-        if (!bucket.isEmpty()) activeTimeBuckets.add(bucket);
-      }
-
+      List<TimeBucket> activeTimeBuckets = getActiveTimeBuckets();
       if (section < activeTimeBuckets.size()) return activeTimeBuckets.get(section).getItemCount();
       else                                    return OLDER.getSectionItemCount(section - activeTimeBuckets.size());
     }
 
+    public int getMsgId(int section, int item) {
+      List<TimeBucket> activeTimeBuckets = getActiveTimeBuckets();
+      if (section < activeTimeBuckets.size()) return activeTimeBuckets.get(section).getItem(item);
+      else                                    return OLDER.getItem(section - activeTimeBuckets.size(), item);
+    }
+
     public DcMsg get(int section, int item) {
-      List<TimeBucket> activeTimeBuckets = new ArrayList<>();
-      for (TimeBucket bucket : TIME_SECTIONS) {
-        if (!bucket.isEmpty()) activeTimeBuckets.add(bucket);
+      if (msgCache == null) {
+        msgCache = new ConversationMsgCache(context, DcHelper.getContext(context), ConversationMsgCache.DEFAULT_PREFETCH_WINDOW);
       }
 
-      if (section < activeTimeBuckets.size()) return activeTimeBuckets.get(section).getItem(item);
-      else                                    return OLDER.getItem(section - activeTimeBuckets.size(), item);
+      int[] msgIds = getDisplayedMsgIds();
+      int   index  = sectionOffsets[section] + item;
+      msgCache.prefetch(msgIds, index, index >= lastIndex ? 1 : -1);
+      lastIndex = index;
+      return msgCache.get(msgIds[index]);
     }
 
-    public String getName(int section) {
-      List<TimeBucket> activeTimeBuckets = new ArrayList<>();
-      for (TimeBucket bucket : TIME_SECTIONS) {
-        if (!bucket.isEmpty()) activeTimeBuckets.add(bucket);
+    /**
+     * Releases the native objects of the loaded messages, should be called when the media is no longer displayed.
+     */
+    public void close() {
+      if (msgCache != null) {
+        msgCache.close();
       }
+    }
 
+    public String getName(int section) {
+      List<TimeBucket> activeTimeBuckets = getActiveTimeBuckets();
       if (section < activeTimeBuckets.size()) return activeTimeBuckets.get(section).getName();
       else                                    return OLDER.getName(section - activeTimeBuckets.size());
     }
 
+    private List<TimeBucket> getActiveTimeBuckets() {
+      if (activeTimeBuckets == null) {
+        List<TimeBucket> buckets = new ArrayList<>();
+        for (TimeBucket bucket : TIME_SECTIONS) {
+          if (!bucket.isEmpty()) buckets.add(bucket);
+        }
+        activeTimeBuckets = buckets;
+      }
+      return activeTimeBuckets;
+    }
+
+    /**
+     * All message ids in the order they are displayed, used for prefetching across section borders.
+     */
+    private int[] getDisplayedMsgIds() {
+      if (displayedMsgIds == null) {
+        int sectionCount = getSectionCount();
+        int[] offsets = new int[sectionCount];
+        int total = 0;
+        for (int section = 0; section < sectionCount; section++) {
+          offsets[section] = total;
+          total += getSectionItemCount(section);
+        }
+
+        int[] msgIds = new int[total];
+        for (int section = 0; section < sectionCount; section++) {
+          int itemCount = getSectionItemCount(section);
+          for (int item = 0; item < itemCount; item++) {
+            msgIds[offsets[section] + item] = getMsgId(section, item);
+          }
+        }
+        sectionOffsets = offsets;
+        displayedMsgIds = msgIds;
+      }
+      return displayedMsgIds;
+    }
+
     // tests should override this function to deliver a preset calendar.
     Calendar getCalendar() {
       return Calendar.getInstance();
@@ -199,7 +279,7 @@ public class BucketedThreadMediaLoader extends AsyncTaskLoader<BucketedThreadMed
 
     private static class TimeBucket {
 
-      private final LinkedList<DcMsg> records = new LinkedList<>();
+      private final MsgIdList records = new MsgIdList();
 
       private final long   startTime;
       private final long endTime;
@@ -211,8 +291,8 @@ public class BucketedThreadMediaLoader extends AsyncTaskLoader<BucketedThreadMed
         this.endTime = endTime;
       }
 
-      void add(DcMsg record) {
-        this.records.addFirst(record);
+      void add(int msgId) {
+        this.records.add(msgId);
       }
 
       boolean inRange(long timestamp) {
@@ -220,15 +300,16 @@ public class BucketedThreadMediaLoader extends AsyncTaskLoader<BucketedThreadMed
       }
 
       boolean isEmpty() {
-        return records.isEmpty();
+        return records.size() == 0;
       }
 
       int getItemCount() {
         return records.size();
       }
 
-      DcMsg getItem(int position) {
-        return records.get(position);
+      // newest first
+      int getItem(int position) {
+        return records.get(records.size() - 1 - position);
       }
 
       String getName() {
@@ -238,23 +319,24 @@ public class BucketedThreadMediaLoader extends AsyncTaskLoader<BucketedThreadMed
 
     private static class MonthBuckets {
 
-      private final Map<Date, List<DcMsg>> months = new HashMap<>();
+      private final Map<Date, MsgIdList> months = new HashMap<>();
+      private List<Date>                 sortedMonths;
 
-      void add(DcMsg record) {
+      void add(int msgId, long timestamp) {
         Calendar calendar = Calendar.getInstance();
-        calendar.setTimeInMillis(record.getTimestamp());
+        calendar.setTimeInMillis(timestamp);
 
         int  year  = calendar.get(Calendar.YEAR) - 1900;
         int  month = calendar.get(Calendar.MONTH);
         Date date  = new Date(year, month, 1);
 
-        if (months.containsKey(date)) {
-          months.get(date).add(record);
-        } else {
-          List<DcMsg> list = new LinkedList<>();
-          list.add(record);
+        MsgIdList list = months.get(date);
+        if (list == null) {
+          list = new MsgIdList();
           months.put(date, list);
+          sortedMonths = null;
         }
+        list.add(msgId);
       }
 
       int getSectionCount() {
@@ -265,15 +347,18 @@ public class BucketedThreadMediaLoader extends AsyncTaskLoader<BucketedThreadMed
         return months.get(getSection(section)).size();
       }
 
-      DcMsg getItem(int section, int position) {
+      int getItem(int section, int position) {
         return months.get(getSection(section)).get(position);
       }
 
       Date getSection(int section) {
-        ArrayList<Date> keys = new ArrayList<>(months.keySet());
-        Collections.sort(keys, Collections.reverseOrder());
+        if (sortedMonths == null) {
+          ArrayList<Date> keys = new ArrayList<>(months.keySet());
+          Collections.sort(keys, Collections.reverseOrder());
+          sortedMonths = keys;
+        }
 
-        return keys.get(section);
+        return sortedMonths.get(section);
       }
 
       String getName(int section) {
@@ -282,5 +367,26 @@ public class BucketedThreadMediaLoader extends AsyncTaskLoader<BucketedThreadMed
         return new SimpleDateFormat("MMMM yyyy", Util.getLocale()).format(sectionDate);
       }
     }
+
+    private static class MsgIdList {
+
+      private int[] ids = new int[16];
+      private int   size;
+
+      void add(int msgId) {
+        if (size == ids.length) {
+          ids = Arrays.copyOf(ids, size * 2);
+        }
+        ids[size++] = msgId;
+      }
+
+      int size() {
+        return size;
+      }
+
+      int get(int index) {
+        return ids[index];
+      }
+    }
   }
 }
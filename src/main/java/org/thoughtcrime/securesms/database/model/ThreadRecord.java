@@ -24,12 +24,16 @@ import android.text.style.StyleSpan;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.b44t.messenger.DcContact;
 import com.b44t.messenger.DcLot;
 
 import org.thoughtcrime.securesms.recipients.Recipient;
 
 /**
  * The message record model which represents thread heading messages.
+ * All values shown in the chatlist are read when the record is created,
+ * so that records can be created on a background thread and their texts bound without JNI calls.
+ * The summary passed to the constructor is not kept and may be closed afterwards.
  *
  * @author Moxie Marlinspike
  *
@@ -47,7 +51,10 @@ public class ThreadRecord {
   private           final boolean isSendingLocations;
   private           final boolean isMuted;
   private           final boolean isContactRequest;
-  private @Nullable final DcLot   dcSummary;
+  private           final int     summaryState;
+  private @NonNull  final String  name;
+  private           final boolean isSeenRecently;
+  private @NonNull  final SpannableString displayBody;
 
   public ThreadRecord(@NonNull String body,
                       @NonNull Recipient recipient, long dateReceived, int unreadCount,
@@ -69,7 +76,13 @@ public class ThreadRecord {
     this.isSendingLocations = isSendingLocations;
     this.isMuted          = isMuted;
     this.isContactRequest = isContactRequest;
-    this.dcSummary        = dcSummary;
+    this.summaryState     = dcSummary != null ? dcSummary.getState() : 0;
+    this.displayBody      = createDisplayBody(body, dcSummary);
+
+    String name = recipient.getName();
+    this.name = name != null ? name : "";
+    DcContact contact = recipient.getDcContact();
+    this.isSeenRecently = contact != null && contact.wasSeenRecently();
   }
 
   public @NonNull String getBody() {
@@ -89,15 +102,19 @@ public class ThreadRecord {
   }
 
   public SpannableString getDisplayBody() {
+    return displayBody;
+  }
+
+  private static SpannableString createDisplayBody(@NonNull String body, @Nullable DcLot dcSummary) {
     if(dcSummary!=null && dcSummary.getText1Meaning()==DcLot.DC_TEXT1_DRAFT) {
       String draftText = dcSummary.getText1() + ":";
       return emphasisAdded(draftText + " " + dcSummary.getText2(), 0, draftText.length());
     } else {
-      return new SpannableString(getBody());
+      return new SpannableString(body);
     }
   }
 
-  private SpannableString emphasisAdded(String sequence, int start, int end) {
+  private static SpannableString emphasisAdded(String sequence, int start, int end) {
     SpannableString spannable = new SpannableString(sequence);
     spannable.setSpan(new StyleSpan(android.graphics.Typeface.ITALIC),
                       start, end, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
@@ -131,4 +148,19 @@ public class ThreadRecord {
   public boolean isContactRequest() {
     return isContactRequest;
   }
+
+  /**
+   * @return the state of the last message as DcLot.getState() of the summary.
+   */
+  public int getSummaryState() {
+    return summaryState;
+  }
+
+  public @NonNull String getName() {
+    return name;
+  }
+
+  public boolean isSeenRecently() {
+    return isSeenRecently;
+  }
 }
@@ -49,6 +49,14 @@ public abstract class Job implements Serializable {
     return parameters.getGroupId();
   }
 
+  public int getPriority() {
+    return parameters.getPriority();
+  }
+
+  public long getDelayMillis() {
+    return parameters.getDelayMillis();
+  }
+
   public int getRetryCount() {
     return parameters.getRetryCount();
   }
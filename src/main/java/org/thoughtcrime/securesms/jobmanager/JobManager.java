@@ -46,6 +46,13 @@ public class JobManager {
     });
   }
 
+  /**
+   * Queue lengths and wait times of the jobs, for debug logs.
+   */
+  public String getStats() {
+    return jobQueue.getStats();
+  }
+
   private PowerManager.WakeLock acquireWakeLock(Context context, String name, long timeout) {
     PowerManager          powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
     PowerManager.WakeLock wakeLock     = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, name);
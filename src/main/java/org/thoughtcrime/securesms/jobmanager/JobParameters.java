@@ -29,17 +29,23 @@ public class JobParameters implements Serializable {
 
   private static final long serialVersionUID = 4880456378402584584L;
 
+  public static final int PRIORITY_LOW     = -10;
+  public static final int PRIORITY_DEFAULT = 0;
+  public static final int PRIORITY_HIGH    = 10;
+
   private final List<Requirement> requirements;
   private final int               retryCount;
   private final long              retryUntil;
   private final String            groupId;
   private final boolean           wakeLock;
   private final long              wakeLockTimeout;
+  private final int               priority;
+  private final long              delayMillis;
 
   private JobParameters(List<Requirement> requirements,
                         String groupId,
                         int retryCount, long retryUntil, boolean wakeLock,
-                        long wakeLockTimeout)
+                        long wakeLockTimeout, int priority, long delayMillis)
   {
     this.requirements    = requirements;
     this.groupId         = groupId;
@@ -47,6 +53,8 @@ public class JobParameters implements Serializable {
     this.retryUntil      = retryUntil;
     this.wakeLock        = wakeLock;
     this.wakeLockTimeout = wakeLockTimeout;
+    this.priority        = priority;
+    this.delayMillis     = delayMillis;
   }
 
   public List<Requirement> getRequirements() {
@@ -80,6 +88,17 @@ public class JobParameters implements Serializable {
     return wakeLockTimeout;
   }
 
+  public int getPriority() {
+    return priority;
+  }
+
+  /**
+   * @return the time in milliseconds the job is not run after it was added to the JobManager.
+   */
+  public long getDelayMillis() {
+    return delayMillis;
+  }
+
   public static class Builder {
     private final List<Requirement> requirements    = new LinkedList<>();
     private final int               retryCount      = 100;
@@ -87,6 +106,8 @@ public class JobParameters implements Serializable {
     private String                  groupId         = null;
     private final boolean           wakeLock        = false;
     private final long              wakeLockTimeout = 0;
+    private int                     priority        = PRIORITY_DEFAULT;
+    private long                    delayMillis     = 0;
 
     /**
      * Specify a groupId the job should belong to.  Jobs with the same groupId are guaranteed to be
@@ -100,11 +121,35 @@ public class JobParameters implements Serializable {
       return this;
     }
 
+    /**
+     * Specify the priority of the job.  Ready jobs with a higher priority are run first,
+     * jobs with the same priority in the order they were added.
+     *
+     * @param priority One of the PRIORITY_ constants or any value in between.
+     * @return the builder.
+     */
+    public Builder withPriority(int priority) {
+      this.priority = priority;
+      return this;
+    }
+
+    /**
+     * Specify a delay before the job is run.
+     *
+     * @param delayMillis The delay in milliseconds, counted from adding the job to the JobManager.
+     * @return the builder.
+     */
+    public Builder withDelay(long delayMillis) {
+      this.delayMillis = delayMillis;
+      return this;
+    }
+
     /**
      * @return the JobParameters instance that describes a Job.
      */
     public JobParameters create() {
-      return new JobParameters(requirements, groupId, retryCount, System.currentTimeMillis() + retryDuration, wakeLock, wakeLockTimeout);
+      return new JobParameters(requirements, groupId, retryCount, System.currentTimeMillis() + retryDuration, wakeLock, wakeLockTimeout,
+                               priority, delayMillis);
     }
   }
 }
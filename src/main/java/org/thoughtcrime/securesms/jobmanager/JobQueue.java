@@ -16,22 +16,75 @@
  */
 package org.thoughtcrime.securesms.jobmanager;
 
+import android.os.SystemClock;
+
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.ListIterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.PriorityQueue;
 
+/**
+ * Jobs are kept in separate indexes depending on why they can or cannot run yet,
+ * so taking the next job does not depend on the number of queued jobs:
+ * - ready jobs, ordered by priority and then by the order they were added,
+ * - delayed jobs, ordered by the time they may run,
+ * - jobs waiting for the running job of their group, per group in the order they are run,
+ * - jobs whose requirements were not met, checked again when jobs are added or finished.
+ */
 class JobQueue {
 
-  private final Map<String, Job> activeGroupIds = new HashMap<>();
-  private final LinkedList<Job>  jobQueue       = new LinkedList<>();
+  /**
+   * Source of the time used for delays and wait times, SystemClock.elapsedRealtime() outside of tests.
+   */
+  interface Clock {
+    long elapsedRealtime();
+  }
+
+  private static final Comparator<Entry> BY_PRIORITY = (a, b) -> {
+    if (a.priority != b.priority) return a.priority > b.priority ? -1 : 1;
+    return Long.compare(a.sequence, b.sequence);
+  };
+
+  private static final Comparator<Entry> BY_RUN_AT = (a, b) -> Long.compare(a.runAt, b.runAt);
+
+  private final Clock                          clock;
+  private final Map<String, Job>               activeGroupIds   = new HashMap<>();
+  private final PriorityQueue<Entry>           readyJobs        = new PriorityQueue<>(16, BY_PRIORITY);
+  private final PriorityQueue<Entry>           delayedJobs      = new PriorityQueue<>(16, BY_RUN_AT);
+  private final Map<String, ArrayDeque<Entry>> groupWaitingJobs = new HashMap<>();
+  private final List<Entry>                    unmetJobs        = new ArrayList<>();
+
+  private long    nextSequence      = 0;
+  private long    nextFrontSequence = -1;
+  private int     groupWaitingCount = 0;
+  private boolean recheckUnmetJobs  = false;
+
+  private long dequeuedCount = 0;
+  private long totalWaitMillis = 0;
+  private long maxWaitMillis   = 0;
+
+  JobQueue() {
+    this(SystemClock::elapsedRealtime);
+  }
+
+  @VisibleForTesting
+  JobQueue(@NonNull Clock clock) {
+    this.clock = clock;
+  }
 
   synchronized void add(Job job) {
-    jobQueue.add(job);
     processJobAddition(job);
-    notifyAll();
+    long now = clock.elapsedRealtime();
+    enqueue(new Entry(job, nextSequence++, now + job.getDelayMillis(), now), now);
+    recheckUnmetJobs = !unmetJobs.isEmpty();
+    wakeUp(recheckUnmetJobs ? 2 : 1);
   }
 
   private void processJobAddition(@NonNull Job job) {
@@ -43,8 +96,13 @@ class JobQueue {
     }
   }
 
+  /**
+   * Queues a deferred job in front of the jobs of the same priority.
+   */
   synchronized void push(Job job) {
-    jobQueue.addFirst(job);
+    long now = clock.elapsedRealtime();
+    enqueue(new Entry(job, nextFrontSequence--, now, now), now);
+    wakeUp(1);
   }
 
   synchronized Job getNext() {
@@ -52,7 +110,12 @@ class JobQueue {
       Job nextAvailableJob;
 
       while ((nextAvailableJob = getNextAvailableJob()) == null) {
-        wait();
+        Entry nextDelayed = delayedJobs.peek();
+        if (nextDelayed != null) {
+          wait(Math.max(1, nextDelayed.runAt - clock.elapsedRealtime()));
+        } else {
+          wait();
+        }
       }
 
       return nextAvailableJob;
@@ -64,20 +127,94 @@ class JobQueue {
   synchronized void setGroupIdAvailable(String groupId) {
     if (groupId != null) {
       activeGroupIds.remove(groupId);
+      boolean moved = releaseNextWaiting(groupId);
+      recheckUnmetJobs = !unmetJobs.isEmpty();
+      wakeUp(recheckUnmetJobs ? 2 : (moved ? 1 : 0));
+    }
+  }
+
+  /**
+   * Moves the next job waiting for the group to the ready jobs;
+   * the others keep waiting as the jobs of a group are run one after another.
+   */
+  private boolean releaseNextWaiting(@NonNull String groupId) {
+    ArrayDeque<Entry> waiting = groupWaitingJobs.get(groupId);
+    if (waiting == null) {
+      return false;
+    }
+    readyJobs.add(waiting.poll());
+    groupWaitingCount--;
+    if (waiting.isEmpty()) {
+      groupWaitingJobs.remove(groupId);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the next job that can be run, or null instead of waiting for one.
+   */
+  @VisibleForTesting
+  synchronized Job getNextIfAvailable() {
+    return getNextAvailableJob();
+  }
+
+  private void enqueue(@NonNull Entry entry, long now) {
+    if (entry.runAt > now) {
+      delayedJobs.add(entry);
+    } else {
+      readyJobs.add(entry);
+    }
+  }
+
+  private void wakeUp(int jobCount) {
+    if (jobCount == 1) {
+      notify();
+    } else if (jobCount > 1) {
       notifyAll();
     }
   }
 
   private Job getNextAvailableJob() {
-    if (jobQueue.isEmpty()) return null;
+    long now = clock.elapsedRealtime();
+    while (!delayedJobs.isEmpty() && delayedJobs.peek().runAt <= now) {
+      readyJobs.add(delayedJobs.poll());
+    }
 
-    ListIterator<Job> iterator = jobQueue.listIterator();
-    while (iterator.hasNext()) {
-      Job job = iterator.next();
+    if (recheckUnmetJobs) {
+      recheckUnmetJobs = false;
+      readyJobs.addAll(unmetJobs);
+      unmetJobs.clear();
+    }
+
+    Entry entry;
+    while ((entry = readyJobs.poll()) != null) {
+      Job job = entry.job;
 
-      if (job.isRequirementsMet() && isGroupIdAvailable(job)) {
-        iterator.remove();
+      if (!isGroupIdAvailable(job)) {
+        ArrayDeque<Entry> waiting = groupWaitingJobs.get(job.getGroupId());
+        if (waiting == null) {
+          waiting = new ArrayDeque<>();
+          groupWaitingJobs.put(job.getGroupId(), waiting);
+        }
+        // a released job that could not be run yet keeps its place in front of the group
+        if (!waiting.isEmpty() && entry.sequence < waiting.peekFirst().sequence) {
+          waiting.addFirst(entry);
+        } else {
+          waiting.addLast(entry);
+        }
+        groupWaitingCount++;
+      } else if (!job.isRequirementsMet()) {
+        unmetJobs.add(entry);
+        if (job.getGroupId() != null) {
+          // the group is not blocked by this job, so the next one of the group may run
+          releaseNextWaiting(job.getGroupId());
+        }
+      } else {
         setGroupIdUnavailable(job);
+        long waitMillis = now - Math.max(entry.queuedAt, entry.runAt);
+        dequeuedCount++;
+        totalWaitMillis += waitMillis;
+        maxWaitMillis = Math.max(maxWaitMillis, waitMillis);
         return job;
       }
     }
@@ -100,4 +237,29 @@ class JobQueue {
       activeGroupIds.put(groupId, job);
     }
   }
+
+  /**
+   * Queue lengths and the time jobs waited until they were run, for debug logs.
+   */
+  synchronized @NonNull String getStats() {
+    return String.format(Locale.US, "jobQueue: ready=%d delayed=%d groupWaiting=%d unmet=%d run=%d avgWait=%dms maxWait=%dms\n",
+        readyJobs.size(), delayedJobs.size(), groupWaitingCount, unmetJobs.size(),
+        dequeuedCount, dequeuedCount == 0 ? 0 : totalWaitMillis / dequeuedCount, maxWaitMillis);
+  }
+
+  private static class Entry {
+    final Job  job;
+    final long sequence;
+    final int  priority;
+    final long runAt;
+    final long queuedAt;
+
+    Entry(Job job, long sequence, long runAt, long queuedAt) {
+      this.job      = job;
+      this.sequence = sequence;
+      this.priority = job.getPriority();
+      this.runAt    = runAt;
+      this.queuedAt = queuedAt;
+    }
+  }
 }
@@ -15,6 +15,8 @@ import android.graphics.drawable.Drawable;
 import android.media.AudioAttributes;
 import android.net.Uri;
 import android.os.Build;
+import android.os.SystemClock;
+import android.service.notification.StatusBarNotification;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -52,8 +54,14 @@ import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class NotificationCenter {
     private static final String TAG = NotificationCenter.class.getSimpleName();
@@ -65,6 +73,24 @@ public class NotificationCenter {
 
     // Map<accountId, Map<chatId, lines>, contains the last lines of each chat for each account
     private final HashMap<Integer, HashMap<Integer, ArrayList<String>>> inboxes = new HashMap<>();
+    // accounts with a posted summary notification, guarded by inboxes;
+    // only used if the active notifications cannot be queried, as a dismissed summary is not removed here
+    private final HashSet<Integer> postedSummaries = new HashSet<>();
+    private static final int MAX_INBOX_LINES = 7;
+
+    // notifications are built on a thread of their own, so that many incoming messages do not block event handling.
+    // lines of a chat arriving within COALESCE_WINDOW_MILLIS are shown by one rebuild of the chat's notification;
+    // Android drops updates of an app posting more than 5 notifications per second, so they are spaced by MIN_POST_INTERVAL_MILLIS.
+    private static final long COALESCE_WINDOW_MILLIS   = 250;
+    private static final long MIN_POST_INTERVAL_MILLIS = 200;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "NotificationCenter"));
+    private final HashMap<ChatData, ArrayList<PendingLine>> pendingNotifications = new HashMap<>();
+    private long nextPostAllowedAt; // only accessed on the executor thread
+
+    private final AtomicLong requestedUpdates    = new AtomicLong();
+    private final AtomicLong rebuilds            = new AtomicLong();
+    private final AtomicLong suppressedRebuilds  = new AtomicLong();
+    private final AtomicLong rateLimitedRebuilds = new AtomicLong();
 
     public NotificationCenter(Context context) {
         this.context = ApplicationContext.getInstance(context);
@@ -338,7 +364,7 @@ public class NotificationCenter {
     // --------------------------------------------------------------------------------------------
 
     public void notifyMessage(int accountId, int chatId, int msgId) {
-      Util.runOnAnyBackgroundThread(() -> {
+      runOnNotificationThread(() -> {
         DcContext dcContext = context.dcAccounts.getAccount(accountId);
         DcChat dcChat = dcContext.getChat(chatId);
 
@@ -346,12 +372,17 @@ public class NotificationCenter {
         NotificationPrivacyPreference privacy = Prefs.getNotificationPrivacy(context);
 
         String shortLine = privacy.isDisplayMessage()? dcMsg.getSummarytext(2000) : context.getString(R.string.notify_new_message);
-        if (dcChat.isMultiUser() && privacy.isDisplayContact()) {
-          shortLine = dcMsg.getSenderName(dcContext.getContact(dcMsg.getFromId())) + ": " + shortLine;
+        String senderName = null;
+        if (privacy.isDisplayContact()) {
+          DcContact sender = context.contactCache.getContact(dcContext, dcMsg.getFromId());
+          senderName = dcMsg.getSenderName(sender);
+        }
+        if (dcChat.isMultiUser() && senderName != null) {
+          shortLine = senderName + ": " + shortLine;
         }
         String tickerLine = shortLine;
-        if (!dcChat.isMultiUser() && privacy.isDisplayContact()) {
-          tickerLine = dcMsg.getSenderName(dcContext.getContact(dcMsg.getFromId())) + ": " + tickerLine;
+        if (!dcChat.isMultiUser() && senderName != null) {
+          tickerLine = senderName + ": " + tickerLine;
 
           if (dcMsg.getOverrideSenderName() != null) {
             // There is an "overridden" display name on the message, so, we need to prepend the display name to the message,
@@ -362,13 +393,18 @@ public class NotificationCenter {
 
         DcMsg quotedMsg = dcMsg.getQuotedMsg();
         boolean isMention = dcChat.isMultiUser() && quotedMsg != null && quotedMsg.isOutgoing();
+        if (quotedMsg != null) {
+          quotedMsg.close();
+        }
+        dcMsg.close();
+        dcChat.close();
 
-        maybeAddNotification(accountId, dcChat, msgId, shortLine, tickerLine, true, isMention);
+        enqueueNotification(accountId, chatId, new PendingLine(msgId, shortLine, tickerLine, true, isMention));
       });
     }
 
     public void notifyReaction(int accountId, int contactId, int msgId, String reaction) {
-      Util.runOnAnyBackgroundThread(() -> {
+      runOnNotificationThread(() -> {
         DcContext dcContext = context.dcAccounts.getAccount(accountId);
         DcMsg dcMsg = dcContext.getMsg(msgId);
 
@@ -377,15 +413,19 @@ public class NotificationCenter {
           return; // showing "New Message" is wrong and showing "New Reaction" is already content. just do nothing.
         }
 
-        DcContact sender = dcContext.getContact(contactId);
+        DcContact sender = context.contactCache.getContact(dcContext, contactId);
         String shortLine = context.getString(R.string.reaction_by_other, sender.getDisplayName(), reaction, dcMsg.getSummarytext(2000));
-        DcChat dcChat = dcContext.getChat(dcMsg.getChatId());
-        maybeAddNotification(accountId, dcChat, msgId, shortLine, shortLine, false, dcChat.isMultiUser());
+        int chatId = dcMsg.getChatId();
+        DcChat dcChat = dcContext.getChat(chatId);
+        boolean isMultiUser = dcChat.isMultiUser();
+        dcMsg.close();
+        dcChat.close();
+        enqueueNotification(accountId, chatId, new PendingLine(msgId, shortLine, shortLine, false, isMultiUser));
       });
     }
 
     public void notifyWebxdc(int accountId, int contactId, int msgId, String text) {
-      Util.runOnAnyBackgroundThread(() -> {
+      runOnNotificationThread(() -> {
         NotificationPrivacyPreference privacy = Prefs.getNotificationPrivacy(context);
         if (!privacy.isDisplayContact() || !privacy.isDisplayMessage()) {
           return; // showing "New Message" is wrong, just do nothing.
@@ -393,47 +433,143 @@ public class NotificationCenter {
 
         DcContext dcContext = context.dcAccounts.getAccount(accountId);
         DcMsg dcMsg = dcContext.getMsg(msgId);
-        DcMsg parentMsg;
-        if(dcMsg.getType() == DcMsg.DC_MSG_WEBXDC) {
-            parentMsg = dcMsg;
-        } else { // info message, get parent xdc
-            parentMsg = dcMsg.getParent() != null? dcMsg.getParent() : dcMsg;
+        // for info messages, get parent xdc
+        DcMsg xdcParent = dcMsg.getType() == DcMsg.DC_MSG_WEBXDC? null : dcMsg.getParent();
+        DcMsg parentMsg = xdcParent != null? xdcParent : dcMsg;
+        try {
+            if (Util.equals(visibleWebxdc, new Pair<>(accountId, parentMsg.getId()))) {
+                return; // do not notify if the app is already open
+            }
+
+            JSONObject info = parentMsg.getWebxdcInfo();
+            final String name = JsonUtils.optString(info, "name");
+            String shortLine = name.isEmpty()? text : (name + ": " + text);
+            int chatId = dcMsg.getChatId();
+            DcChat dcChat = dcContext.getChat(chatId);
+            boolean isMultiUser = dcChat.isMultiUser();
+            dcChat.close();
+            enqueueNotification(accountId, chatId, new PendingLine(msgId, shortLine, shortLine, false, isMultiUser));
+        } finally {
+            if (xdcParent != null) {
+                xdcParent.close();
+            }
+            dcMsg.close();
         }
+      });
+    }
 
-        if (Util.equals(visibleWebxdc, new Pair<>(accountId, parentMsg.getId()))) {
-            return; // do not notify if the app is already open
+    private void runOnNotificationThread(@NonNull Runnable runnable) {
+        executor.execute(() -> {
+            try {
+                runnable.run();
+            } catch (Exception e) {
+                Log.e(TAG, "cannot prepare notification", e);
+            }
+        });
+    }
+
+    /**
+     * Collects the line for the chat's notification.
+     * All lines of a chat arriving within COALESCE_WINDOW_MILLIS are shown by a single rebuild of the notification.
+     */
+    private void enqueueNotification(int accountId, int chatId, @NonNull PendingLine line) {
+        ChatData chatData = new ChatData(accountId, chatId);
+        synchronized (pendingNotifications) {
+            requestedUpdates.incrementAndGet();
+            ArrayList<PendingLine> lines = pendingNotifications.get(chatData);
+            if (lines != null) {
+                lines.add(line);
+                suppressedRebuilds.incrementAndGet();
+                return;
+            }
+            lines = new ArrayList<>();
+            lines.add(line);
+            pendingNotifications.put(chatData, lines);
         }
+        executor.schedule(() -> flushNotification(chatData), COALESCE_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+    }
 
-        JSONObject info = parentMsg.getWebxdcInfo();
-        final String name = JsonUtils.optString(info, "name");
-        String shortLine = name.isEmpty()? text : (name + ": " + text);
-        DcChat dcChat = dcContext.getChat(dcMsg.getChatId());
-        maybeAddNotification(accountId, dcChat, msgId, shortLine, shortLine, false, dcChat.isMultiUser());
-      });
+    @WorkerThread
+    private void flushNotification(ChatData chatData) {
+        long now = SystemClock.elapsedRealtime();
+        if (now < nextPostAllowedAt) {
+            // lines arriving meanwhile are still added to the pending notification
+            rateLimitedRebuilds.incrementAndGet();
+            executor.schedule(() -> flushNotification(chatData), nextPostAllowedAt - now, TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        ArrayList<PendingLine> lines;
+        synchronized (pendingNotifications) {
+            lines = pendingNotifications.remove(chatData);
+        }
+        if (lines == null) {
+            return; // the notifications of the chat were removed meanwhile
+        }
+
+        try {
+            int posts = maybeAddNotification(chatData, lines);
+            nextPostAllowedAt = SystemClock.elapsedRealtime() + posts * MIN_POST_INTERVAL_MILLIS;
+        } catch (Exception e) {
+            Log.e(TAG, "cannot update notification", e);
+        }
     }
 
+    /**
+     * Rebuilds the notification of the chat with the given new lines.
+     * Returns the number of notifications posted to the system.
+     */
     @WorkerThread
-    private void maybeAddNotification(int accountId, DcChat dcChat, int msgId, String shortLine, String tickerLine, boolean playInChatSound, boolean isMention) {
+    private int maybeAddNotification(ChatData chatData, List<PendingLine> lines) {
 
+            int accountId = chatData.accountId;
+            int chatId = chatData.chatId;
             DcContext dcContext = context.dcAccounts.getAccount(accountId);
-            int chatId = dcChat.getId();
-            ChatData chatData = new ChatData(accountId, chatId);
-            isMention = isMention && dcContext.isMentionsEnabled();
+            if (dcContext.isMuted()) {
+                return 0;
+            }
 
-            if (dcContext.isMuted() || (!isMention &&  dcChat.isMuted())) {
-                return;
+            DcChat dcChat = dcContext.getChat(chatId);
+            try {
+                return maybeAddNotification(dcContext, dcChat, chatData, lines);
+            } finally {
+                dcChat.close();
             }
+    }
+
+    @WorkerThread
+    private int maybeAddNotification(DcContext dcContext, DcChat dcChat, ChatData chatData, List<PendingLine> lines) {
+
+            int accountId = chatData.accountId;
+            int chatId = chatData.chatId;
+
+            // in muted chats, only mentions are shown
+            boolean mentionsOnly = dcChat.isMuted();
+            boolean mentionsEnabled = dcContext.isMentionsEnabled();
+            List<PendingLine> shownLines = new ArrayList<>(lines.size());
+            boolean playInChatSound = false;
+            for (PendingLine line : lines) {
+                if (!mentionsOnly || (line.isMention && mentionsEnabled)) {
+                    shownLines.add(line);
+                    playInChatSound |= line.playInChatSound;
+                }
+            }
+            if (shownLines.isEmpty()) {
+                return 0;
+            }
+            PendingLine lastLine = shownLines.get(shownLines.size() - 1);
+            int msgId = lastLine.msgId;
 
             NotificationManagerCompat notificationManager = NotificationManagerCompat.from(context);
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU && !notificationManager.areNotificationsEnabled()) {
-                return;
+                return 0;
             }
 
             if (Util.equals(visibleChat, chatData)) {
                 if (playInChatSound && Prefs.isInChatNotifications(context)) {
                     InChatSounds.getInstance(context).playIncomingSound();
                 }
-                return;
+                return 0;
             }
 
             NotificationPrivacyPreference privacy = Prefs.getNotificationPrivacy(context);
@@ -454,7 +590,7 @@ public class NotificationCenter {
                     .setPriority(Prefs.getNotificationPriority(context))
                     .setCategory(NotificationCompat.CATEGORY_MESSAGE)
                     .setOnlyAlertOnce(!signal)
-                    .setContentText(shortLine)
+                    .setContentText(lastLine.shortLine)
                     .setDeleteIntent(getMarkAsReadIntent(chatData, msgId, false))
                     .setContentIntent(getOpenChatIntent(chatData));
 
@@ -474,7 +610,7 @@ public class NotificationCenter {
                 }
             }
 
-            builder.setTicker(tickerLine);
+            builder.setTicker(lastLine.tickerLine);
 
             // set sound, vibrate, led for systems that do not have notification channels
             if (!notificationChannelsSupported()) {
@@ -564,15 +700,21 @@ public class NotificationCenter {
                             accountInbox = new HashMap<>();
                             inboxes.put(accountId, accountInbox);
                         }
-                        ArrayList<String> lines = accountInbox.get(chatId);
-                        if (lines == null) {
-                            lines = new ArrayList<>();
-                            accountInbox.put(chatId, lines);
+                        ArrayList<String> inboxLines = accountInbox.get(chatId);
+                        if (inboxLines == null) {
+                            inboxLines = new ArrayList<>();
+                            accountInbox.put(chatId, inboxLines);
+                        }
+                        for (PendingLine line : shownLines) {
+                            inboxLines.add(line.shortLine);
+                        }
+                        // the system shows only the last few lines of an inbox
+                        if (inboxLines.size() > MAX_INBOX_LINES) {
+                            inboxLines.subList(0, inboxLines.size() - MAX_INBOX_LINES).clear();
                         }
-                        lines.add(shortLine);
 
-                        for (int l = 0; l < lines.size(); l++) {
-                            inboxStyle.addLine(lines.get(l));
+                        for (int l = 0; l < inboxLines.size(); l++) {
+                            inboxStyle.addLine(inboxLines.get(l));
                         }
                     }
                     builder.setStyle(inboxStyle);
@@ -589,8 +731,11 @@ public class NotificationCenter {
 
             // add notification, we use one notification per chat,
             // esp. older android are not that great at grouping
+            int posts = 0;
             try {
               notificationManager.notify(String.valueOf(accountId), ID_MSG_OFFSET + chatId, builder.build());
+              posts++;
+              rebuilds.incrementAndGet();
             } catch (Exception e) {
               Log.e(TAG, "cannot add notification", e);
             }
@@ -598,7 +743,8 @@ public class NotificationCenter {
             // group notifications together in a summary, this is possible since SDK 24 (Android 7)
             // https://developer.android.com/training/notify-user/group.html
             // in theory, this won't be needed due to setGroup(), however, in practise, it is needed up to at least Android 10.
-            if (Build.VERSION.SDK_INT >= 24) {
+            // the summary does not change with new messages, so it is only reposted if it is not shown, eg. as it was dismissed
+            if (Build.VERSION.SDK_INT >= 24 && !isSummaryShown(accountId)) {
                 try {
                   NotificationCompat.Builder summary = new NotificationCompat.Builder(context, notificationChannel)
                     .setGroup(GRP_MSG + "." + accountId)
@@ -613,13 +759,43 @@ public class NotificationCenter {
                     summary.setSubText(accountTag);
                   }
                   notificationManager.notify(String.valueOf(accountId), ID_MSG_SUMMARY, summary.build());
+                  posts++;
+                  synchronized (inboxes) {
+                    postedSummaries.add(accountId);
+                  }
                 } catch (Exception e) {
                   Log.e(TAG, "cannot add notification summary", e);
                 }
             }
+            return posts;
+    }
+
+    private boolean isSummaryShown(int accountId) {
+        // the active notifications are available since SDK 23, this is cheaper than rebuilding the summary for each message
+        if (Build.VERSION.SDK_INT >= 23) {
+            try {
+                NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+                String tag = String.valueOf(accountId);
+                for (StatusBarNotification notification : notificationManager.getActiveNotifications()) {
+                    if (notification.getId() == ID_MSG_SUMMARY && tag.equals(notification.getTag())) {
+                        return true;
+                    }
+                }
+                return false;
+            } catch (Exception e) {
+                Log.w(TAG, "cannot get active notifications", e);
+            }
+        }
+        synchronized (inboxes) {
+            return postedSummaries.contains(accountId);
+        }
     }
 
     public void removeNotifications(int accountId, int chatId) {
+        synchronized (pendingNotifications) {
+            pendingNotifications.remove(new ChatData(accountId, chatId));
+        }
+
         boolean removeSummary;
         synchronized (inboxes) {
             HashMap<Integer, ArrayList<String>> accountInbox = inboxes.get(accountId);
@@ -628,6 +804,9 @@ public class NotificationCenter {
             }
             accountInbox.remove(chatId);
             removeSummary = accountInbox.isEmpty();
+            if (removeSummary) {
+                postedSummaries.remove(accountId);
+            }
         }
 
         // cancel notification independently of inboxes array,
@@ -645,9 +824,18 @@ public class NotificationCenter {
     public void removeAllNotifications(int accountId) {
         NotificationManagerCompat notificationManager = NotificationManagerCompat.from(context);
         String tag = String.valueOf(accountId);
+        synchronized (pendingNotifications) {
+            Iterator<ChatData> pending = pendingNotifications.keySet().iterator();
+            while (pending.hasNext()) {
+                if (pending.next().accountId == accountId) {
+                    pending.remove();
+                }
+            }
+        }
         synchronized (inboxes) {
             HashMap<Integer, ArrayList<String>> accountInbox = inboxes.get(accountId);
             notificationManager.cancel(tag, ID_MSG_SUMMARY);
+            postedSummaries.remove(accountId);
             if (accountInbox != null) {
                 for (Integer chatId : accountInbox.keySet()) {
                     notificationManager.cancel(tag, chatId);
@@ -686,6 +874,20 @@ public class NotificationCenter {
         visibleWebxdc = null;
     }
 
+    /**
+     * Summary of the notification counters, for debug logs.
+     */
+    public @NonNull String getStats() {
+        return String.format(Locale.US, "notifications: requested=%d rebuilt=%d suppressed=%d rateLimited=%d pending=%d\n",
+            requestedUpdates.get(), rebuilds.get(), suppressedRebuilds.get(), rateLimitedRebuilds.get(), getPendingCount());
+    }
+
+    private int getPendingCount() {
+        synchronized (pendingNotifications) {
+            return pendingNotifications.size();
+        }
+    }
+
     public void maybePlaySendSound(DcChat dcChat) {
         if (Prefs.isInChatNotifications(context) && !dcChat.isMuted()) {
             InChatSounds.getInstance(context).playSendSound();
@@ -709,5 +911,26 @@ public class NotificationCenter {
       ChatData chatData = (ChatData) o;
       return accountId == chatData.accountId && chatId == chatData.chatId;
     }
+
+    @Override
+    public int hashCode() {
+      return accountId * 31 + chatId;
+    }
+  }
+
+  private static class PendingLine {
+    final int     msgId;
+    final String  shortLine;
+    final String  tickerLine;
+    final boolean playInChatSound;
+    final boolean isMention;
+
+    PendingLine(int msgId, String shortLine, String tickerLine, boolean playInChatSound, boolean isMention) {
+      this.msgId           = msgId;
+      this.shortLine       = shortLine;
+      this.tickerLine      = tickerLine;
+      this.playInChatSound = playInChatSound;
+      this.isMention       = isMention;
+    }
   }
 }
@@ -47,7 +47,7 @@ public class ReactionRecipientItem extends LinearLayout {
   public void bind(@NonNull GlideRequests glideRequests, int contactId, String reaction) {
     this.contactId      = contactId;
     this.reaction       = reaction;
-    DcContact dcContact = DcHelper.getContext(getContext()).getContact(contactId);
+    DcContact dcContact = DcHelper.getContactCache(getContext()).getContact(DcHelper.getContext(getContext()), contactId);
     Recipient recipient = new Recipient(getContext(), dcContact);
     this.contactPhotoImage.setAvatar(glideRequests, recipient, false);
     this.reactionView.setText(reaction);
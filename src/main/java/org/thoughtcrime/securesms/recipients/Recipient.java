@@ -31,6 +31,7 @@ import com.b44t.messenger.DcContact;
 import com.b44t.messenger.DcContext;
 import com.b44t.messenger.rpc.VcardContact;
 
+import org.thoughtcrime.securesms.connect.DcContactCache;
 import org.thoughtcrime.securesms.connect.DcHelper;
 import org.thoughtcrime.securesms.contacts.avatars.ContactPhoto;
 import org.thoughtcrime.securesms.contacts.avatars.FallbackContactPhoto;
@@ -77,18 +78,19 @@ public class Recipient {
   public static @NonNull Recipient from(@NonNull Context context, @NonNull Address address) {
     if (address == null) throw new AssertionError(address);
     DcContext dcContext = DcHelper.getContext(context);
+    DcContactCache contactCache = DcHelper.getContactCache(context);
     if(address.isDcContact()) {
-      return new Recipient(context, dcContext.getContact(address.getDcContactId()));
+      return new Recipient(context, contactCache.getContact(dcContext, address.getDcContactId()));
     } else if (address.isDcChat()) {
       return new Recipient(context, dcContext.getChat(address.getDcChatId()));
     }
     else if(DcHelper.getContext(context).mayBeValidAddr(address.toString())) {
       int contactId = dcContext.lookupContactIdByAddr(address.toString());
       if(contactId!=0) {
-        return new Recipient(context, dcContext.getContact(contactId));
+        return new Recipient(context, contactCache.getContact(dcContext, contactId));
       }
     }
-    return new Recipient(context, dcContext.getContact(0));
+    return new Recipient(context, contactCache.getContact(dcContext, 0));
   }
 
   public Recipient(@NonNull Context context, @NonNull DcChat dcChat) {
@@ -129,9 +131,10 @@ public class Recipient {
       this.address = Address.fromChat(chatId);
       if (!dcChat.isMultiUser()) {
         DcContext dcContext = DcHelper.getAccounts(context).getAccount(dcChat.getAccountId());
-        int[] contacts = dcContext.getChatContacts(chatId);
+        DcContactCache contactCache = DcHelper.getContactCache(context);
+        int[] contacts = contactCache.getChatContacts(dcContext, chatId);
         if( contacts.length>=1 ) {
-          this.dcContact = dcContext.getContact(contacts[0]);
+          this.dcContact = contactCache.getContact(dcContext, contacts[0]);
           maybeSetSystemContactPhoto(context, this.dcContact);
         }
       }
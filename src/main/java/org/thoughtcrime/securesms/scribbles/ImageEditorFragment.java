@@ -29,6 +29,7 @@ import org.thoughtcrime.securesms.util.MediaUtil;
 import org.thoughtcrime.securesms.util.ParcelUtil;
 import org.thoughtcrime.securesms.util.Prefs;
 import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.concurrent.Lane;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -251,7 +252,7 @@ public final class ImageEditorFragment extends Fragment implements ImageEditorHu
 
   @Override
   public void onSave() {
-    Util.runOnBackground(() -> {
+    Util.runOnBackground(Lane.MEDIA, () -> {
       Activity activity = ImageEditorFragment.this.getActivity();
       if (activity == null) {
         return;
@@ -210,7 +210,7 @@ class SearchListAdapter extends BaseConversationListAdapter<SearchListAdapter.Se
     {
       DcContext dcContext = DcHelper.getContext(context);
       ThreadRecord threadRecord = DcHelper.getThreadRecord(context, chatlistItem.summary, dcContext.getChat(chatlistItem.chatId));
-      root.bind(threadRecord, chatlistItem.msgId, chatlistItem.summary, glideRequests, selectedThreads, batchMode, query);
+      root.bind(threadRecord, chatlistItem.msgId, glideRequests, selectedThreads, batchMode, query);
       root.setOnClickListener(view -> eventListener.onConversationClicked(chatlistItem));
       root.setOnLongClickListener(view -> {
         eventListener.onConversationLongClicked(chatlistItem);
@@ -5,6 +5,7 @@ import android.text.TextUtils;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
@@ -16,15 +17,26 @@ import com.b44t.messenger.DcContext;
 import org.thoughtcrime.securesms.connect.DcHelper;
 import org.thoughtcrime.securesms.search.model.SearchResult;
 import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.concurrent.Lane;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class SearchViewModel extends ViewModel {
   private static final String        TAG = SearchViewModel.class.getSimpleName();
+
+  private static final long          DEBOUNCE_MS = 100;
+
+  // narrowing more messages than this on a prefix-extended query would be slower than asking the core again
+  private static final int           MAX_NARROW_MSGS = 200;
+
   private final ObservingLiveData    searchResult;
-  private String                     lastQuery;
+  private volatile String            lastQuery;
   private final DcContext            dcContext;
-  private boolean                    forwarding = false;
-  private boolean                    inBgSearch;
-  private boolean                    needsAnotherBgSearch;
+  private volatile boolean           forwarding = false;
+  private final AtomicInteger        generation = new AtomicInteger();
+  private volatile SearchResult      lastCompleteResult;
 
   SearchViewModel(@NonNull Context context) {
     this.dcContext        = DcHelper.getContext(context.getApplicationContext());
@@ -36,89 +48,173 @@ class SearchViewModel extends ViewModel {
   }
 
   public void setForwardingMode(boolean forwarding) {
+    if (this.forwarding != forwarding) {
+      lastCompleteResult = null;
+    }
     this.forwarding = forwarding;
   }
 
 
   void updateQuery(String query) {
     lastQuery = query;
-    updateQuery();
+    startSearch(generation.incrementAndGet());
   }
 
+  /**
+   * Runs the last query again, eg. because the database has changed.
+   * Previous results are not reused in this case.
+   */
   public void updateQuery() {
-    if (inBgSearch) {
-      needsAnotherBgSearch = true;
-      Log.i(TAG, "... search call debounced");
-    } else {
-      inBgSearch = true;
-      Util.runOnBackground(() -> {
-
-        Util.sleep(100);
-        needsAnotherBgSearch = false;
-        queryAndCallback(lastQuery, searchResult::postValue);
-
-        while (needsAnotherBgSearch) {
-          Util.sleep(100);
-          needsAnotherBgSearch = false;
-          Log.i(TAG, "... executing debounced search call");
-          queryAndCallback(lastQuery, searchResult::postValue);
-        }
-
-        inBgSearch = false;
+    lastCompleteResult = null;
+    startSearch(generation.incrementAndGet());
+  }
+
+  /**
+   * Starts a search after a short delay, so that fast typing does not start a search for every character.
+   * Each search has a generation; as soon as a newer search is started,
+   * the older one skips all remaining stages and its results are not posted anymore.
+   * The core calls itself cannot be aborted, but they run in parallel,
+   * so a slow message search does not delay the chats and contacts found.
+   */
+  private void startSearch(final int searchGeneration) {
+    Util.runOnBackgroundDelayed(Lane.UI_CRITICAL, () -> {
+      if (!isCurrent(searchGeneration)) {
+        Log.i(TAG, "... search call debounced");
+        return;
+      }
+
+      final String query = lastQuery;
+      if (TextUtils.isEmpty(query)) {
+        searchResult.postValue(SearchResult.EMPTY);
+        return;
+      }
+
+      final PartialResult partial = new PartialResult(query, searchGeneration, forwarding);
+
+      Lane.UI_CRITICAL.execute(Lane.PRIORITY_HIGH, () -> {
+        if (!isCurrent(searchGeneration)) return;
+        long startMs = System.currentTimeMillis();
+        DcChatlist conversations = dcContext.getChatlist(partial.forwarding? DcContext.DC_GCL_FOR_FORWARDING : 0, query, 0);
+        Log.i(TAG, "⏰ getChatlist(" + query + "): " + (System.currentTimeMillis() - startMs) + "ms");
+        partial.setChats(conversations);
       });
-    }
+
+      Lane.UI_CRITICAL.execute(Lane.PRIORITY_HIGH, () -> {
+        if (!isCurrent(searchGeneration)) return;
+        long startMs = System.currentTimeMillis();
+        int[] contacts = dcContext.getContacts(DcContext.DC_GCL_ADD_SELF, query);
+        Log.i(TAG, "⏰ getContacts(" + query + "): " + (System.currentTimeMillis() - startMs) + "ms");
+        partial.setContacts(contacts);
+      });
+
+      if (partial.forwarding) {
+        Log.i(TAG, "... searchMsgs() disabled by caller");
+        partial.setMessages(new int[0]);
+      } else if (query.length() <= 1) {
+        Log.i(TAG, "... skipping searchMsgs(), string too short");
+        partial.setMessages(new int[0]);
+      } else {
+        // the full-text search may take seconds, keep it off the small ui-critical lane
+        Lane.IO.execute(Lane.PRIORITY_HIGH, () -> {
+          if (!isCurrent(searchGeneration)) return;
+          long startMs = System.currentTimeMillis();
+          int[] messages = narrowMessages(query);
+          if (messages != null) {
+            Log.i(TAG, "⏰ narrowed messages(" + query + "): " + (System.currentTimeMillis() - startMs) + "ms");
+          } else {
+            messages = dcContext.searchMsgs(0, query);
+            Log.i(TAG, "⏰ searchMsgs(" + query + "): " + (System.currentTimeMillis() - startMs) + "ms");
+          }
+          partial.setMessages(messages);
+        });
+      }
+    }, DEBOUNCE_MS);
   }
 
-  private void queryAndCallback(@NonNull String query, @NonNull SearchViewModel.Callback callback) {
-    int overallCnt = 0;
+  private boolean isCurrent(int searchGeneration) {
+    return searchGeneration == generation.get();
+  }
 
-    if (TextUtils.isEmpty(query)) {
-      callback.onResult(SearchResult.EMPTY);
-      return;
+  /**
+   * If the query extends the query of the last complete search,
+   * the messages found before are filtered instead of searching the database again.
+   * Returns null if this is not possible.
+   */
+  private @Nullable int[] narrowMessages(@NonNull String query) {
+    SearchResult previous = lastCompleteResult;
+    if (previous == null
+     || previous.getQuery().length() <= 1
+     || !query.startsWith(previous.getQuery())
+     || previous.getMessages().length > MAX_NARROW_MSGS) {
+      return null;
     }
 
-    // #1 search for chats
-    long startMs = System.currentTimeMillis();
-    DcChatlist conversations = dcContext.getChatlist(forwarding? DcContext.DC_GCL_FOR_FORWARDING : 0, query, 0);
-    overallCnt += conversations.getCnt();
-    Log.i(TAG, "⏰ getChatlist(" + query + "): " + (System.currentTimeMillis() - startMs) + "ms");
-
-    // #2 search for contacts
-    if (!query.equals(lastQuery) && overallCnt > 0) {
-      Log.i(TAG, "... skipping getContacts() and searchMsgs(), more recent search pending");
-      callback.onResult(new SearchResult(query, new int[0], conversations, new int[0]));
-      return;
+    String needle = query.toLowerCase(Locale.ROOT);
+    int[] previousMessages = previous.getMessages();
+    int[] narrowed = new int[previousMessages.length];
+    int count = 0;
+    for (int msgId : previousMessages) {
+      String text = dcContext.getMsg(msgId).getText();
+      if (text != null && text.toLowerCase(Locale.ROOT).contains(needle)) {
+        narrowed[count++] = msgId;
+      }
     }
+    return Arrays.copyOf(narrowed, count);
+  }
 
-    startMs = System.currentTimeMillis();
-    int[] contacts = dcContext.getContacts(DcContext.DC_GCL_ADD_SELF, query);
-    overallCnt += contacts.length;
-    Log.i(TAG, "⏰ getContacts(" + query + "): " + (System.currentTimeMillis() - startMs) + "ms");
-
-    // #3 search for messages
-    if (forwarding) {
-      Log.i(TAG, "... searchMsgs() disabled by caller");
-      callback.onResult(new SearchResult(query, contacts, conversations, new int[0]));
-      return;
+  /**
+   * Collects the results of the stages of one search;
+   * whenever a stage completes, the results available so far are posted.
+   */
+  private class PartialResult {
+    final String  query;
+    final int     searchGeneration;
+    final boolean forwarding;
+
+    private DcChatlist conversations;
+    private int[]      contacts;
+    private int[]      messages;
+
+    PartialResult(String query, int searchGeneration, boolean forwarding) {
+      this.query            = query;
+      this.searchGeneration = searchGeneration;
+      this.forwarding       = forwarding;
     }
 
-    if (query.length() <= 1) {
-      Log.i(TAG, "... skipping searchMsgs(), string too short");
-      callback.onResult(new SearchResult(query, contacts, conversations, new int[0]));
-      return;
+    synchronized void setChats(DcChatlist conversations) {
+      this.conversations = conversations;
+      post();
     }
 
-    if (!query.equals(lastQuery) && overallCnt > 0) {
-      Log.i(TAG, "... skipping searchMsgs(), more recent search pending");
-      callback.onResult(new SearchResult(query, contacts, conversations, new int[0]));
-      return;
+    synchronized void setContacts(int[] contacts) {
+      this.contacts = contacts;
+      post();
     }
 
-    startMs = System.currentTimeMillis();
-    int[] messages = dcContext.searchMsgs(0, query);
-    Log.i(TAG, "⏰ searchMsgs(" + query + "): " + (System.currentTimeMillis() - startMs) + "ms");
+    synchronized void setMessages(int[] messages) {
+      this.messages = messages;
+      post();
+    }
 
-    callback.onResult(new SearchResult(query, contacts, conversations, messages));
+    private void post() {
+      if (!isCurrent(searchGeneration)) {
+        return;
+      }
+
+      SearchResult result = new SearchResult(query,
+          contacts != null ? contacts : new int[0],
+          conversations != null ? conversations : new DcChatlist(0, 0),
+          messages != null ? messages : new int[0]);
+      boolean complete = conversations != null && contacts != null && messages != null;
+
+      // an empty partial result would show "no results" until the other stages are done
+      if (complete || !result.isEmpty()) {
+        searchResult.postValue(result);
+      }
+      if (complete) {
+        lastCompleteResult = result;
+      }
+    }
   }
 
   @NonNull
@@ -128,6 +224,7 @@ class SearchViewModel extends ViewModel {
 
   @Override
   protected void onCleared() {
+    generation.incrementAndGet();
   }
 
   private static class ObservingLiveData extends MutableLiveData<SearchResult> {
@@ -147,8 +244,4 @@ class SearchViewModel extends ViewModel {
       return modelClass.cast(new SearchViewModel(context));
     }
   }
-
-  public interface Callback {
-    void onResult(@NonNull SearchResult result);
-  }
 }
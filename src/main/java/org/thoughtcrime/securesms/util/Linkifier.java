@@ -12,30 +12,100 @@ public class Linkifier {
   private static final Pattern CMD_PATTERN = Pattern.compile("(?<=^|\\s)/[a-zA-Z][a-zA-Z@\\d_/.-]{0,254}");
   private static final Pattern PROXY_PATTERN = Pattern.compile("(?<=^|\\s)(SOCKS5|socks5|ss|SS):[^ \\n]+");
 
-  private static void replaceURLSpan(SpannableString messageBody) {
+  // kinds of links a text may contain, as found by scan()
+  private static final int MAY_HAVE_CMD   = 1;
+  private static final int MAY_HAVE_PROXY = 1 << 1;
+  private static final int MAY_HAVE_EMAIL = 1 << 2;
+  private static final int MAY_HAVE_URL   = 1 << 3;
+  private static final int MAY_HAVE_PHONE = 1 << 4;
+
+  private static void replaceURLSpan(SpannableString messageBody, boolean removeURLSpan) {
     URLSpan[] urlSpans = messageBody.getSpans(0, messageBody.length(), URLSpan.class);
     for (URLSpan urlSpan : urlSpans) {
       int start = messageBody.getSpanStart(urlSpan);
       int end = messageBody.getSpanEnd(urlSpan);
       // LongClickCopySpan must not be derived from URLSpan, otherwise links will be removed on the next addLinks() call
       messageBody.setSpan(new LongClickCopySpan(urlSpan.getURL()), start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+      if (removeURLSpan) {
+        // the last addLinks() call would remove the span anyway; removing it here avoids converting it twice
+        messageBody.removeSpan(urlSpan);
+      }
+    }
+  }
+
+  /**
+   * Finds the kinds of links the text may contain in a single pass over its characters.
+   * The result may contain kinds that are not there in the end,
+   * but a kind that is not in the result is never found by the regular expressions of linkify(),
+   * so their passes can be skipped.
+   */
+  private static int scan(CharSequence text) {
+    int flags = 0;
+    int wordStart = 0;
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (Character.isWhitespace(c)) {
+        wordStart = i + 1;
+      } else if (c == '/') {
+        if (i == wordStart && i + 1 < length && isAsciiLetter(text.charAt(i + 1))) {
+          flags |= MAY_HAVE_CMD;
+        }
+      } else if (c == ':') {
+        if (startsWithIgnoreCase(text, wordStart, i, "ss") || startsWithIgnoreCase(text, wordStart, i, "socks5")) {
+          flags |= MAY_HAVE_PROXY;
+        }
+      } else if (c == '@') {
+        flags |= MAY_HAVE_EMAIL;
+      } else if (c == '.') {
+        flags |= MAY_HAVE_URL;
+      } else if (Character.isDigit(c)) {
+        flags |= MAY_HAVE_PHONE;
+      }
     }
+    return flags;
+  }
+
+  private static boolean isAsciiLetter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
   }
 
+  private static boolean startsWithIgnoreCase(CharSequence text, int start, int end, String word) {
+    if (end - start != word.length()) {
+      return false;
+    }
+    for (int i = 0; i < word.length(); i++) {
+      if (Character.toLowerCase(text.charAt(start + i)) != word.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Adds a LongClickCopySpan for each command, proxy, url, email address and phone number in the text.
+   * This does not touch any view and may be called from a background thread.
+   */
   public static SpannableString linkify(SpannableString messageBody) {
+    int flags = scan(messageBody);
+
     // linkify commands such as `/echo` -
     // do this first to avoid `/xkcd_123456` to be treated partly as a phone number
-    if (Linkify.addLinks(messageBody, CMD_PATTERN, "cmd:", null, null)) {
-      replaceURLSpan(messageBody); // replace URLSpan so that it is not removed on the next addLinks() call
+    if ((flags & MAY_HAVE_CMD) != 0 && Linkify.addLinks(messageBody, CMD_PATTERN, "cmd:", null, null)) {
+      replaceURLSpan(messageBody, true);
     }
 
-    if (Linkify.addLinks(messageBody, PROXY_PATTERN, null, null, null)) {
-      replaceURLSpan(messageBody); // replace URLSpan so that it is not removed on the next addLinks() call
+    if ((flags & MAY_HAVE_PROXY) != 0 && Linkify.addLinks(messageBody, PROXY_PATTERN, null, null, null)) {
+      replaceURLSpan(messageBody, true);
     }
 
-    // linkyfiy urls etc., this removes all existing URLSpan
-    if (Linkify.addLinks(messageBody, Linkify.EMAIL_ADDRESSES|Linkify.WEB_URLS|Linkify.PHONE_NUMBERS)) {
-      replaceURLSpan(messageBody);
+    // linkyfiy urls etc.
+    int mask = 0;
+    if ((flags & MAY_HAVE_EMAIL) != 0) mask |= Linkify.EMAIL_ADDRESSES;
+    if ((flags & MAY_HAVE_URL) != 0)   mask |= Linkify.WEB_URLS;
+    if ((flags & MAY_HAVE_PHONE) != 0) mask |= Linkify.PHONE_NUMBERS;
+    if (mask != 0 && Linkify.addLinks(messageBody, mask)) {
+      replaceURLSpan(messageBody, false);
     }
 
     return messageBody;
@@ -57,6 +57,8 @@ public class Prefs {
   public  static final String INCOGNITO_KEYBORAD_PREF          = "pref_incognito_keyboard";
 
   private static final String PREF_CONTACT_PHOTO_IDENTIFIERS = "pref_contact_photo_identifiers";
+  private static final String SYSTEM_CONTACTS_SYNCED_PREF    = "pref_system_contacts_synced_"; // followed by account-id
+  private static final String SYSTEM_CONTACTS_LAST_SYNC_PREF = "pref_system_contacts_last_sync_"; // followed by account-id
 
   public  static final String  ALWAYS_LOAD_REMOTE_CONTENT = "pref_always_load_remote_content";
   public  static final boolean ALWAYS_LOAD_REMOTE_CONTENT_DEFAULT = false;
@@ -324,6 +326,29 @@ public class Prefs {
     PreferenceManager.getDefaultSharedPreferences(context).edit().putStringSet(PREF_CONTACT_PHOTO_IDENTIFIERS, contactPhotoIdentifiers).apply();
   }
 
+  public static Set<String> getSystemContactPhotos(Context context) {
+    return new HashSet<>(getStringSetPreference(context, PREF_CONTACT_PHOTO_IDENTIFIERS, new HashSet<>()));
+  }
+
+  /**
+   * Timestamp of the newest system contact change imported into the given account, 0 if nothing was imported yet.
+   */
+  public static long getSystemContactsSynced(Context context, int accountId) {
+    return getLongPreference(context, SYSTEM_CONTACTS_SYNCED_PREF + accountId, 0);
+  }
+
+  public static void setSystemContactsSynced(Context context, int accountId, long timestamp) {
+    setLongPreference(context, SYSTEM_CONTACTS_SYNCED_PREF + accountId, timestamp);
+  }
+
+  public static long getSystemContactsLastSync(Context context, int accountId) {
+    return getLongPreference(context, SYSTEM_CONTACTS_LAST_SYNC_PREF + accountId, 0);
+  }
+
+  public static void setSystemContactsLastSync(Context context, int accountId, long timestamp) {
+    setLongPreference(context, SYSTEM_CONTACTS_LAST_SYNC_PREF + accountId, timestamp);
+  }
+
   public static Uri getSystemContactPhoto(Context context, String identifier) {
     List<String> contactPhotoIdentifiers = new ArrayList<>(getStringSetPreference(context, PREF_CONTACT_PHOTO_IDENTIFIERS, new HashSet<>()));
     for(String contactPhotoIdentifier : contactPhotoIdentifiers) {
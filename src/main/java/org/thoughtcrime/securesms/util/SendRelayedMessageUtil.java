@@ -13,21 +13,41 @@ import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
 import android.provider.OpenableColumns;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.annotation.Nullable;
 
 import com.b44t.messenger.DcContext;
 import com.b44t.messenger.DcMsg;
 
 import org.thoughtcrime.securesms.ConversationListRelayingActivity;
+import org.thoughtcrime.securesms.R;
 import org.thoughtcrime.securesms.connect.DcHelper;
 import org.thoughtcrime.securesms.mms.PartAuthority;
 import org.thoughtcrime.securesms.providers.PersistentBlobProvider;
+import org.thoughtcrime.securesms.service.GenericForegroundService;
+import org.thoughtcrime.securesms.service.NotificationController;
+import org.thoughtcrime.securesms.util.concurrent.Lane;
 
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SendRelayedMessageUtil {
+  private static final String TAG = SendRelayedMessageUtil.class.getSimpleName();
+
+  // copying is mostly bound by storage, more parallel copies would not be faster
+  private static final int MAX_PARALLEL_COPIES = 3;
+
+  private static final String DEFAULT_FILENAME = "cannot-resolve.jpg"; // best guess, this still leads to most images being workable if OS does weird things
 
   public static void immediatelyRelay(Activity activity, int chatId) {
     immediatelyRelay(activity, new Long[]{(long) chatId});
@@ -63,11 +83,12 @@ public class SendRelayedMessageUtil {
       ArrayList<Uri> sharedUris = getSharedUris(activity);
       String sharedText = getSharedText(activity);
       resetRelayingMessageContent(activity);
-      Util.runOnAnyBackgroundThread(() -> {
-        for (long chatId : chatIds) {
-          sendMultipleMsgs(activity, (int) chatId, sharedUris, sharedText);
-        }
-      });
+      int[] intChatIds = new int[chatIds.length];
+      for (int i = 0; i < chatIds.length; i++) {
+        intChatIds[i] = (int) (long) chatIds[i];
+      }
+      Context context = activity.getApplicationContext();
+      Util.runOnAnyBackgroundThread(() -> sendMultipleMsgs(context, intChatIds, sharedUris, sharedText));
     }
   }
 
@@ -77,20 +98,143 @@ public class SendRelayedMessageUtil {
   }
 
   public static void sendMultipleMsgs(Context context, int chatId, ArrayList<Uri> sharedUris, String sharedText) {
-    DcContext dcContext = DcHelper.getContext(context);
-    ArrayList<Uri> uris = sharedUris;
-    String text = sharedText;
+    sendMultipleMsgs(context, new int[]{chatId}, sharedUris, sharedText);
+  }
 
-    if (uris.size() == 1) {
-      dcContext.sendMsg(chatId, createMessage(context, uris.get(0), text));
-    } else {
-      if (text != null) {
-        dcContext.sendMsg(chatId, createMessage(context, null, text));
+  /**
+   * Sends the shared files and text to all given chats.
+   * Each uri is copied into the blobdir only once, at most MAX_PARALLEL_COPIES at a time on the IO lane,
+   * the messages are sent when the last copy is done.
+   * Uris are compared as such: different uris with the same content are each copied,
+   * however, the core names the copies by their content hash, so they are stored only once
+   * and all chats reference the same blob. Hashing the content beforehand would read each file twice.
+   * Progress is shown in a foreground notification. Returns without waiting for the copies.
+   */
+  public static void sendMultipleMsgs(Context context, int[] chatIds, ArrayList<Uri> sharedUris, String sharedText) {
+    Context appContext = context.getApplicationContext();
+    DcContext dcContext = DcHelper.getContext(appContext);
+    List<Uri> distinctUris = new ArrayList<>(new LinkedHashSet<>(sharedUris));
+    int progressMax = distinctUris.size() + chatIds.length;
+
+    NotificationController notification = null;
+    if (!distinctUris.isEmpty()) {
+      try {
+        notification = GenericForegroundService.startForegroundTask(appContext, appContext.getString(R.string.one_moment));
+      } catch (Exception e) {
+        Log.w(TAG, "cannot show progress", e);
       }
+    }
+    final NotificationController progressNotification = notification;
+
+    if (distinctUris.isEmpty()) {
+      Lane.IO.execute(Lane.PRIORITY_DEFAULT, () -> sendToChats(appContext, dcContext, chatIds, sharedUris, new HashMap<>(), sharedText, null, progressMax));
+      return;
+    }
+
+    // a few tasks take the uris one after another, the task copying the last one sends the messages
+    ConcurrentHashMap<Uri, PreparedFile> preparedFiles = new ConcurrentHashMap<>();
+    AtomicInteger nextIndex = new AtomicInteger();
+    AtomicInteger remaining = new AtomicInteger(distinctUris.size());
+    Runnable copyTask = () -> {
+      int index;
+      while ((index = nextIndex.getAndIncrement()) < distinctUris.size()) {
+        Uri uri = distinctUris.get(index);
+        try {
+          PreparedFile file = prepareFile(appContext, dcContext, uri);
+          if (file != null) {
+            preparedFiles.put(uri, file);
+          }
+        } catch (Exception e) {
+          Log.e(TAG, "cannot prepare " + uri + ", skipping it", e);
+        } finally {
+          // the last copy sends the messages and closes the notification, also if copies failed
+          int left = remaining.decrementAndGet();
+          if (progressNotification != null) {
+            progressNotification.setProgress(progressMax, distinctUris.size() - left, "");
+          }
+          if (left == 0) {
+            sendToChats(appContext, dcContext, chatIds, sharedUris, preparedFiles, sharedText, progressNotification, progressMax);
+          }
+        }
+      }
+    };
+    for (int i = 0; i < Math.min(distinctUris.size(), MAX_PARALLEL_COPIES); i++) {
+      Lane.IO.execute(Lane.PRIORITY_DEFAULT, copyTask);
+    }
+  }
+
+  private static void sendToChats(Context context, DcContext dcContext, int[] chatIds, List<Uri> uris,
+                                  Map<Uri, PreparedFile> preparedFiles, String text,
+                                  @Nullable NotificationController notification, int progressMax) {
+    try {
+      // files that could not be read are skipped
+      List<PreparedFile> files = new ArrayList<>(uris.size());
       for (Uri uri : uris) {
-        dcContext.sendMsg(chatId, createMessage(context, uri, null));
+        PreparedFile file = preparedFiles.get(uri);
+        if (file != null) {
+          files.add(file);
+        }
+      }
+      if (files.size() < uris.size()) {
+        Util.runOnMain(() -> Toast.makeText(context, R.string.error, Toast.LENGTH_LONG).show());
+      }
+
+      int progress = progressMax - chatIds.length;
+      for (int chatId : chatIds) {
+        try {
+          if (files.size() == 1) {
+            dcContext.sendMsg(chatId, createMessage(dcContext, files.get(0), text));
+          } else {
+            if (text != null) {
+              dcContext.sendMsg(chatId, createMessage(context, null, text));
+            }
+            for (PreparedFile file : files) {
+              dcContext.sendMsg(chatId, createMessage(dcContext, file, null));
+            }
+          }
+        } catch (Exception e) {
+          Log.e(TAG, "cannot send to chat " + chatId, e);
+        }
+        progress++;
+        if (notification != null) {
+          notification.setProgress(progressMax, progress, "");
+        }
       }
+    } finally {
+      if (notification != null) {
+        notification.close();
+      }
+    }
+  }
+
+  /**
+   * Copies the file of the uri into the blobdir, returns null if it cannot be read.
+   */
+  private static @Nullable PreparedFile prepareFile(Context context, DcContext dcContext, Uri uri) {
+    String mimeType = MediaUtil.getMimeType(context, uri);
+    int viewType = getViewType(mimeType);
+    String filename = getFilename(context, uri);
+    String path = copyToBlobdir(context, dcContext, uri, filename);
+    if (path == null) {
+      return null;
+    }
+    // let the core move the copy to its hash-based name,
+    // further messages with the same path then just reference it
+    DcMsg msg = new DcMsg(dcContext, viewType);
+    msg.setFileAndDeduplicate(path, filename, mimeType);
+    path = msg.getFile();
+    msg.close();
+    return new PreparedFile(viewType, path, filename, mimeType);
+  }
+
+
+  private static DcMsg createMessage(DcContext dcContext, PreparedFile file, String text) {
+    DcMsg message = new DcMsg(dcContext, file.viewType);
+    message.setFileAndDeduplicate(file.path, file.filename, file.mimeType);
+    if (text != null) {
+      message.setText(text);
     }
+    return message;
   }
 
   public static boolean containsVideoType(Context context, ArrayList<Uri> uris) {
@@ -109,14 +253,8 @@ public class SendRelayedMessageUtil {
     String mimeType = MediaUtil.getMimeType(context, uri);
     if (uri == null) {
       message = new DcMsg(dcContext, DcMsg.DC_MSG_TEXT);
-    } else if (MediaUtil.isImageType(mimeType)) {
-      message = new DcMsg(dcContext, DcMsg.DC_MSG_IMAGE);
-    } else if (MediaUtil.isAudioType(mimeType)) {
-      message = new DcMsg(dcContext, DcMsg.DC_MSG_AUDIO);
-    } else if (MediaUtil.isVideoType(mimeType)) {
-      message = new DcMsg(dcContext, DcMsg.DC_MSG_VIDEO);
     } else {
-      message = new DcMsg(dcContext, DcMsg.DC_MSG_FILE);
+      message = new DcMsg(dcContext, getViewType(mimeType));
     }
 
     if (uri != null) {
@@ -128,12 +266,28 @@ public class SendRelayedMessageUtil {
     return message;
   }
 
+  private static int getViewType(String mimeType) {
+    if (MediaUtil.isImageType(mimeType)) {
+      return DcMsg.DC_MSG_IMAGE;
+    } else if (MediaUtil.isAudioType(mimeType)) {
+      return DcMsg.DC_MSG_AUDIO;
+    } else if (MediaUtil.isVideoType(mimeType)) {
+      return DcMsg.DC_MSG_VIDEO;
+    } else {
+      return DcMsg.DC_MSG_FILE;
+    }
+  }
+
   private static void setFileFromUri(Context context, Uri uri, DcMsg message, String mimeType) {
-    String path;
     DcContext dcContext = DcHelper.getContext(context);
-    String filename = "cannot-resolve.jpg"; // best guess, this still leads to most images being workable if OS does weird things
-    try {
+    String filename = getFilename(context, uri);
+    String path = copyToBlobdir(context, dcContext, uri, filename);
+    message.setFileAndDeduplicate(path, filename, mimeType);
+  }
 
+  private static String getFilename(Context context, Uri uri) {
+    String filename = DEFAULT_FILENAME;
+    try {
       if (PartAuthority.isLocalUri(uri)) {
         filename = uri.getPathSegments().get(PersistentBlobProvider.FILENAME_PATH_SEGMENT);
       } else if (uri.getScheme().equals("content")) {
@@ -150,7 +304,18 @@ public class SendRelayedMessageUtil {
           cursor.close();
         }
       }
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+    return filename;
+  }
 
+  /**
+   * Copies the content of the uri to a new file in the blobdir, returns null on errors.
+   */
+  private static String copyToBlobdir(Context context, DcContext dcContext, Uri uri, String filename) {
+    String path;
+    try {
       path = DcHelper.getBlobdirFile(dcContext, filename, "temp");
 
       // copy content to this file
@@ -163,7 +328,21 @@ public class SendRelayedMessageUtil {
       e.printStackTrace();
       path = null;
     }
-    message.setFileAndDeduplicate(path, filename, mimeType);
+    return path;
+  }
+
+  private static class PreparedFile {
+    final int    viewType;
+    final String path;
+    final String filename;
+    final String mimeType;
+
+    PreparedFile(int viewType, String path, String filename, String mimeType) {
+      this.viewType = viewType;
+      this.path     = path;
+      this.filename = filename;
+      this.mimeType = mimeType;
+    }
   }
 
 }
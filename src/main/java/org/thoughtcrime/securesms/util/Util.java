@@ -25,7 +25,6 @@ import android.content.res.Resources;
 import android.graphics.Color;
 import android.graphics.Typeface;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Handler;
 import android.os.Looper;
 import android.text.Spannable;
@@ -45,6 +44,7 @@ import androidx.core.os.ConfigurationCompat;
 
 import org.thoughtcrime.securesms.R;
 import org.thoughtcrime.securesms.components.ComposeText;
+import org.thoughtcrime.securesms.util.concurrent.Lane;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -228,20 +228,32 @@ public class Util {
   }
 
   public static void runOnBackground(final @NonNull Runnable runnable) {
-    AsyncTask.THREAD_POOL_EXECUTOR.execute(runnable);
+    runOnBackground(Lane.IO, runnable);
+  }
+
+  public static void runOnBackground(final @NonNull Lane lane, final @NonNull Runnable runnable) {
+    lane.execute(runnable);
   }
 
   public static void runOnAnyBackgroundThread(final @NonNull Runnable runnable) {
+    runOnAnyBackgroundThread(Lane.IO, runnable);
+  }
+
+  public static void runOnAnyBackgroundThread(final @NonNull Lane lane, final @NonNull Runnable runnable) {
     if (Util.isMainThread()) {
-      Util.runOnBackground(runnable);
+      Util.runOnBackground(lane, runnable);
     } else {
       runnable.run();
     }
   }
 
   public static void runOnBackgroundDelayed(final @NonNull Runnable runnable, long delayMillis) {
+    runOnBackgroundDelayed(Lane.IO, runnable, delayMillis);
+  }
+
+  public static void runOnBackgroundDelayed(final @NonNull Lane lane, final @NonNull Runnable runnable, long delayMillis) {
     handler.postDelayed(() -> {
-      AsyncTask.THREAD_POOL_EXECUTOR.execute(runnable);
+      lane.execute(runnable);
     }, delayMillis);
   }
 
@@ -0,0 +1,140 @@
+package org.thoughtcrime.securesms.util;
+
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.b44t.messenger.DcMsg;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads the files of a webxdc app for WebxdcActivity.
+ * Files are streamed from the .xdc archive while the WebView reads them
+ * instead of being copied into memory as a whole by DcMsg.getWebxdcBlob().
+ * Small files are additionally kept in a cache shared by all apps,
+ * so that reopening an app does not inflate them again.
+ * A cached file is only used if size, modification time of the archive and crc of the file still match.
+ */
+public class WebxdcAssets implements Closeable {
+  private static final String TAG = WebxdcAssets.class.getSimpleName();
+
+  private static final int MAX_CACHED_FILE_SIZE = 256 * 1024;
+  private static final int MAX_CACHE_SIZE       = 4 * 1024 * 1024;
+
+  private static final LruCache<String, CachedFile> cache = new LruCache<String, CachedFile>(MAX_CACHE_SIZE) {
+    @Override
+    protected int sizeOf(String key, CachedFile value) {
+      return value.data.length;
+    }
+  };
+
+  private static final AtomicLong hits     = new AtomicLong();
+  private static final AtomicLong misses   = new AtomicLong();
+  private static final AtomicLong streamed = new AtomicLong();
+
+  private final DcMsg   dcMsg;
+  private final String  archivePath;
+  private final String  archiveTag;
+  private       ZipFile zipFile;
+
+  public WebxdcAssets(@NonNull DcMsg dcMsg) {
+    this.dcMsg = dcMsg;
+
+    String file = dcMsg.getFile();
+    ZipFile zipFile = null;
+    String archiveTag = null;
+    if (file != null && !file.isEmpty()) {
+      File archive = new File(file);
+      try {
+        zipFile = new ZipFile(archive);
+        archiveTag = archive.length() + "-" + archive.lastModified();
+      } catch (IOException e) {
+        Log.w(TAG, "cannot open " + file + ", falling back to getWebxdcBlob()", e);
+      }
+    }
+    this.archivePath = file;
+    this.archiveTag  = archiveTag;
+    this.zipFile     = zipFile;
+  }
+
+  /**
+   * Opens the given file of the app, the path may start with a slash.
+   * Returns null if there is no such file.
+   */
+  public synchronized @Nullable InputStream open(@NonNull String path) throws IOException {
+    String name = path.startsWith("/") ? path.substring(1) : path;
+    ZipEntry entry = zipFile != null ? zipFile.getEntry(name) : null;
+    if (entry == null || entry.isDirectory()) {
+      // not in the archive as expected, let the core look up the file
+      byte[] blob = dcMsg.getWebxdcBlob(path);
+      return blob != null ? new ByteArrayInputStream(blob) : null;
+    }
+
+    long size = entry.getSize();
+    if (size < 0 || size > MAX_CACHED_FILE_SIZE) {
+      streamed.incrementAndGet();
+      return zipFile.getInputStream(entry);
+    }
+
+    String key = archivePath + "/" + name;
+    CachedFile cached = cache.get(key);
+    if (cached != null && cached.archiveTag.equals(archiveTag) && cached.crc == entry.getCrc()) {
+      hits.incrementAndGet();
+      return new ByteArrayInputStream(cached.data);
+    }
+
+    misses.incrementAndGet();
+    ByteArrayOutputStream out = new ByteArrayOutputStream((int) size);
+    Util.copy(zipFile.getInputStream(entry), out);
+    byte[] data = out.toByteArray();
+    cache.put(key, new CachedFile(archiveTag, entry.getCrc(), data));
+    return new ByteArrayInputStream(data);
+  }
+
+  /**
+   * Closes the archive, streams opened before cannot be read afterwards.
+   */
+  @Override
+  public synchronized void close() {
+    if (zipFile != null) {
+      try {
+        zipFile.close();
+      } catch (IOException e) {
+        Log.w(TAG, e);
+      }
+      zipFile = null;
+    }
+  }
+
+  /**
+   * Summary of the cache metrics, for debug logs.
+   */
+  public static @NonNull String getStats() {
+    return String.format(Locale.US, "webxdcAssets: cachedBytes=%d hits=%d misses=%d streamed=%d\n",
+        cache.size(), hits.get(), misses.get(), streamed.get());
+  }
+
+  private static class CachedFile {
+    final String archiveTag;
+    final long   crc;
+    final byte[] data;
+
+    CachedFile(String archiveTag, long crc, byte[] data) {
+      this.archiveTag = archiveTag;
+      this.crc        = crc;
+      this.data       = data;
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package org.thoughtcrime.securesms.util.concurrent;
+
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background executors for different kinds of work,
+ * so that eg. saving a large attachment cannot delay loading the chatlist.
+ * Each lane has its own threads and thread priority;
+ * within a lane, tasks with a higher priority are run first, tasks with the same priority in order.
+ */
+public enum Lane {
+  /** Short tasks the user is waiting for: search stages, row models, event handlers. Must not sleep or loop. */
+  UI_CRITICAL ("bg-ui",          getUiPoolSize(),     Process.THREAD_PRIORITY_DEFAULT),
+  /** Database, file and network access; also loading loops that wait for the core. */
+  IO          ("bg-io",          getIoPoolSize(),     Process.THREAD_PRIORITY_BACKGROUND),
+  /** CPU-bound media processing as image editing or video recoding. */
+  MEDIA       ("bg-media",       getMediaPoolSize(),  Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_LESS_FAVORABLE),
+  /** Housekeeping that can wait. */
+  MAINTENANCE ("bg-maintenance", 1,                   Process.THREAD_PRIORITY_LOWEST);
+
+  public static final int PRIORITY_LOW     = -10;
+  public static final int PRIORITY_DEFAULT = 0;
+  public static final int PRIORITY_HIGH    = 10;
+
+  private final String name;
+  private final int    poolSize;
+  private final int    threadPriority;
+
+  private final AtomicLong     sequence  = new AtomicLong();
+  private final AtomicLong     submitted = new AtomicLong();
+  private final AtomicLong     waitNanos = new AtomicLong();
+  private final AtomicLong     maxWaitNanos = new AtomicLong();
+  private volatile ThreadPoolExecutor executor;
+
+  Lane(String name, int poolSize, int threadPriority) {
+    this.name           = name;
+    this.poolSize       = poolSize;
+    this.threadPriority = threadPriority;
+  }
+
+  private static int getIoPoolSize() {
+    // as large as AsyncTask.THREAD_POOL_EXECUTOR that was used before, many callers block on the database or the network;
+    // idle threads time out, so the threads only exist while there is work.
+    return 20;
+  }
+
+  private static int getUiPoolSize() {
+    return Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+  }
+
+  private static int getMediaPoolSize() {
+    return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 2));
+  }
+
+  private ThreadPoolExecutor getExecutor() {
+    if (executor == null) {
+      synchronized (this) {
+        if (executor == null) {
+          final AtomicInteger threadCount = new AtomicInteger();
+          ThreadPoolExecutor newExecutor = new ThreadPoolExecutor(poolSize, poolSize, 30, TimeUnit.SECONDS,
+              new PriorityBlockingQueue<>(),
+              runnable -> new Thread(() -> {
+                Process.setThreadPriority(threadPriority);
+                runnable.run();
+              }, name + "-" + threadCount.incrementAndGet()));
+          newExecutor.allowCoreThreadTimeOut(true);
+          executor = newExecutor;
+        }
+      }
+    }
+    return executor;
+  }
+
+  public void execute(@NonNull Runnable runnable) {
+    execute(PRIORITY_DEFAULT, runnable);
+  }
+
+  public void execute(int priority, @NonNull Runnable runnable) {
+    submitted.incrementAndGet();
+    getExecutor().execute(new PrioritizedTask(priority, sequence.incrementAndGet(), runnable));
+  }
+
+  /**
+   * Returns an Executor running tasks on this lane with the default priority, eg. for AsyncTask.executeOnExecutor().
+   */
+  public @NonNull Executor asExecutor() {
+    return this::execute;
+  }
+
+  public int getQueueSize() {
+    return executor == null ? 0 : executor.getQueue().size();
+  }
+
+  public int getActiveCount() {
+    return executor == null ? 0 : executor.getActiveCount();
+  }
+
+  public long getSubmittedCount() {
+    return submitted.get();
+  }
+
+  public long getCompletedCount() {
+    return executor == null ? 0 : executor.getCompletedTaskCount();
+  }
+
+  /**
+   * Summary of the queue metrics of all lanes, for debug logs.
+   */
+  public static @NonNull String getStats() {
+    StringBuilder builder = new StringBuilder();
+    for (Lane lane : values()) {
+      long completed = lane.getCompletedCount();
+      builder.append(String.format(Locale.US, "%s: threads=%d active=%d queued=%d submitted=%d completed=%d avgWaitMs=%.2f maxWaitMs=%.2f\n",
+          lane.name, lane.poolSize, lane.getActiveCount(), lane.getQueueSize(), lane.getSubmittedCount(), completed,
+          completed == 0 ? 0 : lane.waitNanos.get() / (completed * 1000000.0),
+          lane.maxWaitNanos.get() / 1000000.0));
+    }
+    return builder.toString();
+  }
+
+  private void recordWait(long nanos) {
+    waitNanos.addAndGet(nanos);
+    long max;
+    do {
+      max = maxWaitNanos.get();
+    } while (nanos > max && !maxWaitNanos.compareAndSet(max, nanos));
+  }
+
+  private final class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+    private final int      priority;
+    private final long     sequence;
+    private final long     queuedAt = System.nanoTime();
+    private final Runnable runnable;
+
+    PrioritizedTask(int priority, long sequence, Runnable runnable) {
+      this.priority = priority;
+      this.sequence = sequence;
+      this.runnable = runnable;
+    }
+
+    @Override
+    public void run() {
+      recordWait(System.nanoTime() - queuedAt);
+      runnable.run();
+    }
+
+    @Override
+    public int compareTo(PrioritizedTask other) {
+      if (priority != other.priority) {
+        return priority > other.priority ? -1 : 1;
+      }
+      return Long.compare(sequence, other.sequence);
+    }
+  }
+}
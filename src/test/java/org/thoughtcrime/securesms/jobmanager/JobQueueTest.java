@@ -0,0 +1,208 @@
+package org.thoughtcrime.securesms.jobmanager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class JobQueueTest {
+
+  private static final int JOB_COUNT = 5000;
+
+  private long     now;
+  private JobQueue queue;
+
+  @Before
+  public void setUp() {
+    now   = 1000;
+    queue = new JobQueue(() -> now);
+  }
+
+  @Test
+  public void readyJobs_areTakenByPriorityThenInOrderAdded() {
+    Random random = new Random(42);
+    int[] priorities = {JobParameters.PRIORITY_LOW, JobParameters.PRIORITY_DEFAULT, JobParameters.PRIORITY_HIGH};
+    for (int i = 0; i < JOB_COUNT; i++) {
+      queue.add(new TestJob(i, JobParameters.newBuilder().withPriority(priorities[random.nextInt(3)])));
+    }
+
+    List<TestJob> taken = takeAll();
+
+    assertThat(taken).hasSize(JOB_COUNT);
+    for (int i = 1; i < taken.size(); i++) {
+      TestJob previous = taken.get(i - 1);
+      TestJob current  = taken.get(i);
+      assertThat(previous.getPriority()).isGreaterThanOrEqualTo(current.getPriority());
+      if (previous.getPriority() == current.getPriority()) {
+        assertThat(previous.number).isLessThan(current.number);
+      }
+    }
+    assertThat(queue.getStats()).contains("ready=0 ", "run=" + JOB_COUNT + " ");
+  }
+
+  @Test
+  public void pushedJob_isTakenBeforeJobsOfSamePriority() {
+    for (int i = 0; i < JOB_COUNT; i++) {
+      queue.add(new TestJob(i, JobParameters.newBuilder()));
+    }
+    TestJob deferred = new TestJob(-1, JobParameters.newBuilder());
+    queue.push(deferred);
+
+    assertThat(queue.getNextIfAvailable()).isSameAs(deferred);
+    assertThat(((TestJob) queue.getNextIfAvailable()).number).isEqualTo(0);
+  }
+
+  @Test
+  public void delayedJobs_areTakenWhenDue() {
+    for (int i = 0; i < JOB_COUNT; i++) {
+      queue.add(new TestJob(i, JobParameters.newBuilder().withDelay((i % 10) * 100)));
+    }
+    assertThat(queue.getStats()).contains("ready=" + (JOB_COUNT / 10) + " ", "delayed=" + (JOB_COUNT - JOB_COUNT / 10) + " ");
+
+    for (int step = 0; step < 10; step++) {
+      now = 1000 + step * 100;
+      List<TestJob> taken = takeAll();
+      assertThat(taken).hasSize(JOB_COUNT / 10);
+      for (TestJob job : taken) {
+        assertThat(job.number % 10).isEqualTo(step);
+      }
+    }
+    assertThat(queue.getStats()).contains("delayed=0 ");
+  }
+
+  @Test
+  public void delayedJob_isTakenBeforeLaterReadyJobOfSamePriority() {
+    queue.add(new TestJob(0, JobParameters.newBuilder().withDelay(100)));
+    now += 50;
+    queue.add(new TestJob(1, JobParameters.newBuilder()));
+    now += 50;
+
+    assertThat(((TestJob) queue.getNextIfAvailable()).number).isEqualTo(0);
+    assertThat(((TestJob) queue.getNextIfAvailable()).number).isEqualTo(1);
+  }
+
+  @Test
+  public void jobsOfOneGroup_areTakenOneAfterAnother() {
+    int groupCount = 4;
+    for (int i = 0; i < JOB_COUNT; i++) {
+      queue.add(new TestJob(i, JobParameters.newBuilder().withGroupId("group" + (i % groupCount))));
+    }
+
+    // one job of each group can run, all other jobs wait for their group
+    List<TestJob> running = takeAll();
+    assertThat(running).hasSize(groupCount);
+    assertThat(queue.getStats()).contains("groupWaiting=" + (JOB_COUNT - groupCount) + " ");
+
+    Map<String, Integer> lastNumbers = new HashMap<>();
+    int finished = 0;
+    while (!running.isEmpty()) {
+      TestJob job = running.remove(0);
+      Integer last = lastNumbers.put(job.getGroupId(), job.number);
+      if (last != null) {
+        assertThat(job.number).isGreaterThan(last);
+      }
+      queue.setGroupIdAvailable(job.getGroupId());
+      finished++;
+
+      List<TestJob> next = takeAll();
+      assertThat(next.size()).isLessThanOrEqualTo(1);
+      running.addAll(next);
+    }
+    assertThat(finished).isEqualTo(JOB_COUNT);
+    assertThat(queue.getStats()).contains("groupWaiting=0 ");
+  }
+
+  @Test
+  public void groupJobWithUnmetRequirements_doesNotBlockItsGroup() {
+    TestJob running = new TestJob(0, JobParameters.newBuilder().withGroupId("group"));
+    TestJob unmet   = new TestJob(1, JobParameters.newBuilder().withGroupId("group"));
+    TestJob next    = new TestJob(2, JobParameters.newBuilder().withGroupId("group"));
+    unmet.requirementsMet = false;
+    queue.add(running);
+    queue.add(unmet);
+    queue.add(next);
+
+    assertThat(takeAll()).hasSize(1);
+    queue.setGroupIdAvailable("group");
+
+    assertThat(queue.getNextIfAvailable()).isSameAs(next);
+    assertThat(queue.getStats()).contains("groupWaiting=0 ", "unmet=1 ");
+  }
+
+  @Test
+  public void jobsWithUnmetRequirements_areCheckedAgainWhenJobsAreAddedOrFinished() {
+    List<TestJob> unmet = new ArrayList<>();
+    for (int i = 0; i < JOB_COUNT; i++) {
+      TestJob job = new TestJob(i, JobParameters.newBuilder());
+      job.requirementsMet = false;
+      unmet.add(job);
+      queue.add(job);
+    }
+
+    assertThat(queue.getNextIfAvailable()).isNull();
+    assertThat(queue.getStats()).contains("unmet=" + JOB_COUNT + " ");
+
+    for (TestJob job : unmet) {
+      job.requirementsMet = true;
+    }
+    // requirements are not polled while nothing changes in the queue
+    assertThat(queue.getNextIfAvailable()).isNull();
+
+    TestJob grouped = new TestJob(JOB_COUNT, JobParameters.newBuilder().withGroupId("group"));
+    queue.add(grouped);
+    assertThat(takeAll()).hasSize(JOB_COUNT + 1);
+    assertThat(queue.getStats()).contains("unmet=0 ");
+
+    TestJob late = new TestJob(JOB_COUNT + 1, JobParameters.newBuilder());
+    late.requirementsMet = false;
+    queue.add(late);
+    assertThat(queue.getNextIfAvailable()).isNull();
+    late.requirementsMet = true;
+    queue.setGroupIdAvailable(grouped.getGroupId());
+    assertThat(queue.getNextIfAvailable()).isSameAs(late);
+  }
+
+  private List<TestJob> takeAll() {
+    List<TestJob> taken = new ArrayList<>();
+    Job job;
+    while ((job = queue.getNextIfAvailable()) != null) {
+      taken.add((TestJob) job);
+    }
+    return taken;
+  }
+
+  private static class TestJob extends Job {
+    final int number;
+    boolean requirementsMet = true;
+
+    TestJob(int number, JobParameters.Builder builder) {
+      super(builder.create());
+      this.number = number;
+    }
+
+    @Override
+    public boolean isRequirementsMet() {
+      return requirementsMet;
+    }
+
+    @Override
+    public void onAdded() {}
+
+    @Override
+    protected void onRun() {}
+
+    @Override
+    public boolean onShouldRetry(Exception exception) {
+      return false;
+    }
+
+    @Override
+    public void onCanceled() {}
+  }
+}